@@ -0,0 +1,175 @@
+package com.webcrawler.bench;
+
+import com.webcrawler.config.CrawlerConfig;
+import com.webcrawler.config.FetchMode;
+import com.webcrawler.core.WebCrawler;
+import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlSummary;
+import com.webcrawler.sink.ResultSink;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.webcrawler.bench.LoadDriver.intOption;
+import static com.webcrawler.bench.LoadDriver.parse;
+
+/**
+ * Runs a crawl cluster on localhost: starts a {@link SyntheticWeb}, launches
+ * one JVM per node with the same classpath, and prints what each node crawled.
+ * Every page should be fetched exactly once across the cluster, so the
+ * server's request count is compared with the pages the nodes recorded.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.webcrawler.bench.ClusterLauncher \
+ *     --nodes 3 --hosts 8 --pages 500 --threads 8 --permits 50 --latency 5,50
+ * </pre>
+ *
+ * The synthetic web takes the same options as {@link LoadDriver}. Each node
+ * process runs this class with {@code --node}.
+ */
+public class ClusterLauncher {
+    private static final String RESULT_PREFIX = "NODE-RESULT ";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        if (options.containsKey("node")) {
+            runNode(options);
+            return;
+        }
+
+        int nodes = intOption(options, "nodes", 3);
+        try (SyntheticWeb server = LoadDriver.syntheticWeb(options).start()) {
+            System.out.println("Synthetic web: " + server);
+            List<String> addresses = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                addresses.add("127.0.0.1:" + freePort());
+            }
+
+            long startNanos = System.nanoTime();
+            List<Process> processes = new ArrayList<>();
+            List<String[]> results = new ArrayList<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                List<String> command = new ArrayList<>(List.of(
+                        System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                        "-cp", System.getProperty("java.class.path"),
+                        ClusterLauncher.class.getName(),
+                        "--node", String.valueOf(i),
+                        "--cluster", String.join(",", addresses),
+                        "--seed-url", server.seedUrl(),
+                        "--expected-urls", String.valueOf(server.pageCount()),
+                        "--max-pages", String.valueOf(intOption(options, "max-pages", server.pageCount()))));
+                for (String key : new String[]{"threads", "permits", "mode", "in-flight"}) {
+                    if (options.containsKey(key)) {
+                        command.add("--" + key);
+                        command.add(options.get(key));
+                    }
+                }
+                Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+                processes.add(process);
+                results.add(null);
+                readers.add(forward(i, process, results));
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+            System.out.println();
+            System.out.printf("%-5s %-11s %7s %7s %9s %8s%n", "node", "outcome", "pages", "failed", "admitted", "secs");
+            long pages = 0;
+            for (int i = 0; i < nodes; i++) {
+                String[] result = results.get(i);
+                if (result == null) {
+                    System.out.printf("%-5d %-11s (exit code %d)%n", i, "FAILED", processes.get(i).exitValue());
+                    continue;
+                }
+                pages += Long.parseLong(result[1]);
+                System.out.printf("%-5d %-11s %7s %7s %9s %8.1f%n", i, result[0], result[1], result[2], result[3],
+                        Long.parseLong(result[4]) / 1000.0);
+            }
+            System.out.printf("Cluster: %d pages in %.1f s (%.1f pages/s); server: %d pages, %d requests, %d errors%n",
+                    pages, seconds, pages / seconds, server.pageCount(), server.getRequests(), server.getErrors());
+        }
+    }
+
+    /**
+     * One node: crawls its share of the synthetic web and prints a result line
+     * for the launcher.
+     */
+    private static void runNode(Map<String, String> options) {
+        List<InetSocketAddress> cluster = new ArrayList<>();
+        for (String address : options.get("cluster").split(",")) {
+            int colon = address.lastIndexOf(':');
+            cluster.add(new InetSocketAddress(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1))));
+        }
+        CrawlerConfig config = new CrawlerConfig.Builder()
+                .maxThreads(intOption(options, "threads", 8))
+                .permitsPerSecond(intOption(options, "permits", 50))
+                .maxPages(intOption(options, "max-pages", Integer.MAX_VALUE))
+                .maxDepth(Integer.MAX_VALUE - 1)
+                .expectedUrls(intOption(options, "expected-urls", 100_000))
+                .fetchMode(FetchMode.valueOf(options.getOrDefault("mode", "BLOCKING")))
+                .maxInFlightRequests(intOption(options, "in-flight", 256))
+                .userAgent("ArachneClusterNode/1.0")
+                .clusterNodes(cluster)
+                .clusterNodeIndex(intOption(options, "node", 0))
+                .build();
+        ResultSink discard = new ResultSink() {
+            @Override
+            public void accept(CrawlResult result) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        CrawlSummary summary = new WebCrawler(config, discard).crawl(options.get("seed-url"));
+        System.out.println(RESULT_PREFIX + summary.getOutcome() + " " + summary.getPagesCrawled() + " "
+                + summary.getPagesFailed() + " " + summary.getUrlsAdmitted() + " " + summary.getElapsedMs());
+        System.exit(0);
+    }
+
+    /**
+     * Copies a node's output to ours, prefixed with the node index, and keeps its result line.
+     */
+    private static Thread forward(int node, Process process, List<String[]> results) {
+        Thread thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        synchronized (results) {
+                            results.set(node, line.substring(RESULT_PREFIX.length()).split(" "));
+                        }
+                    } else {
+                        System.out.println("[node " + node + "] " + line);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Lost the output of node " + node + ": " + e.getMessage());
+            }
+        }, "node-" + node + "-output");
+        thread.start();
+        return thread;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.webcrawler.bench;
+
+import com.webcrawler.config.CrawlerConfig;
+import com.webcrawler.core.CrawlEngine;
+import com.webcrawler.core.CrawlJob;
+import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlSummary;
+import com.webcrawler.sink.ResultSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.webcrawler.bench.LoadDriver.intOption;
+import static com.webcrawler.bench.LoadDriver.parse;
+
+/**
+ * Runs several crawl jobs on one shared {@link CrawlEngine} against a
+ * {@link SyntheticWeb} and prints, every second, how many tasks each job got,
+ * so the weighted shares can be checked while jobs overlap.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.webcrawler.bench.EngineDriver \
+ *     --jobs 1:20000,1:300,3:20000 --stagger-ms 1000 --threads 16 --permits 200 --hosts 8 --pages 3000
+ * </pre>
+ *
+ * Each {@code --jobs} entry is {@code weight:maxPages}; the jobs are
+ * submitted {@code --stagger-ms} apart and all start from the seed. The
+ * synthetic web takes the same options as {@link LoadDriver}.
+ */
+public class EngineDriver {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        try (SyntheticWeb server = LoadDriver.syntheticWeb(options).start()) {
+            System.out.println("Synthetic web: " + server);
+            CrawlerConfig engineConfig = new CrawlerConfig.Builder()
+                    .maxThreads(intOption(options, "threads", 16))
+                    .permitsPerSecond(intOption(options, "permits", 200))
+                    .userAgent("ArachneEngineDriver/1.0")
+                    .build();
+            int staggerMs = intOption(options, "stagger-ms", 1000);
+
+            List<CrawlJob> jobs = new ArrayList<>();
+            List<Long> submittedAt = new ArrayList<>();
+            long startNanos = System.nanoTime();
+            try (CrawlEngine engine = new CrawlEngine(engineConfig)) {
+                Thread sampler = new Thread(() -> sample(jobs, startNanos), "engine-sampler");
+                sampler.setDaemon(true);
+                sampler.start();
+                for (String spec : options.getOrDefault("jobs", "1:20000,1:300,3:20000").split(",")) {
+                    String[] parts = spec.split(":");
+                    CrawlerConfig jobConfig = new CrawlerConfig.Builder()
+                            .maxPages(Integer.parseInt(parts[1]))
+                            .maxDepth(Integer.MAX_VALUE - 1)
+                            .expectedUrls(server.pageCount())
+                            .build();
+                    synchronized (jobs) {
+                        jobs.add(engine.submit(server.seedUrl(), jobConfig, discardingSink(),
+                                Integer.parseInt(parts[0])));
+                        submittedAt.add(System.nanoTime());
+                    }
+                    Thread.sleep(staggerMs);
+                }
+                for (CrawlJob job : jobs) {
+                    job.join();
+                }
+            }
+
+            System.out.println();
+            System.out.printf("%-6s %7s %7s %7s %7s %9s %9s%n",
+                    "job", "weight", "pages", "failed", "tasks", "start s", "took s");
+            for (int i = 0; i < jobs.size(); i++) {
+                CrawlJob job = jobs.get(i);
+                CrawlSummary summary = job.join();
+                System.out.printf("%-6d %7d %7d %7d %7d %9.1f %9.1f%n", job.getId(), job.getWeight(),
+                        summary.getPagesCrawled(), summary.getPagesFailed(), job.getTasksRun(),
+                        (submittedAt.get(i) - startNanos) / 1e9, summary.getElapsedMs() / 1000.0);
+            }
+            System.out.printf("Server: %d requests, %d errors, %d throttled%n",
+                    server.getRequests(), server.getErrors(), server.getThrottled());
+        }
+    }
+
+    /**
+     * Prints the tasks each job got in the last second until every job is done.
+     */
+    private static void sample(List<CrawlJob> jobs, long startNanos) {
+        List<Long> last = new ArrayList<>();
+        while (true) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            StringBuilder line = new StringBuilder(String.format("%5.1f s:", (System.nanoTime() - startNanos) / 1e9));
+            synchronized (jobs) {
+                for (int i = 0; i < jobs.size(); i++) {
+                    CrawlJob job = jobs.get(i);
+                    long tasks = job.getTasksRun();
+                    long delta = tasks - (i < last.size() ? last.get(i) : 0);
+                    if (i < last.size()) {
+                        last.set(i, tasks);
+                    } else {
+                        last.add(tasks);
+                    }
+                    line.append(String.format("  job %d (w%d) %s%4d", job.getId(), job.getWeight(),
+                            job.isDone() ? "done" : "    ", delta));
+                }
+            }
+            System.out.println(line);
+            synchronized (jobs) {
+                if (jobs.stream().allMatch(CrawlJob::isDone)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static ResultSink discardingSink() {
+        return new ResultSink() {
+            @Override
+            public void accept(CrawlResult result) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,156 @@
+package com.webcrawler.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic HTML pages shaped like real sites: a head with metadata,
+ * stylesheets and inline scripts (which contain markup-looking strings the
+ * scanner must skip), navigation menus, an article body with inline links of
+ * every flavour (absolute, relative, root-relative, dot segments, queries,
+ * fragments, mailto and javascript), comments, tables, entities and a footer.
+ * The same size and seed always give the same page.
+ */
+public final class HtmlCorpus {
+
+    public enum Size {
+        SMALL(8 * 1024),
+        MEDIUM(64 * 1024),
+        LARGE(512 * 1024);
+
+        private final int targetBytes;
+
+        Size(int targetBytes) {
+            this.targetBytes = targetBytes;
+        }
+
+        public int getTargetBytes() {
+            return targetBytes;
+        }
+    }
+
+    public static final String PAGE_URL = "https://shop.example.com/catalogue/category/books/travel_2/index.html";
+
+    private static final String[] WORDS = {
+            "travel", "guide", "mountain", "river", "coast", "history", "city", "market", "season", "journey",
+            "review", "price", "stock", "edition", "author", "chapter", "map", "route", "harbour", "valley",
+            "caf\u00e9", "na\u00efve", "stra\u00dfe", "\u65c5\u884c", "\u0434\u043e\u0440\u043e\u0433\u0430"
+    };
+
+    private HtmlCorpus() {
+    }
+
+    public static String page(Size size, long seed) {
+        Random random = new Random(seed);
+        StringBuilder html = new StringBuilder(size.getTargetBytes() + 4096);
+        html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n")
+                .append("<meta charset=\"utf-8\">\n")
+                .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n")
+                .append("<title>Travel &amp; Adventure | Books to Scrape &#8211; Page ").append(seed).append("</title>\n")
+                .append("<link rel=\"stylesheet\" href=\"/static/css/styles.css?v=3.2.1\">\n")
+                .append("<link rel=\"canonical\" href=\"").append(PAGE_URL).append("\">\n")
+                .append("<style>\nbody{font-family:sans-serif}a[href^=\"http\"]::after{content:\"\\2197\"}\n")
+                .append(".nav>li{display:inline-block;margin:0 4px}\n</style>\n")
+                .append("<script>\nwindow.dataLayer=window.dataLayer||[];\n")
+                .append("var tpl = '<a href=\"/not-a-link\">x</a>'; if (a < b && c > d) { render(tpl); }\n")
+                .append("</script>\n</head>\n<body class=\"default\">\n");
+
+        html.append("<!-- navigation -->\n<header><nav><ul class=\"nav\">\n");
+        for (int i = 0; i < 30; i++) {
+            html.append("<li><a href=\"/catalogue/category/books/").append(word(random)).append('_').append(i)
+                    .append("/index.html\" class=\"nav-link\">").append(capitalise(word(random))).append("</a></li>\n");
+        }
+        html.append("</ul></nav></header>\n<main>\n<article class=\"product_page\">\n");
+
+        int section = 0;
+        while (html.length() < size.getTargetBytes() - 2048) {
+            appendSection(html, random, section++);
+        }
+
+        html.append("</article>\n</main>\n<footer>\n<!-- footer links -->\n<ul>\n");
+        for (int i = 0; i < 12; i++) {
+            html.append("<li><a href=\"https://www.example.org/about/").append(word(random))
+                    .append("\" rel=\"nofollow noopener\">").append(word(random)).append("</a></li>\n");
+        }
+        html.append("</ul>\n<p>&copy; 2024 Books to Scrape &middot; <a href=\"mailto:info@example.com\">Contact</a></p>\n")
+                .append("</footer>\n<script src=\"/static/js/app.min.js\" defer></script>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    public static byte[] pageBytes(Size size, long seed) {
+        return page(size, seed).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendSection(StringBuilder html, Random random, int section) {
+        html.append("<section id=\"s").append(section).append("\">\n<h2>").append(capitalise(word(random)))
+                .append(' ').append(word(random)).append("</h2>\n");
+        for (int p = 0; p < 4; p++) {
+            html.append("<p>");
+            int words = 30 + random.nextInt(50);
+            for (int w = 0; w < words; w++) {
+                if (random.nextInt(12) == 0) {
+                    appendInlineLink(html, random);
+                } else {
+                    html.append(word(random));
+                }
+                html.append(random.nextInt(15) == 0 ? ". " : " ");
+            }
+            html.append("</p>\n");
+        }
+        if (section % 3 == 0) {
+            html.append("<table class=\"table table-striped\">\n");
+            for (int r = 0; r < 6; r++) {
+                html.append("<tr><th>").append(capitalise(word(random))).append("</th><td>&pound;")
+                        .append(random.nextInt(90) + 10).append('.').append(random.nextInt(90) + 10)
+                        .append("</td></tr>\n");
+            }
+            html.append("</table>\n");
+        }
+        if (section % 5 == 0) {
+            html.append("<!-- <a href=\"/commented-out\">hidden</a> -->\n");
+        }
+        html.append("</section>\n");
+    }
+
+    private static void appendInlineLink(StringBuilder html, Random random) {
+        String href;
+        switch (random.nextInt(9)) {
+            case 0:
+                href = "https://books.example.net/" + word(random) + "/" + random.nextInt(10_000);
+                break;
+            case 1:
+                href = "../../" + word(random) + "_" + random.nextInt(1000) + "/index.html";
+                break;
+            case 2:
+                href = "/catalogue/" + word(random) + "-" + random.nextInt(1000) + "/index.html";
+                break;
+            case 3:
+                href = "page-" + random.nextInt(50) + ".html";
+                break;
+            case 4:
+                href = "/search?q=" + word(random) + "&amp;page=" + random.nextInt(20) + "&amp;utm_source=nav";
+                break;
+            case 5:
+                href = "#section-" + random.nextInt(20);
+                break;
+            case 6:
+                href = "./" + word(random) + "/./../" + word(random) + ".html#top";
+                break;
+            case 7:
+                href = "javascript:void(0)";
+                break;
+            default:
+                href = "HTTPS://Shop.Example.COM:443/catalogue/" + word(random) + "/?sort=asc&amp;b=2&amp;a=1";
+        }
+        html.append("<a href=\"").append(href).append("\" title=\"").append(word(random)).append("\">")
+                .append(word(random)).append("</a>");
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalise(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
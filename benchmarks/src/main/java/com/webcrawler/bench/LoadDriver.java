@@ -0,0 +1,299 @@
+package com.webcrawler.bench;
+
+import com.webcrawler.config.CrawlerConfig;
+import com.webcrawler.config.FetchMode;
+import com.webcrawler.config.ScoringPolicy;
+import com.webcrawler.core.WebCrawler;
+import com.webcrawler.metrics.CrawlMetrics;
+import com.webcrawler.metrics.LatencyHistogram;
+import com.webcrawler.metrics.Stage;
+import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlSummary;
+import com.webcrawler.model.CrawlTimings;
+import com.webcrawler.sink.ResultSink;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test: starts a {@link SyntheticWeb} and crawls it once for
+ * every combination of thread count and per-host rate, reporting pages per
+ * second, fetch latency percentiles, peak heap, GC and CPU for each run.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.webcrawler.bench.LoadDriver \
+ *     --threads 8,32,64 --permits 20,100 --hosts 8 --pages 500 --fanout 10 \
+ *     --body 16384 --latency 5,50 --sigma 0.5 --error-rate 0.01 --throttle-rate 0.01 --mode ASYNC
+ * </pre>
+ *
+ * {@code --sitemaps} serves a sitemap on every host and has the crawler seed from them.
+ * {@code --scoring OPIC} (or {@code DEPTH}, {@code IN_LINKS}) crawls best-first
+ * instead of FIFO; combine it with {@code --max-pages} below the page count.
+ * {@code --gzip} compresses pages and {@code --binary-rate 0.2} points a share
+ * of the links at PDFs, to compare bytes received with {@code --no-compression},
+ * {@code --max-body BYTES} and {@code --head-probe}.
+ * {@code --pipeline} runs fetch, parse and admission as separate stages, with
+ * {@code --threads} as the fetch stage and {@code --parse-threads} and
+ * {@code --admission-threads} for the others; {@code --virtual} fetches on
+ * virtual threads where the JVM has them.
+ * {@code --link-graph FILE} exports the crawl's link graph after each run.
+ * {@code --capacity N} makes the server slow down past N concurrent requests
+ * and fail past 2N; compare a fixed {@code --threads} with {@code --adaptive},
+ * which treats it as the upper bound ({@code --in-flight} for ASYNC) and
+ * starts from {@code --min-concurrency}.
+ *
+ * The server runs in the same JVM, so heap and CPU include its share; use
+ * {@code --serve} to run the server alone and crawl it from another process.
+ */
+public class LoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        try (SyntheticWeb server = syntheticWeb(options).start()) {
+            System.out.println("Synthetic web: " + server);
+            System.out.println("Seed: " + server.seedUrl());
+            if (options.containsKey("serve")) {
+                System.out.println("Serving until interrupted.");
+                Thread.currentThread().join();
+                return;
+            }
+
+            FetchMode mode = FetchMode.valueOf(options.getOrDefault("mode", "BLOCKING"));
+            ScoringPolicy scoring = ScoringPolicy.valueOf(options.getOrDefault("scoring", "FIFO"));
+            int maxPages = intOption(options, "max-pages", server.pageCount());
+            List<String> rows = new ArrayList<>();
+            for (int threads : ints(options.getOrDefault("threads", "8,32"))) {
+                for (int permits : ints(options.getOrDefault("permits", "50"))) {
+                    CrawlerConfig config = new CrawlerConfig.Builder()
+                            .maxThreads(threads)
+                            .permitsPerSecond(permits)
+                            .maxPages(maxPages)
+                            .maxDepth(Integer.MAX_VALUE - 1)
+                            .expectedUrls(server.pageCount())
+                            .fetchMode(mode)
+                            .maxInFlightRequests(intOption(options, "in-flight", 256))
+                            .sitemapSeeding(options.containsKey("sitemaps"))
+                            .scoringPolicy(scoring)
+                            .acceptCompression(!options.containsKey("no-compression"))
+                            .maxBodyBytes(intOption(options, "max-body", 4 * 1024 * 1024))
+                            .headProbe(options.containsKey("head-probe"))
+                            .stagedPipeline(options.containsKey("pipeline"))
+                            .virtualFetchThreads(options.containsKey("virtual"))
+                            .parseParallelism(intOption(options, "parse-threads",
+                                    Runtime.getRuntime().availableProcessors()))
+                            .admissionThreads(intOption(options, "admission-threads", 1))
+                            .adaptiveConcurrency(options.containsKey("adaptive"))
+                            .minConcurrency(intOption(options, "min-concurrency", 4))
+                            .linkGraphFile(options.containsKey("link-graph") ? Paths.get(options.get("link-graph")) : null)
+                            .userAgent("ArachneLoadDriver/1.0")
+                            .build();
+                    rows.add(run(config, server.seedUrl()));
+                }
+            }
+
+            // The crawler logs while it runs, so the table is printed once at the end.
+            System.out.println();
+            System.out.printf("%-8s %8s %7s %7s %9s %8s %8s %8s %8s %9s %8s %7s %6s %9s %7s %6s%n",
+                    "threads", "permits", "pages", "failed", "pages/s", "p50 ms", "p90 ms", "p99 ms",
+                    "qwait50", "heap MB", "gc ms", "gc #", "cpus", "rx KB", "skipped", "limit");
+            rows.forEach(System.out::println);
+            System.out.printf("Server: %d requests, %d errors, %d throttled, %d KB sent%n",
+                    server.getRequests(), server.getErrors(), server.getThrottled(),
+                    server.getBytesSent() / 1024);
+        }
+    }
+
+    /**
+     * The synthetic web described by the command line options.
+     */
+    static SyntheticWeb.Builder syntheticWeb(Map<String, String> options) {
+        SyntheticWeb.Builder web = new SyntheticWeb.Builder()
+                .hosts(intOption(options, "hosts", 4))
+                .pagesPerHost(intOption(options, "pages", 1000))
+                .fanOut(intOption(options, "fanout", 10))
+                .bodyBytes(intOption(options, "body", 16 * 1024))
+                .errorRate(doubleOption(options, "error-rate", 0))
+                .throttleRate(doubleOption(options, "throttle-rate", 0))
+                .crossHostLinkRate(doubleOption(options, "cross-host", 0.2))
+                .sitemaps(options.containsKey("sitemaps"))
+                .gzip(options.containsKey("gzip"))
+                .binaryLinkRate(doubleOption(options, "binary-rate", 0))
+                .capacity(intOption(options, "capacity", 0))
+                .seed(Long.parseLong(options.getOrDefault("seed", "42")));
+        double[] latency = doubles(options.getOrDefault("latency", "5,50"));
+        web.latency(latency[0], latency.length > 1 ? latency[1] : latency[0], doubleOption(options, "sigma", 0.5));
+        return web;
+    }
+
+    private static String run(CrawlerConfig config, String seedUrl) throws InterruptedException {
+        System.gc();
+        LatencyHistogram fetchLatency = new LatencyHistogram();
+        ResultSink sink = new ResultSink() {
+            @Override
+            public void accept(CrawlResult result) {
+                CrawlTimings timings = result.getTimings();
+                if (timings != null) {
+                    fetchLatency.record(Math.max(0, timings.getConnectNanos()) + timings.getFirstByteNanos()
+                            + timings.getDownloadNanos() + timings.getParseNanos());
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        WebCrawler crawler = new WebCrawler(config, sink);
+
+        ResourceSampler sampler = new ResourceSampler();
+        sampler.start();
+        long startNanos = System.nanoTime();
+        CrawlSummary summary = crawler.crawlAsync(seedUrl).join();
+        long wallNanos = System.nanoTime() - startNanos;
+        sampler.stop();
+
+        CrawlMetrics metrics = crawler.getMetrics();
+        LatencyHistogram queueWait = metrics.histogram(Stage.QUEUE_WAIT);
+        double seconds = wallNanos / 1e9;
+        return String.format("%-8d %8d %7d %7d %9.1f %8.2f %8.2f %8.2f %8.2f %9.1f %8d %7d %6.2f %9d %7d %6s",
+                config.getMaxThreads(), config.getPermitsPerSecond(), summary.getPagesCrawled(),
+                summary.getPagesFailed(), (summary.getPagesCrawled() + summary.getPagesFailed()) / seconds,
+                millis(fetchLatency.percentileNanos(0.50)), millis(fetchLatency.percentileNanos(0.90)),
+                millis(fetchLatency.percentileNanos(0.99)), millis(queueWait.percentileNanos(0.50)),
+                sampler.peakHeapBytes / (1024.0 * 1024.0), sampler.gcMillis(), sampler.gcCount(),
+                sampler.cpuNanos() / (double) wallNanos, metrics.getWireBytes() / 1024,
+                metrics.getSkippedContentCount(),
+                metrics.getConcurrencyLimit() > 0 ? Integer.toString(metrics.getConcurrencyLimit()) : "-");
+    }
+
+    /**
+     * Samples heap use every 20 ms and takes GC and process CPU totals at the
+     * start and end of a run.
+     */
+    private static class ResourceSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private volatile boolean running;
+        private Thread thread;
+        private long peakHeapBytes;
+        private long startGcMillis;
+        private long startGcCount;
+        private long endGcMillis;
+        private long endGcCount;
+        private long startCpu;
+        private long endCpu;
+
+        void start() {
+            startGcMillis = totalGcMillis();
+            startGcCount = totalGcCount();
+            startCpu = processCpuNanos();
+            running = true;
+            thread = new Thread(() -> {
+                while (running) {
+                    peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(20);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "resource-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            peakHeapBytes = Math.max(peak.get(), memory.getHeapMemoryUsage().getUsed());
+            endGcMillis = totalGcMillis();
+            endGcCount = totalGcCount();
+            endCpu = processCpuNanos();
+        }
+
+        long gcMillis() {
+            return endGcMillis - startGcMillis;
+        }
+
+        long gcCount() {
+            return endGcCount - startGcCount;
+        }
+
+        long cpuNanos() {
+            return endCpu - startCpu;
+        }
+
+        private static long totalGcMillis() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionTime());
+            }
+            return total;
+        }
+
+        private static long totalGcCount() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionCount());
+            }
+            return total;
+        }
+
+        private static long processCpuNanos() {
+            java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+            }
+            return 0;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String key = args[i].substring(2);
+            boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+            options.put(key, hasValue ? args[++i] : "true");
+        }
+        return options;
+    }
+
+    static int intOption(Map<String, String> options, String key, int defaultValue) {
+        return options.containsKey(key) ? Integer.parseInt(options.get(key)) : defaultValue;
+    }
+
+    static double doubleOption(Map<String, String> options, String key, double defaultValue) {
+        return options.containsKey(key) ? Double.parseDouble(options.get(key)) : defaultValue;
+    }
+
+    private static List<Integer> ints(String csv) {
+        List<Integer> values = new ArrayList<>();
+        for (String value : csv.split(",")) {
+            values.add(Integer.parseInt(value.trim()));
+        }
+        return values;
+    }
+
+    private static double[] doubles(String csv) {
+        String[] parts = csv.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+}
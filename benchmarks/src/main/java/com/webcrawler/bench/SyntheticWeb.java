@@ -0,0 +1,436 @@
+package com.webcrawler.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A deterministic web served from localhost. Every host is its own
+ * {@link HttpServer} on its own port, so the crawler sees distinct hosts and
+ * applies per-host politeness to each. Page {@code /p/N} of a host always has
+ * the same links: a link to page N+1 (so the whole graph is reachable from
+ * {@link #seedUrl()}) and {@code fanOut - 1} pseudo-random ones, some of them
+ * to other hosts. Response latency, 5xx errors and 429s are random per
+ * request, drawn from the configured distributions. With {@code sitemaps}
+ * on, each host also serves a robots.txt pointing at a sitemap of all its
+ * pages; otherwise robots.txt is a 404. With {@code gzip} on, pages are
+ * compressed for clients that accept it, and a share of the links can point
+ * at binary files ({@code /f/N.pdf}) to measure what skipping them saves.
+ * With a {@code capacity}, the web behaves like one shared backend: past that
+ * many concurrent requests every response slows in proportion, and past
+ * twice that many requests are answered 503, so throughput has a peak a
+ * client can overshoot.
+ */
+public class SyntheticWeb implements AutoCloseable {
+    private static final String FILLER = "synthetic page text for the crawler load harness with some variety ";
+
+    private final Builder config;
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final int[] ports;
+    private final ExecutorService handlerPool;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+    private final byte[] binaryBody;
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle's algorithm on,
+        // the body waits for the client's delayed ACK and every response gains ~40 ms.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private SyntheticWeb(Builder config) throws IOException {
+        this.config = config;
+        this.ports = new int[config.hosts];
+        this.binaryBody = new byte[config.binaryBytes];
+        new Random(config.seed).nextBytes(binaryBody);
+        AtomicInteger threadIds = new AtomicInteger();
+        // Handlers sleep to simulate latency, so each request needs its own thread.
+        this.handlerPool = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "synthetic-web-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int host = 0; host < config.hosts; host++) {
+                HttpServer server = HttpServer.create(
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), config.backlog);
+                int hostIndex = host;
+                server.createContext("/", exchange -> handle(hostIndex, exchange));
+                server.setExecutor(handlerPool);
+                server.start();
+                servers.add(server);
+                ports[host] = server.getAddress().getPort();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public String seedUrl() {
+        return pageUrl(0, 0);
+    }
+
+    public String pageUrl(int host, int page) {
+        return baseUrl(host) + "/p/" + page;
+    }
+
+    private String baseUrl(int host) {
+        return "http://127.0.0.1:" + ports[host];
+    }
+
+    /** Number of distinct pages in the graph. */
+    public int pageCount() {
+        return config.hosts * config.pagesPerHost;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    /** Response body bytes written, after compression. */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    private void handle(int host, HttpExchange exchange) throws IOException {
+        requests.increment();
+        int concurrent = active.incrementAndGet();
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delayMicros = latencyMicros(host, random);
+            if (config.capacity > 0 && concurrent > config.capacity) {
+                delayMicros = delayMicros * concurrent / config.capacity;
+            }
+            if (delayMicros > 0) {
+                TimeUnit.MICROSECONDS.sleep(delayMicros);
+            }
+            if (config.capacity > 0 && concurrent > 2 * config.capacity) {
+                errors.increment();
+                respond(exchange, 503, "text/plain", "overloaded".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if (config.sitemaps && path.equals("/robots.txt")) {
+                String robots = "User-agent: *\nDisallow:\nSitemap: " + baseUrl(host) + "/sitemap.xml\n";
+                respond(exchange, 200, "text/plain", robots.getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            if (config.sitemaps && path.equals("/sitemap.xml")) {
+                respond(exchange, 200, "application/xml", sitemap(host));
+                return;
+            }
+            if (path.startsWith("/f/")) {
+                respond(exchange, 200, "application/pdf", binaryBody);
+                return;
+            }
+            int page = pageOf(path);
+            if (page < 0) {
+                respond(exchange, 404, "text/plain", "not found".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            double roll = random.nextDouble();
+            if (roll < config.throttleRate) {
+                throttled.increment();
+                exchange.getResponseHeaders().add("Retry-After", Integer.toString(config.retryAfterSeconds));
+                respond(exchange, 429, "text/plain", "slow down".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            if (roll < config.throttleRate + config.errorRate) {
+                errors.increment();
+                respond(exchange, 503, "text/plain", "unavailable".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            byte[] html = render(host, page);
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (config.gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                html = gzip(html);
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            respond(exchange, 200, "text/html; charset=utf-8", html);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+            bytesSent.add(body.length);
+        } catch (IOException e) {
+            // The client hung up after the headers, which is how it skips a body.
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+
+    private int pageOf(String path) {
+        if (!path.startsWith("/p/")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(path.substring(3));
+            return page >= 0 && page < config.pagesPerHost ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Log-normal latency around the host's median. Hosts get different
+     * medians, spread evenly between the configured minimum and maximum.
+     */
+    private long latencyMicros(int host, ThreadLocalRandom random) {
+        double median = config.hosts == 1 ? config.minLatencyMs
+                : config.minLatencyMs + (config.maxLatencyMs - config.minLatencyMs) * host / (config.hosts - 1.0);
+        if (median <= 0) {
+            return 0;
+        }
+        double millis = median * Math.exp(config.latencySigma * random.nextGaussian());
+        return (long) (millis * 1000);
+    }
+
+    byte[] render(int host, int page) {
+        StringBuilder html = new StringBuilder(config.bodyBytes + 512);
+        html.append("<!DOCTYPE html><html><head><title>Host ").append(host).append(" page ").append(page)
+                .append("</title></head><body><h1>Page ").append(page).append("</h1><ul>");
+        for (int k = 0; k < config.fanOut; k++) {
+            int[] target = linkTarget(host, page, k);
+            String path = isBinaryLink(host, page, k) ? "/f/" + target[1] + ".pdf" : "/p/" + target[1];
+            String href = target[0] == host ? path : baseUrl(target[0]) + path;
+            html.append("<li><a href=\"").append(href).append("\">link ").append(k).append("</a></li>");
+        }
+        html.append("</ul><p>");
+        long words = mix(config.seed, host, page, -1);
+        while (html.length() < config.bodyBytes) {
+            html.append(FILLER, 0, 10 + (int) ((words >>> 1) % (FILLER.length() - 10)));
+            html.append(Long.toHexString(words & 0xffff)).append(' ');
+            words = mix(words, host, page, html.length());
+        }
+        html.append("</p></body></html>");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] sitemap(int host) {
+        StringBuilder xml = new StringBuilder(64 * config.pagesPerHost + 128);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        for (int page = 0; page < config.pagesPerHost; page++) {
+            xml.append("<url><loc>").append(pageUrl(host, page)).append("</loc></url>\n");
+        }
+        xml.append("</urlset>\n");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns {host, page} for the k-th link of a page. */
+    private int[] linkTarget(int host, int page, int k) {
+        if (k == 0) {
+            // The chain through every page of a host, then on to the next host
+            return page + 1 < config.pagesPerHost
+                    ? new int[]{host, page + 1}
+                    : new int[]{(host + 1) % config.hosts, 0};
+        }
+        long h = mix(config.seed, host, page, k);
+        int targetHost = host;
+        if (config.hosts > 1 && (h & 0xffff) / 65536.0 < config.crossHostLinkRate) {
+            targetHost = (int) ((h >>> 16) % config.hosts);
+        }
+        int targetPage = (int) ((h >>> 32) % config.pagesPerHost);
+        return new int[]{targetHost, targetPage};
+    }
+
+    /** Whether the k-th link of a page points at a binary file instead of a page. */
+    private boolean isBinaryLink(int host, int page, int k) {
+        return k > 0 && config.binaryLinkRate > 0
+                && (mix(~config.seed, host, page, k) & 0xffff) / 65536.0 < config.binaryLinkRate;
+    }
+
+    private static long mix(long seed, int host, int page, int k) {
+        long h = seed ^ (host * 0x9E3779B97F4A7C15L) ^ (page * 0xC2B2AE3D27D4EB4FL) ^ (k * 0x165667B19E3779F9L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h & Long.MAX_VALUE;
+    }
+
+    @Override
+    public void close() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+        handlerPool.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hosts x %d pages, fan-out %d, %d-byte bodies, latency %.1f-%.1f ms (sigma %.2f), "
+                        + "%.1f%% errors, %.1f%% 429s%s, %.1f%% binary links%s",
+                config.hosts, config.pagesPerHost, config.fanOut, config.bodyBytes, config.minLatencyMs,
+                config.maxLatencyMs, config.latencySigma, config.errorRate * 100, config.throttleRate * 100,
+                config.gzip ? ", gzip" : "", config.binaryLinkRate * 100,
+                config.capacity > 0 ? ", capacity " + config.capacity : "");
+    }
+
+    public static class Builder {
+        private int hosts = 4;
+        private int pagesPerHost = 1000;
+        private int fanOut = 10;
+        private int bodyBytes = 16 * 1024;
+        private double minLatencyMs = 5; // Median latency of the fastest host
+        private double maxLatencyMs = 50; // Median latency of the slowest host
+        private double latencySigma = 0.5; // Log-normal spread around each host's median
+        private double errorRate = 0.0;
+        private double throttleRate = 0.0;
+        private int retryAfterSeconds = 1;
+        private double crossHostLinkRate = 0.2;
+        private boolean sitemaps = false;
+        private boolean gzip = false; // Compress pages for clients that send Accept-Encoding: gzip
+        private double binaryLinkRate = 0.0; // Share of links (besides the chain) to /f/N.pdf files
+        private int binaryBytes = 64 * 1024;
+        private int backlog = 1024;
+        private int capacity = 0; // Concurrent requests served at full speed across all hosts; 0 for no limit
+        private long seed = 42;
+
+        public Builder hosts(int hosts) {
+            this.hosts = Math.max(1, hosts);
+            return this;
+        }
+
+        public Builder pagesPerHost(int pages) {
+            this.pagesPerHost = Math.max(1, pages);
+            return this;
+        }
+
+        public Builder fanOut(int fanOut) {
+            this.fanOut = Math.max(1, fanOut);
+            return this;
+        }
+
+        public Builder bodyBytes(int bytes) {
+            this.bodyBytes = Math.max(0, bytes);
+            return this;
+        }
+
+        public Builder latency(double minMedianMs, double maxMedianMs, double sigma) {
+            if (minMedianMs < 0 || maxMedianMs < minMedianMs || sigma < 0) {
+                throw new IllegalArgumentException("Latency needs 0 <= min <= max and a non-negative sigma.");
+            }
+            this.minLatencyMs = minMedianMs;
+            this.maxLatencyMs = maxMedianMs;
+            this.latencySigma = sigma;
+            return this;
+        }
+
+        public Builder errorRate(double rate) {
+            this.errorRate = checkRate(rate);
+            return this;
+        }
+
+        public Builder throttleRate(double rate) {
+            this.throttleRate = checkRate(rate);
+            return this;
+        }
+
+        public Builder retryAfterSeconds(int seconds) {
+            this.retryAfterSeconds = Math.max(0, seconds);
+            return this;
+        }
+
+        public Builder crossHostLinkRate(double rate) {
+            this.crossHostLinkRate = checkRate(rate);
+            return this;
+        }
+
+        public Builder sitemaps(boolean enabled) {
+            this.sitemaps = enabled;
+            return this;
+        }
+
+        public Builder gzip(boolean enabled) {
+            this.gzip = enabled;
+            return this;
+        }
+
+        public Builder binaryLinkRate(double rate) {
+            this.binaryLinkRate = checkRate(rate);
+            return this;
+        }
+
+        public Builder binaryBytes(int bytes) {
+            this.binaryBytes = Math.max(0, bytes);
+            return this;
+        }
+
+        public Builder capacity(int concurrentRequests) {
+            this.capacity = Math.max(0, concurrentRequests);
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticWeb start() throws IOException {
+            if (errorRate + throttleRate > 1) {
+                throw new IllegalArgumentException("Error and 429 rates must add up to at most 1.");
+            }
+            return new SyntheticWeb(this);
+        }
+
+        private static double checkRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rates must be between 0 and 1.");
+            }
+            return rate;
+        }
+    }
+}
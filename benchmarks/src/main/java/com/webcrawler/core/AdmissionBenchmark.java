@@ -0,0 +1,122 @@
+package com.webcrawler.core;
+
+import com.webcrawler.config.CrawlerConfig;
+import com.webcrawler.config.VisitedSetType;
+import com.webcrawler.model.CrawlTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URL admission under contention: eight threads offering links from a shared
+ * pool, as workers do when they expand pages at the same time. Every thread
+ * starts at its own offset, so early calls admit new URLs and later ones
+ * mostly hit duplicates, like a real crawl. State is rebuilt every iteration.
+ * {@link #admitPage} offers a page of {@value #PAGE_LINKS} links per call, a
+ * quarter of them repeated on the page, through the batch path; divide its
+ * score by the links per page to compare it with {@link #addTask}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+@State(Scope.Benchmark)
+public class AdmissionBenchmark {
+    private static final int POOL_SIZE = 1 << 20;
+    private static final int HOSTS = 64;
+    static final int PAGE_LINKS = 40;
+    private static final CrawlTask PARENT = new CrawlTask("https://host0.example.com/", 0);
+
+    @Param({"FINGERPRINT", "BLOOM", "BLOOM_FINGERPRINT"})
+    public VisitedSetType visitedSetType;
+
+    private final String[] urls = new String[POOL_SIZE];
+    private VisitedSet visitedSet;
+    private WebCrawler crawler;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = ThreadLocalRandom.current().nextInt(POOL_SIZE);
+
+        private final List<String> page = new ArrayList<>(PAGE_LINKS);
+
+        int next() {
+            index = (index + 1) & (POOL_SIZE - 1);
+            return index;
+        }
+
+        /** The next page's links; every fourth one repeats the link before it. */
+        List<String> nextPage(String[] urls) {
+            page.clear();
+            for (int i = 0; i < PAGE_LINKS; i++) {
+                page.add(i % 4 == 3 ? page.get(i - 1) : urls[next()]);
+            }
+            return page;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createPool() {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            urls[i] = "https://host" + (i % HOSTS) + ".example.com/catalogue/item-" + i + "/index.html";
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        CrawlerConfig config = new CrawlerConfig.Builder()
+                .maxDepth(10)
+                .maxPages(POOL_SIZE / 4)
+                .visitedSetType(visitedSetType)
+                .expectedUrls(POOL_SIZE)
+                .respectRobotsTxt(false) // The pool's hosts do not exist
+                .build();
+        crawler = new WebCrawler(config);
+        switch (visitedSetType) {
+            case BLOOM:
+                visitedSet = new BloomVisitedSet(POOL_SIZE, config.getBloomFalsePositiveRate());
+                break;
+            case BLOOM_FINGERPRINT:
+                visitedSet = new BloomVisitedSet(POOL_SIZE, config.getBloomFalsePositiveRate(),
+                        new FingerprintVisitedSet(POOL_SIZE));
+                break;
+            default:
+                visitedSet = new FingerprintVisitedSet(POOL_SIZE);
+        }
+    }
+
+    /** The visited-set check on its own. */
+    @Benchmark
+    public boolean visitedSetAdd(Cursor cursor) {
+        return visitedSet.add(urls[cursor.next()]);
+    }
+
+    /** The whole admission path: depth check, visited set, page budget and frontier. */
+    @Benchmark
+    public void addTask(Cursor cursor) {
+        crawler.addTask(new CrawlTask(urls[cursor.next()], 1));
+    }
+
+    /** The batch path for one page: in-page dedup, one budget reservation, host-grouped enqueue. */
+    @Benchmark
+    public void admitPage(Cursor cursor) {
+        crawler.admitLinks(PARENT, cursor.nextPage(urls));
+    }
+}
@@ -0,0 +1,84 @@
+package com.webcrawler.service;
+
+import com.webcrawler.bench.HtmlCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title and link extraction over the HTML corpus. {@code scanStream} is the
+ * path fetched pages take (bytes fed in network-sized chunks);
+ * {@code extractLinks} and {@code extractTitle} are the string entry points.
+ * Run with {@code -prof gc} to see bytes allocated per page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+    private static final int CHUNK_SIZE = 8192;
+    private static final int PAGES = 16;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public HtmlCorpus.Size size;
+
+    private final HttpClient client = new HttpClient("ArachneBenchmark/1.0", 1000, 1000);
+    private String[] pages;
+    private byte[][] pageBytes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        pages = new String[PAGES];
+        pageBytes = new byte[PAGES][];
+        for (int i = 0; i < PAGES; i++) {
+            pages[i] = HtmlCorpus.page(size, i);
+            pageBytes[i] = pages[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public ParsedPage scanStream() {
+        byte[] bytes = pageBytes[nextPage()];
+        ParsedPage.Collector collector = new ParsedPage.Collector(HtmlCorpus.PAGE_URL);
+        HtmlScanner scanner = new HtmlScanner(collector, StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            buffer.limit(Math.min(bytes.length, offset + CHUNK_SIZE)).position(offset);
+            scanner.feed(buffer);
+        }
+        scanner.finish();
+        return collector.build(scanner.contentHash());
+    }
+
+    @Benchmark
+    public List<String> extractLinks() {
+        return client.extractLinks(pages[nextPage()], HtmlCorpus.PAGE_URL);
+    }
+
+    @Benchmark
+    public String extractTitle() {
+        return client.extractTitle(pages[nextPage()]);
+    }
+
+    private int nextPage() {
+        int page = next;
+        next = (page + 1) % PAGES;
+        return page;
+    }
+}
@@ -0,0 +1,75 @@
+package com.webcrawler.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limiter throughput with eight threads. With one host every thread races on
+ * the same bucket; with 64 they mostly touch different ones. {@code granted}
+ * uses a rate high enough that every call succeeds, {@code rejected} one so
+ * low that almost every call is turned away, which is the common case for a
+ * busy host in a large crawl.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "64"})
+    public int hosts;
+
+    private final RateLimiter unbounded = new RateLimiter(1_000_000_000);
+    private final RateLimiter saturated = new RateLimiter(1);
+    private String[] hostNames;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = ThreadLocalRandom.current().nextInt(1024);
+
+        int next(int bound) {
+            index = (index + 1) & Integer.MAX_VALUE;
+            return index % bound;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        hostNames = new String[hosts];
+        for (int i = 0; i < hosts; i++) {
+            hostNames[i] = "host" + i + ".example.com";
+        }
+    }
+
+    @Benchmark
+    public long granted(Cursor cursor) {
+        return unbounded.tryAcquire(hostNames[cursor.next(hosts)]);
+    }
+
+    @Benchmark
+    public long rejected(Cursor cursor) {
+        return saturated.tryAcquire(hostNames[cursor.next(hosts)]);
+    }
+
+    /** The feedback path every completed request takes. */
+    @Benchmark
+    public void onResponse(Cursor cursor) {
+        unbounded.onResponse(hostNames[cursor.next(hosts)], 200, 20_000_000L, null);
+    }
+}
@@ -0,0 +1,73 @@
+package com.webcrawler.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving one href against its page URL, for each kind of link the
+ * extractor meets. {@code javaNetUrl} is the {@link URL}-based resolution the
+ * canonicalizer replaced, kept as a baseline; it does no normalisation beyond
+ * dropping the fragment. Lives in the service package to reach the
+ * package-private {@code HttpClient.resolveUrl}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ResolveUrlBenchmark {
+    private static final String BASE = "https://shop.example.com/catalogue/category/books/travel_2/index.html";
+
+    @Param({
+            "https://books.example.net/guide/1234",
+            "../../mountain_17/index.html",
+            "/catalogue/river-42/index.html",
+            "page-7.html",
+            "/search?q=city&page=3&utm_source=nav",
+            "./market/./../season.html#top",
+            "HTTPS://Shop.Example.COM:443/catalogue/map/?sort=asc&b=2&a=1",
+            "#section-4",
+            "javascript:void(0)"
+    })
+    public String link;
+
+    @Benchmark
+    public Optional<String> resolve() {
+        return HttpClient.resolveUrl(link, BASE);
+    }
+
+    @Benchmark
+    public String canonicalizer() {
+        return UrlCanonicalizer.getDefault().resolve(link, BASE);
+    }
+
+    @Benchmark
+    public String javaNetUrl() {
+        String trimmed = link.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("mailto:")
+                || trimmed.startsWith("javascript:")) {
+            return null;
+        }
+        try {
+            String resolved = new URL(new URL(BASE), trimmed).toString();
+            int fragment = resolved.indexOf('#');
+            return fragment < 0 ? resolved : resolved.substring(0, fragment);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+}
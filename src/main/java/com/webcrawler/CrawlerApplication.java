@@ -2,9 +2,8 @@ package com.webcrawler;
 
 import com.webcrawler.config.CrawlerConfig;
 import com.webcrawler.core.WebCrawler;
-import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlSummary;
 
-import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -24,41 +23,46 @@ public class CrawlerApplication {
 
         // Build configuration
         CrawlerConfig config = new CrawlerConfig.Builder()
-                .maxThreads(50)
+                .maxThreads(50) // Upper bound; the adaptive limit finds the concurrency the sites sustain
+                .adaptiveConcurrency(true)
                 .maxDepth(10)
                 .maxPages(400)
                 .connectionTimeout(5000)
                 .readTimeout(10000)
-                .permitsPerSecond(50) // Allow 5 requests per second
+                .permitsPerSecond(50) // Allow 50 requests per second to each host
                 .userAgent("ConcurrentWebCrawler/1.0 (Arachne)")
+                .metricsReportInterval(5000) // Print stage latencies and status counts every 5 seconds
                 .build();
 
         System.out.println("\nConfiguration:");
         System.out.println("Max Threads: " + config.getMaxThreads());
+        System.out.println("Fetches in flight: adaptive, " + config.getMinConcurrency() + " to " + config.getMaxThreads());
         System.out.println("Max Depth: " + config.getMaxDepth());
         System.out.println("Max Pages: " + config.getMaxPages());
-        System.out.println("Requests per second: " + config.getPermitsPerSecond());
+        System.out.println("Requests per second per host: " + config.getPermitsPerSecond());
         System.out.println("Starting URL: " + startUrl);
         System.out.println("\nStarting crawl...\n");
 
         WebCrawler crawler = new WebCrawler(config);
         long startTime = System.currentTimeMillis();
 
-        crawler.crawl(startUrl);
+        CrawlSummary summary = crawler.crawl(startUrl);
 
         long totalTime = System.currentTimeMillis() - startTime;
-        List<CrawlResult> results = crawler.getResults();
+        int pagesCrawled = summary.getPagesCrawled();
 
         // Display results
         System.out.println("\n=== Crawl Results ===");
         System.out.println("Total time: " + totalTime + "ms");
-        System.out.println("Pages crawled: " + results.size());
-        if (!results.isEmpty()) {
-            System.out.println("Average time per page: " + (totalTime / results.size()) + "ms");
+        System.out.println("Outcome: " + summary.getOutcome());
+        System.out.println("Pages crawled: " + pagesCrawled);
+        System.out.println("Pages failed: " + summary.getPagesFailed());
+        if (pagesCrawled > 0) {
+            System.out.println("Average time per page: " + (totalTime / pagesCrawled) + "ms");
         }
 
 //        System.out.println("\nDetailed Results:");
-//        results.stream().forEach(System.out::println);
+//        crawler.getResults().stream().forEach(System.out::println);
 
 
         scanner.close();
@@ -0,0 +1,108 @@
+package com.webcrawler.checkpoint;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Layout and record encoding of a checkpoint directory.
+ *
+ * <pre>
+ * wal-NNNNNN.log       append-only log of ADMITTED and COMPLETED records
+ * snapshot-NNNNNN.bin  compaction of every log with a lower generation
+ * </pre>
+ *
+ * Snapshot generation G covers logs {@code 0..G-1}, so recovery loads the newest
+ * snapshot and replays the logs from generation G upwards.
+ */
+final class CheckpointFiles {
+    static final int SNAPSHOT_MAGIC = 0x41434b50; // "ACKP"
+    static final int SNAPSHOT_VERSION = 1;
+
+    static final byte ADMITTED = 'A';
+    static final byte COMPLETED = 'C';
+
+    private static final Pattern WAL_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private CheckpointFiles() {
+    }
+
+    static Path wal(Path directory, int generation) {
+        return directory.resolve(String.format("wal-%06d.log", generation));
+    }
+
+    static Path snapshot(Path directory, int generation) {
+        return directory.resolve(String.format("snapshot-%06d.bin", generation));
+    }
+
+    static List<Integer> walGenerations(Path directory) throws IOException {
+        return generations(directory, WAL_NAME);
+    }
+
+    static List<Integer> snapshotGenerations(Path directory) throws IOException {
+        return generations(directory, SNAPSHOT_NAME);
+    }
+
+    private static List<Integer> generations(Path directory, Pattern pattern) throws IOException {
+        List<Integer> generations = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return generations;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    generations.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    static void writeTask(DataOutputStream out, int depth, String url) throws IOException {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, depth);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readUrl(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
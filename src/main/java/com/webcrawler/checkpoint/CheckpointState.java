@@ -0,0 +1,115 @@
+package com.webcrawler.checkpoint;
+
+import com.webcrawler.core.UrlFingerprint;
+import com.webcrawler.model.CrawlTask;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Crawl state recovered from a checkpoint directory: the fingerprints of every
+ * admitted URL and the admitted tasks that had not completed yet.
+ */
+public class CheckpointState {
+    private final List<CrawlTask> pendingTasks;
+    private final long admittedCount;
+    private final long completedCount;
+    private final int nextGeneration;
+
+    private CheckpointState(List<CrawlTask> pendingTasks, long admittedCount, long completedCount,
+                            int nextGeneration) {
+        this.pendingTasks = pendingTasks;
+        this.admittedCount = admittedCount;
+        this.completedCount = completedCount;
+        this.nextGeneration = nextGeneration;
+    }
+
+    public List<CrawlTask> getPendingTasks() { return pendingTasks; }
+    public long getAdmittedCount() { return admittedCount; }
+    public long getCompletedCount() { return completedCount; }
+
+    /**
+     * Generation the next log written into this directory should use.
+     */
+    int getNextGeneration() { return nextGeneration; }
+
+    /**
+     * Loads the newest snapshot and replays the logs written after it. A record
+     * cut short by a crash ends the replay of its log.
+     *
+     * @param visited receives the fingerprint of every admitted URL
+     */
+    public static CheckpointState load(Path directory, LongConsumer visited) throws IOException {
+        Map<Long, CrawlTask> pending = new LinkedHashMap<>();
+        long admitted = 0;
+        long completed = 0;
+        int snapshotGeneration = 0;
+
+        List<Integer> snapshots = CheckpointFiles.snapshotGenerations(directory);
+        if (!snapshots.isEmpty()) {
+            snapshotGeneration = snapshots.get(snapshots.size() - 1);
+            try (DataInputStream in = open(CheckpointFiles.snapshot(directory, snapshotGeneration))) {
+                if (in.readInt() != CheckpointFiles.SNAPSHOT_MAGIC
+                        || in.readInt() != CheckpointFiles.SNAPSHOT_VERSION) {
+                    throw new IOException("Not a crawl checkpoint snapshot: " + directory);
+                }
+                in.readInt(); // generation, implied by the file name
+                admitted = in.readLong();
+                completed = in.readLong();
+                long fingerprints = in.readLong();
+                for (long i = 0; i < fingerprints; i++) {
+                    visited.accept(in.readLong());
+                }
+                long pendingCount = in.readLong();
+                for (long i = 0; i < pendingCount; i++) {
+                    int depth = CheckpointFiles.readVarInt(in);
+                    String url = CheckpointFiles.readUrl(in);
+                    pending.put(UrlFingerprint.of(url), new CrawlTask(url, depth));
+                }
+            }
+        }
+
+        int nextGeneration = snapshotGeneration;
+        for (int generation : CheckpointFiles.walGenerations(directory)) {
+            nextGeneration = Math.max(nextGeneration, generation + 1);
+            if (generation < snapshotGeneration) {
+                continue; // Already folded into the snapshot
+            }
+            try (DataInputStream in = open(CheckpointFiles.wal(directory, generation))) {
+                while (true) {
+                    int type = in.read();
+                    if (type == CheckpointFiles.ADMITTED) {
+                        int depth = CheckpointFiles.readVarInt(in);
+                        String url = CheckpointFiles.readUrl(in);
+                        long fingerprint = UrlFingerprint.of(url);
+                        visited.accept(fingerprint);
+                        pending.put(fingerprint, new CrawlTask(url, depth));
+                        admitted++;
+                    } else if (type == CheckpointFiles.COMPLETED) {
+                        pending.remove(in.readLong());
+                        completed++;
+                    } else {
+                        break; // End of log, or a torn final record
+                    }
+                }
+            } catch (EOFException e) {
+                // Torn final record from a crash; everything before it is intact.
+            }
+        }
+
+        return new CheckpointState(new ArrayList<>(pending.values()), admitted, completed, nextGeneration);
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+    }
+}
@@ -0,0 +1,405 @@
+package com.webcrawler.checkpoint;
+
+import com.webcrawler.core.FingerprintVisitedSet;
+import com.webcrawler.core.UrlFingerprint;
+import com.webcrawler.core.VisitedSet;
+import com.webcrawler.model.CrawlTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incremental crawl checkpointing. Workers only enqueue small records; a
+ * dedicated writer thread appends them to the current write-ahead log, fsyncs
+ * in batches at most once per sync interval, and periodically folds the logs
+ * into a compacted snapshot on the same thread, off the crawl's hot path.
+ */
+public class CrawlCheckpointer implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH = 4096;
+    // How often a worker waiting for queue space checks whether the writer has stopped
+    private static final long OFFER_TIMEOUT_MS = 100;
+    private static final Record STOP = new Record(CheckpointFiles.COMPLETED, null, 0);
+
+    private final Path directory;
+    private final long syncIntervalNanos;
+    private final long snapshotIntervalNanos;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+
+    private int generation;
+    private FileOutputStream walFile;
+    private DataOutputStream wal;
+    private boolean walDirty;
+    private long recordsSinceSnapshot;
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private volatile boolean closed;
+    // Set when the writer has given up after an I/O error
+    private volatile boolean failed;
+
+    private CrawlCheckpointer(Path directory, int generation, long syncIntervalMs, long snapshotIntervalMs)
+            throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMs);
+        this.snapshotIntervalNanos = TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMs);
+        openWal();
+
+        this.writerThread = new Thread(this::writeLoop, "crawl-checkpointer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Starts a new checkpoint, discarding any checkpoint already in the directory.
+     */
+    public static CrawlCheckpointer create(Path directory, long syncIntervalMs, long snapshotIntervalMs)
+            throws IOException {
+        Files.createDirectories(directory);
+        for (int generation : CheckpointFiles.walGenerations(directory)) {
+            Files.deleteIfExists(CheckpointFiles.wal(directory, generation));
+        }
+        for (int generation : CheckpointFiles.snapshotGenerations(directory)) {
+            Files.deleteIfExists(CheckpointFiles.snapshot(directory, generation));
+        }
+        return new CrawlCheckpointer(directory, 0, syncIntervalMs, snapshotIntervalMs);
+    }
+
+    /**
+     * Continues a checkpoint that was just recovered with {@link CheckpointState#load}.
+     * New records go into a fresh log, so a log torn by the crash is never appended to.
+     */
+    public static CrawlCheckpointer resume(Path directory, CheckpointState state,
+                                           long syncIntervalMs, long snapshotIntervalMs) throws IOException {
+        return new CrawlCheckpointer(directory, state.getNextGeneration(), syncIntervalMs, snapshotIntervalMs);
+    }
+
+    /**
+     * Must be called before the task is offered to the frontier, so that its
+     * completion can never be logged ahead of its admission.
+     */
+    public void recordAdmitted(CrawlTask task) {
+        enqueue(new Record(CheckpointFiles.ADMITTED, task, 0));
+    }
+
+    public void recordCompleted(String url) {
+        enqueue(new Record(CheckpointFiles.COMPLETED, null, UrlFingerprint.of(url)));
+    }
+
+    /**
+     * Waits only if the writer falls a full queue behind, and gives up once it
+     * has stopped, so a failed writer can never block the crawl.
+     */
+    private void enqueue(Record record) {
+        try {
+            while (!closed && !failed) {
+                if (queue.offer(record, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped(1);
+    }
+
+    private void dropped(long records) {
+        if (records > 0 && droppedRecords.getAndAdd(records) == 0) {
+            System.err.println("Checkpoint records are being dropped; the checkpoint will be incomplete");
+        }
+    }
+
+    /**
+     * Flushes everything recorded so far, writes a final snapshot and stops the writer.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        boolean stopQueued = false;
+        // A writer that failed has already exited and will never take STOP.
+        while (writerThread.isAlive()) {
+            try {
+                if (!stopQueued) {
+                    stopQueued = queue.offer(STOP, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } else {
+                    writerThread.join();
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (droppedRecords.get() > 0) {
+            System.err.println("Checkpoint dropped " + droppedRecords.get()
+                    + " records; a crawl resumed from it may refetch or miss pages");
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        long lastSync = System.nanoTime();
+        long lastSnapshot = lastSync;
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                Record first = queue.poll(syncIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    for (Record record : batch) {
+                        if (record == STOP) {
+                            stopping = true;
+                            break;
+                        }
+                        writeRecord(record);
+                    }
+                    batch.clear();
+                }
+
+                long now = System.nanoTime();
+                if (stopping || now - lastSync >= syncIntervalNanos) {
+                    sync();
+                    lastSync = now;
+                }
+                if (recordsSinceSnapshot > 0 && (stopping || now - lastSnapshot >= snapshotIntervalNanos)) {
+                    compact();
+                    recordsSinceSnapshot = 0;
+                    lastSnapshot = System.nanoTime();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            failed = true;
+            System.err.println("Checkpointing stopped: " + e.getMessage());
+            // Workers waiting for queue space see failed and give up; free the space anyway.
+            List<Record> discarded = new ArrayList<>();
+            queue.drainTo(discarded);
+            discarded.remove(STOP);
+            dropped(discarded.size() + batch.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close checkpoint log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeRecord(Record record) throws IOException {
+        wal.writeByte(record.type);
+        if (record.type == CheckpointFiles.ADMITTED) {
+            CheckpointFiles.writeTask(wal, record.task.getDepth(), record.task.getUrl());
+        } else {
+            wal.writeLong(record.fingerprint);
+        }
+        walDirty = true;
+        recordsSinceSnapshot++;
+    }
+
+    private void sync() throws IOException {
+        if (walDirty) {
+            wal.flush();
+            walFile.getChannel().force(false);
+            walDirty = false;
+        }
+    }
+
+    private void openWal() throws IOException {
+        walFile = new FileOutputStream(CheckpointFiles.wal(directory, generation).toFile(), true);
+        wal = new DataOutputStream(new BufferedOutputStream(walFile, 64 * 1024));
+    }
+
+    /**
+     * Seals the current log, starts the next generation and folds the previous
+     * snapshot plus every sealed log into a new snapshot. The new snapshot is
+     * written to a temporary file and renamed into place, and only then are the
+     * inputs deleted, so a crash at any point leaves a recoverable directory.
+     */
+    private void compact() throws IOException {
+        List<Integer> snapshots = CheckpointFiles.snapshotGenerations(directory);
+        int baseGeneration = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+
+        sync();
+        wal.close();
+        int sealedGeneration = generation;
+        generation++;
+        openWal();
+
+        List<Path> logs = new ArrayList<>();
+        for (int walGeneration : CheckpointFiles.walGenerations(directory)) {
+            if (walGeneration >= baseGeneration && walGeneration <= sealedGeneration) {
+                logs.add(CheckpointFiles.wal(directory, walGeneration));
+            }
+        }
+
+        // Pass 1: completions and admission counts from the sealed logs
+        VisitedSet completedInLogs = new FingerprintVisitedSet(1024);
+        long[] logCounts = new long[2];
+        for (Path log : logs) {
+            replay(log, (depth, url) -> logCounts[0]++, fingerprint -> {
+                completedInLogs.addFingerprint(fingerprint);
+                logCounts[1]++;
+            });
+        }
+
+        Path baseSnapshot = snapshots.isEmpty() ? null : CheckpointFiles.snapshot(directory, baseGeneration);
+        Path target = CheckpointFiles.snapshot(directory, sealedGeneration + 1);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        long pendingCountOffset;
+        long pendingCount = 0;
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+             DataInputStream base = baseSnapshot == null ? null : open(baseSnapshot)) {
+
+            long baseAdmitted = 0;
+            long baseCompleted = 0;
+            long baseFingerprints = 0;
+            if (base != null) {
+                base.readInt();
+                base.readInt();
+                base.readInt();
+                baseAdmitted = base.readLong();
+                baseCompleted = base.readLong();
+                baseFingerprints = base.readLong();
+            }
+
+            out.writeInt(CheckpointFiles.SNAPSHOT_MAGIC);
+            out.writeInt(CheckpointFiles.SNAPSHOT_VERSION);
+            out.writeInt(sealedGeneration + 1);
+            out.writeLong(baseAdmitted + logCounts[0]);
+            out.writeLong(baseCompleted + logCounts[1]);
+            out.writeLong(baseFingerprints + logCounts[0]);
+
+            // Pass 2: every admitted fingerprint
+            for (long i = 0; i < baseFingerprints; i++) {
+                out.writeLong(base.readLong());
+            }
+            for (Path log : logs) {
+                replay(log, (depth, url) -> writeLong(out, UrlFingerprint.of(url)), fingerprint -> { });
+            }
+
+            // Pass 3: admitted tasks without a completion; the count is patched in below
+            pendingCountOffset = 12 + 3 * 8 + (baseFingerprints + logCounts[0]) * 8;
+            out.writeLong(0);
+            if (base != null) {
+                long basePending = base.readLong();
+                for (long i = 0; i < basePending; i++) {
+                    int depth = CheckpointFiles.readVarInt(base);
+                    String url = CheckpointFiles.readUrl(base);
+                    if (!completedInLogs.containsFingerprint(UrlFingerprint.of(url))) {
+                        CheckpointFiles.writeTask(out, depth, url);
+                        pendingCount++;
+                    }
+                }
+            }
+            long[] logPending = new long[1];
+            for (Path log : logs) {
+                replay(log, (depth, url) -> {
+                    if (!completedInLogs.containsFingerprint(UrlFingerprint.of(url))) {
+                        writeTask(out, depth, url);
+                        logPending[0]++;
+                    }
+                }, fingerprint -> { });
+            }
+            pendingCount += logPending[0];
+            out.flush();
+            file.getChannel().force(true);
+        }
+
+        try (RandomAccessFile patch = new RandomAccessFile(temp.toFile(), "rw")) {
+            patch.seek(pendingCountOffset);
+            patch.writeLong(pendingCount);
+            patch.getFD().sync();
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (baseSnapshot != null) {
+            Files.deleteIfExists(baseSnapshot);
+        }
+        for (Path log : logs) {
+            Files.deleteIfExists(log);
+        }
+    }
+
+    private interface AdmittedHandler {
+        void accept(int depth, String url);
+    }
+
+    private interface CompletedHandler {
+        void accept(long fingerprint);
+    }
+
+    private static void replay(Path log, AdmittedHandler admitted, CompletedHandler completed) throws IOException {
+        try (DataInputStream in = open(log)) {
+            while (true) {
+                int type = in.read();
+                if (type == CheckpointFiles.ADMITTED) {
+                    int depth = CheckpointFiles.readVarInt(in);
+                    admitted.accept(depth, CheckpointFiles.readUrl(in));
+                } else if (type == CheckpointFiles.COMPLETED) {
+                    completed.accept(in.readLong());
+                } else {
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // Torn final record; ignore it as recovery does.
+        }
+    }
+
+    private static void writeLong(DataOutputStream out, long value) {
+        try {
+            out.writeLong(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeTask(DataOutputStream out, int depth, String url) {
+        try {
+            CheckpointFiles.writeTask(out, depth, url);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+    }
+
+    private static class Record {
+        private final byte type;
+        private final CrawlTask task;
+        private final long fingerprint;
+
+        Record(byte type, CrawlTask task, long fingerprint) {
+            this.type = type;
+            this.task = task;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
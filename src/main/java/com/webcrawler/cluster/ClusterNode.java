@@ -0,0 +1,439 @@
+package com.webcrawler.cluster;
+
+import com.webcrawler.core.UrlFingerprint;
+import com.webcrawler.model.CrawlTask;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * One crawler process of a cluster. Each node owns the hosts the
+ * {@link HostPartitioner} assigns to it; links to other hosts are routed to
+ * their owner in batches over a TCP connection per peer, after a
+ * {@link SentLinkCache} has dropped the ones sent recently.
+ *
+ * Node 0 also detects global termination with Mattern's four-counter method:
+ * it repeatedly asks every node whether it is idle and how many links it has
+ * sent and received. When two consecutive waves find every node idle, the
+ * same totals, and as many links received as sent, no work is left anywhere
+ * and no link is in transit, so it tells every node to stop.
+ */
+public class ClusterNode implements Closeable {
+    private static final long PROBE_INTERVAL_MS = 100;
+    private static final long STATUS_TIMEOUT_MS = 10_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int index;
+    private final List<InetSocketAddress> nodes;
+    private final HostPartitioner partitioner;
+    private final SentLinkCache sentLinks;
+    private final PeerConnection[] peers;
+    private final long flushIntervalMs;
+    private final Consumer<CrawlTask> admit;
+    private final BooleanSupplier idle;
+    private final Runnable terminated;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final AtomicBoolean terminating = new AtomicBoolean();
+    private final CountDownLatch terminatedLatch = new CountDownLatch(1);
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final Waves waves;
+    private ScheduledExecutorService timer;
+    private ServerSocket server;
+    private volatile boolean closed;
+
+    /**
+     * @param nodes         every node's listening address, in node order
+     * @param index         this node's position in {@code nodes}
+     * @param batchSize     links per LINKS frame
+     * @param dedupSlots    size of the sent-link cache
+     * @param admit         admits a link routed to this node
+     * @param idle          true while this node has no unfinished task
+     * @param terminated    called once, when the whole cluster has run out of work
+     */
+    public ClusterNode(List<InetSocketAddress> nodes, int index, int batchSize, long flushIntervalMs,
+                       int dedupSlots, Consumer<CrawlTask> admit, BooleanSupplier idle, Runnable terminated) {
+        if (index < 0 || index >= nodes.size()) {
+            throw new IllegalArgumentException("Node index " + index + " is outside a cluster of " + nodes.size());
+        }
+        this.index = index;
+        this.nodes = List.copyOf(nodes);
+        this.partitioner = new HostPartitioner(nodes.size());
+        this.sentLinks = new SentLinkCache(dedupSlots);
+        this.peers = new PeerConnection[nodes.size()];
+        for (int i = 0; i < peers.length; i++) {
+            if (i != index) {
+                peers[i] = new PeerConnection(index, i, nodes.get(i), batchSize);
+            }
+        }
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.admit = admit;
+        this.idle = idle;
+        this.terminated = terminated;
+        this.waves = index == 0 ? new Waves(nodes.size()) : null;
+    }
+
+    /**
+     * Starts listening for peers and, on node 0, probing for termination.
+     * Outgoing connections are opened when first needed.
+     */
+    public void start() throws IOException {
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(nodes.get(index));
+        timer = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "cluster-timer-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::flushPeers, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (waves != null) {
+            timer.scheduleWithFixedDelay(this::probe, PROBE_INTERVAL_MS, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        Thread acceptor = new Thread(this::accept, "cluster-acceptor-" + index);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public boolean owns(String host) {
+        return partitioner.ownerOf(host) == index;
+    }
+
+    /**
+     * Sends a link to the node owning its host, unless it was sent recently.
+     */
+    public void route(CrawlTask task) {
+        if (!sentLinks.add(UrlFingerprint.of(task.getUrl()))) {
+            deduplicated.increment();
+            return;
+        }
+        int owner = partitioner.ownerOf(task.getHost());
+        // Counted before it is queued, so it is in transit until the owner counts it received.
+        sent.increment();
+        try {
+            peers[owner].addLink(task.getDepth(), task.getUrl());
+        } catch (IOException e) {
+            // The link stays in the batch; the next flush tries again.
+            if (!Thread.currentThread().isInterrupted()) {
+                peerLost(owner, e);
+            }
+        }
+    }
+
+    /**
+     * Blocks until the cluster has terminated. A node whose own crawl ended
+     * early must keep answering probes until then, or the others cannot finish.
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminatedLatch.await();
+    }
+
+    public boolean isTerminated() {
+        return terminatedLatch.getCount() == 0;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * Links not sent because the sent-link cache had them.
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        for (PeerConnection peer : peers) {
+            if (peer != null) {
+                peer.close();
+            }
+        }
+        try {
+            if (server != null) {
+                server.close();
+            }
+        } catch (IOException e) {
+            // Already closed.
+        }
+        for (Socket socket : inbound) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                inbound.add(socket);
+                Thread reader = new Thread(() -> read(socket), "cluster-reader-" + index);
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Cluster node " + index + " stopped accepting peers: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        int from = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE))) {
+            byte[] type = new byte[1];
+            while (true) {
+                byte[] body = Frames.read(in, type);
+                switch (type[0]) {
+                    case Frames.HELLO:
+                        from = ByteBuffer.wrap(body).getInt();
+                        break;
+                    case Frames.LINKS:
+                        receiveLinks(body);
+                        break;
+                    case Frames.PROBE:
+                        reportStatus(ByteBuffer.wrap(body).getLong());
+                        break;
+                    case Frames.STATUS:
+                        ByteBuffer status = ByteBuffer.wrap(body);
+                        waves.record(status.getInt(), status.getLong(), status.get() != 0, status.getLong(),
+                                status.getLong());
+                        break;
+                    case Frames.TERMINATE:
+                        terminate();
+                        break;
+                    default:
+                        throw new IOException("Unknown frame type " + type[0]);
+                }
+            }
+        } catch (EOFException e) {
+            // The peer closed its connection.
+        } catch (IOException | RuntimeException e) {
+            if (!closed && !isTerminated()) {
+                peerLost(from, e);
+            }
+        } finally {
+            inbound.remove(socket);
+        }
+    }
+
+    private void receiveLinks(byte[] body) throws IOException {
+        Frames.LinkReader reader = new Frames.LinkReader(body);
+        int count = reader.readVarInt();
+        for (int i = 0; i < count; i++) {
+            int depth = reader.readVarInt();
+            admit.accept(new CrawlTask(reader.readUrl(), depth));
+            // Counted once admitted, so an idle node has no received link left to process.
+            received.increment();
+        }
+    }
+
+    /**
+     * Answers a probe. The counters are read before the idle flag: a link
+     * handled in between then shows up as unbalanced counters, never as an
+     * idle node that has received everything.
+     */
+    private void reportStatus(long wave) {
+        long receivedCount = received.sum();
+        long sentCount = sent.sum();
+        boolean isIdle = idle.getAsBoolean();
+        if (waves != null) {
+            waves.record(index, wave, isIdle, sentCount, receivedCount);
+            return;
+        }
+        ByteBuffer body = ByteBuffer.allocate(4 + 8 + 1 + 8 + 8);
+        body.putInt(index).putLong(wave).put((byte) (isIdle ? 1 : 0)).putLong(sentCount).putLong(receivedCount);
+        try {
+            peers[0].send(Frames.STATUS, body.array());
+        } catch (IOException e) {
+            peerLost(0, e);
+        }
+    }
+
+    /**
+     * One termination wave, run by node 0.
+     */
+    private void probe() {
+        if (isTerminated()) {
+            return;
+        }
+        long wave = waves.begin();
+        byte[] body = ByteBuffer.allocate(8).putLong(wave).array();
+        for (PeerConnection peer : peers) {
+            if (peer == null) {
+                continue;
+            }
+            try {
+                peer.send(Frames.PROBE, body);
+            } catch (IOException e) {
+                peerLost(peer.peerIndex(), e);
+                return;
+            }
+        }
+        reportStatus(wave);
+        try {
+            if (!waves.await(STATUS_TIMEOUT_MS)) {
+                System.err.println("Cluster nodes did not answer termination wave " + wave + " in time");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (waves.quiescent()) {
+            for (PeerConnection peer : peers) {
+                if (peer != null) {
+                    try {
+                        peer.send(Frames.TERMINATE, new byte[0]);
+                    } catch (IOException e) {
+                        System.err.println("Cannot tell node " + peer.peerIndex() + " to stop: " + e.getMessage());
+                    }
+                }
+            }
+            terminate();
+        }
+    }
+
+    private void flushPeers() {
+        for (PeerConnection peer : peers) {
+            if (peer == null) {
+                continue;
+            }
+            try {
+                peer.flush();
+            } catch (IOException e) {
+                peerLost(peer.peerIndex(), e);
+            }
+        }
+    }
+
+    /**
+     * Without the peer, links to its hosts cannot be delivered and termination
+     * cannot be detected, so this node gives up on the cluster.
+     */
+    private void peerLost(int peer, Exception e) {
+        if (closed || isTerminated()) {
+            return;
+        }
+        System.err.println("Cluster node " + index + " lost node " + peer + ", ending its crawl: " + e.getMessage());
+        terminate();
+    }
+
+    private void terminate() {
+        if (terminating.compareAndSet(false, true)) {
+            terminatedLatch.countDown();
+            terminated.run();
+        }
+    }
+
+    /**
+     * Status totals of the current and the previous termination wave.
+     */
+    private static class Waves {
+        private final int nodes;
+        private final boolean[] answered;
+        private long wave;
+        private int reported;
+        private boolean allIdle;
+        private long sent;
+        private long received;
+        private boolean previousComplete;
+        private boolean previousIdle;
+        private long previousSent;
+        private long previousReceived;
+
+        Waves(int nodes) {
+            this.nodes = nodes;
+            this.answered = new boolean[nodes];
+        }
+
+        synchronized long begin() {
+            previousComplete = reported == nodes;
+            previousIdle = allIdle;
+            previousSent = sent;
+            previousReceived = received;
+            wave++;
+            reported = 0;
+            Arrays.fill(answered, false);
+            allIdle = true;
+            sent = 0;
+            received = 0;
+            return wave;
+        }
+
+        synchronized void record(int node, long statusWave, boolean idle, long sentCount, long receivedCount) {
+            if (statusWave != wave || node < 0 || node >= nodes || answered[node]) {
+                return;
+            }
+            answered[node] = true;
+            reported++;
+            allIdle &= idle;
+            sent += sentCount;
+            received += receivedCount;
+            notifyAll();
+        }
+
+        synchronized boolean await(long timeoutMs) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (reported < nodes) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return true;
+        }
+
+        /**
+         * True when this wave and the one before both found every node idle,
+         * with the same totals and every sent link received.
+         */
+        synchronized boolean quiescent() {
+            return reported == nodes && allIdle && sent == received
+                    && previousComplete && previousIdle && previousSent == sent && previousReceived == received;
+        }
+    }
+}
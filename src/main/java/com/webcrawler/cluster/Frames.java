@@ -0,0 +1,105 @@
+package com.webcrawler.cluster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format between cluster nodes. Every frame is
+ * {@code int length, byte type, body}, where the length covers the type and
+ * the body. A connection starts with a HELLO naming the sending node and is
+ * used in one direction only. Bodies:
+ * <ul>
+ *   <li>HELLO: {@code int node}</li>
+ *   <li>LINKS: {@code varint count}, then per link {@code varint depth, varint length, UTF-8 url}</li>
+ *   <li>PROBE: {@code long wave}</li>
+ *   <li>STATUS: {@code int node, long wave, boolean idle, long sent, long received}</li>
+ *   <li>TERMINATE: empty</li>
+ * </ul>
+ */
+final class Frames {
+    static final byte HELLO = 1;
+    static final byte LINKS = 2;
+    static final byte PROBE = 3;
+    static final byte STATUS = 4;
+    static final byte TERMINATE = 5;
+
+    static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private Frames() {
+    }
+
+    static void writeHeader(DataOutputStream out, byte type, int bodyLength) throws IOException {
+        out.writeInt(bodyLength + 1);
+        out.writeByte(type);
+    }
+
+    /**
+     * Reads the next frame body into a fresh array; the type is returned in {@code type[0]}.
+     */
+    static byte[] read(DataInputStream in, byte[] type) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Bad frame length " + length);
+        }
+        type[0] = in.readByte();
+        byte[] body = new byte[length - 1];
+        in.readFully(body);
+        return body;
+    }
+
+    static void writeLink(ByteArrayOutputStream out, int depth, String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, depth);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Cursor over a LINKS body.
+     */
+    static final class LinkReader {
+        private final byte[] body;
+        private int position;
+
+        LinkReader(byte[] body) {
+            this.body = body;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position >= body.length) {
+                    throw new EOFException("Truncated LINKS frame");
+                }
+                byte b = body[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in LINKS frame");
+        }
+
+        String readUrl() throws IOException {
+            int length = readVarInt();
+            if (length < 0 || length > body.length - position) {
+                throw new EOFException("Truncated LINKS frame");
+            }
+            String url = new String(body, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return url;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.webcrawler.cluster;
+
+import com.webcrawler.core.UrlFingerprint;
+
+/**
+ * Assigns every host to one node of the cluster with jump consistent hashing
+ * (Lamping and Veach). All of a host's URLs land on the same node, so its
+ * visited set, politeness and robots.txt stay local, and growing the cluster
+ * from N to N+1 nodes moves only 1/(N+1) of the hosts.
+ */
+public final class HostPartitioner {
+    private final int nodes;
+
+    public HostPartitioner(int nodes) {
+        if (nodes <= 0) {
+            throw new IllegalArgumentException("A cluster needs at least one node.");
+        }
+        this.nodes = nodes;
+    }
+
+    public int ownerOf(String host) {
+        long key = UrlFingerprint.of(host);
+        long bucket = -1;
+        long next = 0;
+        while (next < nodes) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    public int nodeCount() {
+        return nodes;
+    }
+}
@@ -0,0 +1,141 @@
+package com.webcrawler.cluster;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outgoing connection to one other node. Links are appended to a batch
+ * that is written as a single LINKS frame once it holds {@code batchSize}
+ * links or when {@link #flush()} is called; control frames are written right
+ * away. The connection is opened on first use, retrying while the peer starts
+ * up. A slow peer blocks the threads sending to it rather than letting the
+ * batch grow.
+ */
+class PeerConnection implements Closeable {
+    private static final long CONNECT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long CONNECT_RETRY_MS = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int selfIndex;
+    private final int peerIndex;
+    private final InetSocketAddress address;
+    private final int batchSize;
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(BUFFER_SIZE);
+    private final ByteArrayOutputStream batchHeader = new ByteArrayOutputStream(5);
+    private int batchLinks;
+    private Socket socket;
+    private DataOutputStream out;
+    private boolean closed;
+
+    PeerConnection(int selfIndex, int peerIndex, InetSocketAddress address, int batchSize) {
+        this.selfIndex = selfIndex;
+        this.peerIndex = peerIndex;
+        this.address = address;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    synchronized void addLink(int depth, String url) throws IOException {
+        Frames.writeLink(batch, depth, url);
+        if (++batchLinks >= batchSize) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Writes out a partial batch.
+     */
+    synchronized void flush() throws IOException {
+        if (batchLinks > 0) {
+            writeBatch();
+        }
+    }
+
+    synchronized void send(byte type, byte[] body) throws IOException {
+        DataOutputStream stream = connection();
+        Frames.writeHeader(stream, type, body.length);
+        stream.write(body);
+        stream.flush();
+    }
+
+    int peerIndex() {
+        return peerIndex;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (out != null) {
+                if (batchLinks > 0) {
+                    writeBatch();
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The peer is gone; nothing left to deliver it to.
+        } finally {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        DataOutputStream stream = connection();
+        batchHeader.reset();
+        Frames.writeVarInt(batchHeader, batchLinks);
+        Frames.writeHeader(stream, Frames.LINKS, batchHeader.size() + batch.size());
+        batchHeader.writeTo(stream);
+        batch.writeTo(stream);
+        stream.flush();
+        batch.reset();
+        batchLinks = 0;
+    }
+
+    private DataOutputStream connection() throws IOException {
+        if (closed) {
+            throw new IOException("Connection to node " + peerIndex + " is closed");
+        }
+        if (out != null) {
+            return out;
+        }
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        while (true) {
+            Socket candidate = new Socket();
+            try {
+                candidate.setTcpNoDelay(true);
+                candidate.connect(address, (int) TimeUnit.NANOSECONDS.toMillis(CONNECT_TIMEOUT_NANOS));
+                socket = candidate;
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                Frames.writeHeader(out, Frames.HELLO, 4);
+                out.writeInt(selfIndex);
+                out.flush();
+                return out;
+            } catch (IOException e) {
+                candidate.close();
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new IOException("Cannot connect to node " + peerIndex + " at " + address, e);
+                }
+            }
+            try {
+                Thread.sleep(CONNECT_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while connecting to node " + peerIndex);
+            }
+        }
+    }
+}
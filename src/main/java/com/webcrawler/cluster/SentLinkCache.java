@@ -0,0 +1,42 @@
+package com.webcrawler.cluster;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Direct-mapped cache of the URL fingerprints recently sent to other nodes.
+ * Popular links (navigation, footers) are found on nearly every page; the
+ * cache stops most of them at the sender instead of shipping them only for
+ * the owner's visited set to reject. A fingerprint evicted by a colliding one
+ * is simply sent again, so the cache never loses a link, and it is lock-free.
+ */
+class SentLinkCache {
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    SentLinkCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Records the fingerprint and returns true unless it was already cached.
+     */
+    boolean add(long fingerprint) {
+        // Zero marks an empty slot
+        long key = fingerprint == 0 ? 1 : fingerprint;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        if (slots.get(slot) == key) {
+            return false;
+        }
+        slots.lazySet(slot, key);
+        return true;
+    }
+
+    long memoryBytes() {
+        return 8L * slots.length();
+    }
+}
@@ -1,9 +1,22 @@
 package com.webcrawler.config;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+
 /**
  * Configuration class for the web crawler
  */
 public class CrawlerConfig {
+    /**
+     * Extensions that almost never name an HTML page.
+     */
+    public static final List<String> DEFAULT_HEAD_PROBE_EXTENSIONS = List.of(
+            "pdf", "zip", "gz", "tgz", "tar", "bz2", "xz", "7z", "rar", "exe", "msi", "dmg", "iso", "apk", "bin",
+            "jpg", "jpeg", "png", "gif", "webp", "bmp", "ico", "tif", "tiff", "avif",
+            "mp3", "mp4", "m4a", "m4v", "avi", "mov", "mkv", "webm", "wav", "flac", "ogg",
+            "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt", "ods", "woff", "woff2", "ttf", "otf");
+
     private final int maxThreads;
     private final int maxDepth;
     private final int maxPages;
@@ -11,6 +24,55 @@ public class CrawlerConfig {
     private final int readTimeoutMs;
     private final int permitsPerSecond;
     private final String userAgent;
+    private final int politenessDelayMs;
+    private final FetchMode fetchMode;
+    private final int maxInFlightRequests;
+    private final VisitedSetType visitedSetType;
+    private final long expectedUrls;
+    private final double bloomFalsePositiveRate;
+    private final long frontierMemoryLimitBytes;
+    private final Path frontierSpillDirectory;
+    private final Path checkpointDirectory;
+    private final long checkpointSyncIntervalMs;
+    private final long checkpointSnapshotIntervalMs;
+    private final ResultFormat resultFormat;
+    private final Path resultFile;
+    private final boolean compressResults;
+    private final int resultQueueCapacity;
+    private final Path validatorCacheFile;
+    private final long validatorCacheMaxBytes;
+    private final boolean nearDuplicateDetection;
+    private final int nearDuplicateMaxDistance;
+    private final long metricsReportIntervalMs;
+    private final List<String> trackingParameters;
+    private final boolean respectRobotsTxt;
+    private final long robotsCacheTtlMs;
+    private final int robotsCacheMaxHosts;
+    private final long maxCrawlDelayMs;
+    private final boolean sitemapSeeding;
+    private final int maxSitemapUrls;
+    private final ScoringPolicy scoringPolicy;
+    private final int frontierCapacity;
+    private final int maxPagesPerHost;
+    private final List<InetSocketAddress> clusterNodes;
+    private final int clusterNodeIndex;
+    private final int clusterBatchSize;
+    private final long clusterFlushIntervalMs;
+    private final int clusterDedupCacheSize;
+    private final boolean acceptCompression;
+    private final long maxBodyBytes;
+    private final boolean htmlOnly;
+    private final boolean headProbe;
+    private final List<String> headProbeExtensions;
+    private final boolean stagedPipeline;
+    private final boolean virtualFetchThreads;
+    private final int parseParallelism;
+    private final int parseQueueCapacity;
+    private final int admissionThreads;
+    private final int admissionQueueCapacity;
+    private final Path linkGraphFile;
+    private final boolean adaptiveConcurrency;
+    private final int minConcurrency;
 
     private CrawlerConfig(Builder builder) {
         this.maxThreads = builder.maxThreads;
@@ -20,6 +82,55 @@ public class CrawlerConfig {
         this.readTimeoutMs = builder.readTimeoutMs;
         this.permitsPerSecond = builder.permitsPerSecond;
         this.userAgent = builder.userAgent;
+        this.politenessDelayMs = builder.politenessDelayMs;
+        this.fetchMode = builder.fetchMode;
+        this.maxInFlightRequests = builder.maxInFlightRequests;
+        this.visitedSetType = builder.visitedSetType;
+        this.expectedUrls = builder.expectedUrls;
+        this.bloomFalsePositiveRate = builder.bloomFalsePositiveRate;
+        this.frontierMemoryLimitBytes = builder.frontierMemoryLimitBytes;
+        this.frontierSpillDirectory = builder.frontierSpillDirectory;
+        this.checkpointDirectory = builder.checkpointDirectory;
+        this.checkpointSyncIntervalMs = builder.checkpointSyncIntervalMs;
+        this.checkpointSnapshotIntervalMs = builder.checkpointSnapshotIntervalMs;
+        this.resultFormat = builder.resultFormat;
+        this.resultFile = builder.resultFile;
+        this.compressResults = builder.compressResults;
+        this.resultQueueCapacity = builder.resultQueueCapacity;
+        this.validatorCacheFile = builder.validatorCacheFile;
+        this.validatorCacheMaxBytes = builder.validatorCacheMaxBytes;
+        this.nearDuplicateDetection = builder.nearDuplicateDetection;
+        this.nearDuplicateMaxDistance = builder.nearDuplicateMaxDistance;
+        this.metricsReportIntervalMs = builder.metricsReportIntervalMs;
+        this.trackingParameters = builder.trackingParameters;
+        this.respectRobotsTxt = builder.respectRobotsTxt;
+        this.robotsCacheTtlMs = builder.robotsCacheTtlMs;
+        this.robotsCacheMaxHosts = builder.robotsCacheMaxHosts;
+        this.maxCrawlDelayMs = builder.maxCrawlDelayMs;
+        this.sitemapSeeding = builder.sitemapSeeding;
+        this.maxSitemapUrls = builder.maxSitemapUrls;
+        this.scoringPolicy = builder.scoringPolicy;
+        this.frontierCapacity = builder.frontierCapacity;
+        this.maxPagesPerHost = builder.maxPagesPerHost;
+        this.clusterNodes = builder.clusterNodes;
+        this.clusterNodeIndex = builder.clusterNodeIndex;
+        this.clusterBatchSize = builder.clusterBatchSize;
+        this.clusterFlushIntervalMs = builder.clusterFlushIntervalMs;
+        this.clusterDedupCacheSize = builder.clusterDedupCacheSize;
+        this.acceptCompression = builder.acceptCompression;
+        this.maxBodyBytes = builder.maxBodyBytes;
+        this.htmlOnly = builder.htmlOnly;
+        this.headProbe = builder.headProbe;
+        this.headProbeExtensions = builder.headProbeExtensions;
+        this.stagedPipeline = builder.stagedPipeline;
+        this.virtualFetchThreads = builder.virtualFetchThreads;
+        this.parseParallelism = builder.parseParallelism;
+        this.parseQueueCapacity = builder.parseQueueCapacity;
+        this.admissionThreads = builder.admissionThreads;
+        this.admissionQueueCapacity = builder.admissionQueueCapacity;
+        this.linkGraphFile = builder.linkGraphFile;
+        this.adaptiveConcurrency = builder.adaptiveConcurrency;
+        this.minConcurrency = builder.minConcurrency;
     }
 
     // Getters
@@ -30,6 +141,55 @@ public class CrawlerConfig {
     public int getReadTimeoutMs() { return readTimeoutMs; }
     public int getPermitsPerSecond() { return permitsPerSecond; }
     public String getUserAgent() { return userAgent; }
+    public int getPolitenessDelayMs() { return politenessDelayMs; }
+    public FetchMode getFetchMode() { return fetchMode; }
+    public int getMaxInFlightRequests() { return maxInFlightRequests; }
+    public VisitedSetType getVisitedSetType() { return visitedSetType; }
+    public long getExpectedUrls() { return expectedUrls; }
+    public double getBloomFalsePositiveRate() { return bloomFalsePositiveRate; }
+    public long getFrontierMemoryLimitBytes() { return frontierMemoryLimitBytes; }
+    public Path getFrontierSpillDirectory() { return frontierSpillDirectory; }
+    public Path getCheckpointDirectory() { return checkpointDirectory; }
+    public long getCheckpointSyncIntervalMs() { return checkpointSyncIntervalMs; }
+    public long getCheckpointSnapshotIntervalMs() { return checkpointSnapshotIntervalMs; }
+    public ResultFormat getResultFormat() { return resultFormat; }
+    public Path getResultFile() { return resultFile; }
+    public boolean isCompressResults() { return compressResults; }
+    public int getResultQueueCapacity() { return resultQueueCapacity; }
+    public Path getValidatorCacheFile() { return validatorCacheFile; }
+    public long getValidatorCacheMaxBytes() { return validatorCacheMaxBytes; }
+    public boolean isNearDuplicateDetection() { return nearDuplicateDetection; }
+    public int getNearDuplicateMaxDistance() { return nearDuplicateMaxDistance; }
+    public long getMetricsReportIntervalMs() { return metricsReportIntervalMs; }
+    public List<String> getTrackingParameters() { return trackingParameters; }
+    public boolean isRespectRobotsTxt() { return respectRobotsTxt; }
+    public long getRobotsCacheTtlMs() { return robotsCacheTtlMs; }
+    public int getRobotsCacheMaxHosts() { return robotsCacheMaxHosts; }
+    public long getMaxCrawlDelayMs() { return maxCrawlDelayMs; }
+    public boolean isSitemapSeeding() { return sitemapSeeding; }
+    public int getMaxSitemapUrls() { return maxSitemapUrls; }
+    public ScoringPolicy getScoringPolicy() { return scoringPolicy; }
+    public int getFrontierCapacity() { return frontierCapacity; }
+    public int getMaxPagesPerHost() { return maxPagesPerHost; }
+    public List<InetSocketAddress> getClusterNodes() { return clusterNodes; }
+    public int getClusterNodeIndex() { return clusterNodeIndex; }
+    public int getClusterBatchSize() { return clusterBatchSize; }
+    public long getClusterFlushIntervalMs() { return clusterFlushIntervalMs; }
+    public int getClusterDedupCacheSize() { return clusterDedupCacheSize; }
+    public boolean isAcceptCompression() { return acceptCompression; }
+    public long getMaxBodyBytes() { return maxBodyBytes; }
+    public boolean isHtmlOnly() { return htmlOnly; }
+    public boolean isHeadProbe() { return headProbe; }
+    public List<String> getHeadProbeExtensions() { return headProbeExtensions; }
+    public boolean isStagedPipeline() { return stagedPipeline; }
+    public boolean isVirtualFetchThreads() { return virtualFetchThreads; }
+    public int getParseParallelism() { return parseParallelism; }
+    public int getParseQueueCapacity() { return parseQueueCapacity; }
+    public int getAdmissionThreads() { return admissionThreads; }
+    public int getAdmissionQueueCapacity() { return admissionQueueCapacity; }
+    public Path getLinkGraphFile() { return linkGraphFile; }
+    public boolean isAdaptiveConcurrency() { return adaptiveConcurrency; }
+    public int getMinConcurrency() { return minConcurrency; }
 
     public static class Builder {
         private int maxThreads = 10;
@@ -37,8 +197,57 @@ public class CrawlerConfig {
         private int maxPages = 100;
         private int connectionTimeoutMs = 5000;
         private int readTimeoutMs = 10000;
-        private int permitsPerSecond = 2; // Default to 2 requests per second
+        private int permitsPerSecond = 2; // Default to 2 requests per second per host
         private String userAgent = "ConcurrentWebCrawler/1.0";
+        private int politenessDelayMs = 0; // Minimum gap between two requests to the same host
+        private FetchMode fetchMode = FetchMode.BLOCKING;
+        private int maxInFlightRequests = 256; // Only used by FetchMode.ASYNC
+        private VisitedSetType visitedSetType = VisitedSetType.FINGERPRINT;
+        private long expectedUrls = 100_000; // Initial sizing hint for the visited set
+        private double bloomFalsePositiveRate = 0.001;
+        private long frontierMemoryLimitBytes = 0; // 0 keeps the whole frontier in memory
+        private Path frontierSpillDirectory = null; // null spills to a fresh temporary directory
+        private Path checkpointDirectory = null; // null disables checkpointing
+        private long checkpointSyncIntervalMs = 1000;
+        private long checkpointSnapshotIntervalMs = 60_000;
+        private ResultFormat resultFormat = ResultFormat.MEMORY;
+        private Path resultFile = null; // Required for the streaming formats
+        private boolean compressResults = false;
+        private int resultQueueCapacity = 1024;
+        private Path validatorCacheFile = null; // null disables conditional re-crawls
+        private long validatorCacheMaxBytes = 256L * 1024 * 1024;
+        private boolean nearDuplicateDetection = false;
+        private int nearDuplicateMaxDistance = 3; // Max differing SimHash bits for a near-duplicate
+        private long metricsReportIntervalMs = 0; // 0 disables the periodic metrics report
+        private List<String> trackingParameters = null; // Stripped from links, "utm_*" style prefixes allowed; null for the defaults
+        private boolean respectRobotsTxt = true; // Fetch robots.txt and skip disallowed URLs
+        private long robotsCacheTtlMs = 24 * 60 * 60 * 1000L; // 24 hours, the longest RFC 9309 allows
+        private int robotsCacheMaxHosts = 10_000; // Least recently used hosts are evicted beyond this
+        private long maxCrawlDelayMs = 30_000; // Longer Crawl-delay values are capped to this
+        private boolean sitemapSeeding = false; // Seed from the sitemaps robots.txt names; needs respectRobotsTxt
+        private int maxSitemapUrls = 50_000; // Per host, across all of its sitemaps
+        private ScoringPolicy scoringPolicy = ScoringPolicy.FIFO; // Anything else uses a bounded best-first frontier
+        private int frontierCapacity = 200_000; // Tasks a scored frontier holds before evicting the lowest
+        private int maxPagesPerHost = 0; // Scored frontier only; 0 means no per-host quota
+        private List<InetSocketAddress> clusterNodes = List.of(); // Every node's listening address, in node order; empty for a single-process crawl
+        private int clusterNodeIndex = 0; // This process's position in clusterNodes
+        private int clusterBatchSize = 512; // Links per frame sent to another node
+        private long clusterFlushIntervalMs = 20; // Partial batches are sent after at most this long
+        private int clusterDedupCacheSize = 1 << 18; // Slots in the cache of links recently sent to other nodes
+        private boolean acceptCompression = true; // Ask for gzip/deflate bodies
+        private long maxBodyBytes = 4L * 1024 * 1024; // Decoded bytes of a page that are scanned; 0 means no limit
+        private boolean htmlOnly = true; // Skip bodies not declared as HTML
+        private boolean headProbe = false; // HEAD likely-binary URLs before fetching them
+        private List<String> headProbeExtensions = DEFAULT_HEAD_PROBE_EXTENSIONS;
+        private boolean stagedPipeline = false; // Fetch, parse and admit on separate executors
+        private boolean virtualFetchThreads = false; // Staged pipeline: fetch on virtual threads when the JVM has them
+        private int parseParallelism = Runtime.getRuntime().availableProcessors(); // Staged pipeline: threads of the parse ForkJoinPool
+        private int parseQueueCapacity = 64; // Staged pipeline: fetched pages waiting for or being parsed
+        private int admissionThreads = 1; // Staged pipeline: threads admitting parsed links
+        private int admissionQueueCapacity = 256; // Staged pipeline: parsed pages waiting for or being admitted
+        private Path linkGraphFile = null; // null skips the link graph export
+        private boolean adaptiveConcurrency = false; // Adapt fetches in flight to latency and errors, up to maxThreads or maxInFlightRequests
+        private int minConcurrency = 4; // Adaptive concurrency: the limit never drops below this
 
         public Builder maxThreads(int maxThreads) {
             this.maxThreads = maxThreads > 0 ? maxThreads : 1;
@@ -78,7 +287,283 @@ public class CrawlerConfig {
             return this;
         }
 
+        public Builder politenessDelay(int delayMs) {
+            this.politenessDelayMs = Math.max(0, delayMs);
+            return this;
+        }
+
+        public Builder fetchMode(FetchMode fetchMode) {
+            if (fetchMode == null) {
+                throw new IllegalArgumentException("Fetch mode must not be null.");
+            }
+            this.fetchMode = fetchMode;
+            return this;
+        }
+
+        public Builder maxInFlightRequests(int maxInFlightRequests) {
+            this.maxInFlightRequests = maxInFlightRequests > 0 ? maxInFlightRequests : 1;
+            return this;
+        }
+
+        public Builder visitedSetType(VisitedSetType visitedSetType) {
+            if (visitedSetType == null) {
+                throw new IllegalArgumentException("Visited set type must not be null.");
+            }
+            this.visitedSetType = visitedSetType;
+            return this;
+        }
+
+        public Builder expectedUrls(long expectedUrls) {
+            this.expectedUrls = expectedUrls > 0 ? expectedUrls : 1;
+            return this;
+        }
+
+        public Builder bloomFalsePositiveRate(double rate) {
+            if (rate <= 0 || rate >= 1) {
+                throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+            }
+            this.bloomFalsePositiveRate = rate;
+            return this;
+        }
+
+        public Builder frontierMemoryLimit(long bytes) {
+            this.frontierMemoryLimitBytes = Math.max(0, bytes);
+            return this;
+        }
+
+        public Builder frontierSpillDirectory(Path directory) {
+            this.frontierSpillDirectory = directory;
+            return this;
+        }
+
+        public Builder checkpointDirectory(Path directory) {
+            this.checkpointDirectory = directory;
+            return this;
+        }
+
+        public Builder checkpointSyncInterval(long intervalMs) {
+            this.checkpointSyncIntervalMs = intervalMs > 0 ? intervalMs : 1;
+            return this;
+        }
+
+        public Builder checkpointSnapshotInterval(long intervalMs) {
+            this.checkpointSnapshotIntervalMs = intervalMs > 0 ? intervalMs : 1;
+            return this;
+        }
+
+        public Builder resultFormat(ResultFormat resultFormat) {
+            if (resultFormat == null) {
+                throw new IllegalArgumentException("Result format must not be null.");
+            }
+            this.resultFormat = resultFormat;
+            return this;
+        }
+
+        public Builder resultFile(Path resultFile) {
+            this.resultFile = resultFile;
+            return this;
+        }
+
+        public Builder compressResults(boolean compressResults) {
+            this.compressResults = compressResults;
+            return this;
+        }
+
+        public Builder resultQueueCapacity(int capacity) {
+            this.resultQueueCapacity = capacity > 0 ? capacity : 1;
+            return this;
+        }
+
+        public Builder validatorCacheFile(Path file) {
+            this.validatorCacheFile = file;
+            return this;
+        }
+
+        public Builder validatorCacheMaxBytes(long maxBytes) {
+            this.validatorCacheMaxBytes = Math.max(0, maxBytes);
+            return this;
+        }
+
+        public Builder nearDuplicateDetection(boolean enabled) {
+            this.nearDuplicateDetection = enabled;
+            return this;
+        }
+
+        public Builder nearDuplicateMaxDistance(int bits) {
+            if (bits < 0 || bits > 15) {
+                throw new IllegalArgumentException("Near-duplicate distance must be between 0 and 15 bits.");
+            }
+            this.nearDuplicateMaxDistance = bits;
+            return this;
+        }
+
+        public Builder metricsReportInterval(long intervalMs) {
+            this.metricsReportIntervalMs = Math.max(0, intervalMs);
+            return this;
+        }
+
+        public Builder trackingParameters(List<String> names) {
+            this.trackingParameters = List.copyOf(names);
+            return this;
+        }
+
+        public Builder respectRobotsTxt(boolean enabled) {
+            this.respectRobotsTxt = enabled;
+            return this;
+        }
+
+        public Builder robotsCacheTtl(long ttlMs) {
+            if (ttlMs <= 0) {
+                throw new IllegalArgumentException("Robots cache TTL must be positive.");
+            }
+            this.robotsCacheTtlMs = ttlMs;
+            return this;
+        }
+
+        public Builder robotsCacheMaxHosts(int maxHosts) {
+            this.robotsCacheMaxHosts = maxHosts > 0 ? maxHosts : 1;
+            return this;
+        }
+
+        public Builder maxCrawlDelay(long delayMs) {
+            this.maxCrawlDelayMs = Math.max(0, delayMs);
+            return this;
+        }
+
+        public Builder sitemapSeeding(boolean enabled) {
+            this.sitemapSeeding = enabled;
+            return this;
+        }
+
+        public Builder maxSitemapUrls(int maxUrls) {
+            this.maxSitemapUrls = Math.max(0, maxUrls);
+            return this;
+        }
+
+        public Builder scoringPolicy(ScoringPolicy scoringPolicy) {
+            if (scoringPolicy == null) {
+                throw new IllegalArgumentException("Scoring policy must not be null.");
+            }
+            this.scoringPolicy = scoringPolicy;
+            return this;
+        }
+
+        public Builder frontierCapacity(int capacity) {
+            this.frontierCapacity = capacity > 0 ? capacity : 1;
+            return this;
+        }
+
+        public Builder maxPagesPerHost(int maxPages) {
+            this.maxPagesPerHost = Math.max(0, maxPages);
+            return this;
+        }
+
+        public Builder clusterNodes(List<InetSocketAddress> nodes) {
+            this.clusterNodes = List.copyOf(nodes);
+            return this;
+        }
+
+        public Builder clusterNodeIndex(int index) {
+            this.clusterNodeIndex = Math.max(0, index);
+            return this;
+        }
+
+        public Builder clusterBatchSize(int links) {
+            this.clusterBatchSize = links > 0 ? links : 1;
+            return this;
+        }
+
+        public Builder clusterFlushInterval(long intervalMs) {
+            this.clusterFlushIntervalMs = Math.max(1, intervalMs);
+            return this;
+        }
+
+        public Builder clusterDedupCacheSize(int slots) {
+            this.clusterDedupCacheSize = Math.max(1, slots);
+            return this;
+        }
+
+        public Builder acceptCompression(boolean acceptCompression) {
+            this.acceptCompression = acceptCompression;
+            return this;
+        }
+
+        public Builder maxBodyBytes(long maxBodyBytes) {
+            this.maxBodyBytes = Math.max(0, maxBodyBytes);
+            return this;
+        }
+
+        public Builder htmlOnly(boolean htmlOnly) {
+            this.htmlOnly = htmlOnly;
+            return this;
+        }
+
+        public Builder headProbe(boolean headProbe) {
+            this.headProbe = headProbe;
+            return this;
+        }
+
+        public Builder headProbeExtensions(List<String> extensions) {
+            if (extensions == null) {
+                throw new IllegalArgumentException("headProbeExtensions must not be null");
+            }
+            this.headProbeExtensions = List.copyOf(extensions);
+            return this;
+        }
+
+        public Builder stagedPipeline(boolean enabled) {
+            this.stagedPipeline = enabled;
+            return this;
+        }
+
+        public Builder virtualFetchThreads(boolean enabled) {
+            this.virtualFetchThreads = enabled;
+            return this;
+        }
+
+        public Builder parseParallelism(int parallelism) {
+            this.parseParallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        public Builder parseQueueCapacity(int capacity) {
+            this.parseQueueCapacity = Math.max(1, capacity);
+            return this;
+        }
+
+        public Builder admissionThreads(int threads) {
+            this.admissionThreads = Math.max(1, threads);
+            return this;
+        }
+
+        public Builder admissionQueueCapacity(int capacity) {
+            this.admissionQueueCapacity = Math.max(1, capacity);
+            return this;
+        }
+
+        public Builder linkGraphFile(Path file) {
+            this.linkGraphFile = file;
+            return this;
+        }
+
+        public Builder adaptiveConcurrency(boolean enabled) {
+            this.adaptiveConcurrency = enabled;
+            return this;
+        }
+
+        public Builder minConcurrency(int minConcurrency) {
+            this.minConcurrency = minConcurrency > 0 ? minConcurrency : 1;
+            return this;
+        }
+
         public CrawlerConfig build() {
+            if (resultFormat != ResultFormat.MEMORY && resultFile == null) {
+                throw new IllegalArgumentException("A result file is required for " + resultFormat + " output.");
+            }
+            if (!clusterNodes.isEmpty() && clusterNodeIndex >= clusterNodes.size()) {
+                throw new IllegalArgumentException("Cluster node index " + clusterNodeIndex
+                        + " is outside a cluster of " + clusterNodes.size() + " nodes.");
+            }
             return new CrawlerConfig(this);
         }
     }
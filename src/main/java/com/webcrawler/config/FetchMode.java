@@ -0,0 +1,18 @@
+package com.webcrawler.config;
+
+/**
+ * Selects the engine used to download pages
+ */
+public enum FetchMode {
+    /**
+     * One {@code HttpURLConnection} per request; the worker thread blocks for
+     * the whole download.
+     */
+    BLOCKING,
+
+    /**
+     * The JDK {@code java.net.http.HttpClient}: pooled keep-alive connections,
+     * HTTP/2 multiplexing and non-blocking completion.
+     */
+    ASYNC
+}
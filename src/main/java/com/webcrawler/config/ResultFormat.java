@@ -0,0 +1,21 @@
+package com.webcrawler.config;
+
+/**
+ * Selects where crawl results go
+ */
+public enum ResultFormat {
+    /**
+     * Keep all results on the heap, available through {@code WebCrawler.getResults()}.
+     */
+    MEMORY,
+
+    /**
+     * Stream to a JSON Lines file, one result per line.
+     */
+    JSON_LINES,
+
+    /**
+     * Stream to the compact binary format read by {@code BinaryResultReader}.
+     */
+    BINARY
+}
@@ -0,0 +1,29 @@
+package com.webcrawler.config;
+
+/**
+ * Selects the order in which admitted URLs are fetched
+ */
+public enum ScoringPolicy {
+    /**
+     * First in, first out per host. The page budget is spent at admission, so
+     * the first {@code maxPages} URLs found are the ones crawled.
+     */
+    FIFO,
+
+    /**
+     * Best-first by depth: the shallowest URLs first, moving up when a shorter
+     * path to a waiting URL is found.
+     */
+    DEPTH,
+
+    /**
+     * Best-first by the number of in-links found so far.
+     */
+    IN_LINKS,
+
+    /**
+     * Best-first by OPIC importance: every fetched page passes its importance
+     * ("cash") on to its links in equal shares, and waiting URLs accumulate it.
+     */
+    OPIC
+}
@@ -0,0 +1,22 @@
+package com.webcrawler.config;
+
+/**
+ * Selects how visited URLs are remembered
+ */
+public enum VisitedSetType {
+    /**
+     * Exact, lock-striped set of 64-bit URL fingerprints.
+     */
+    FINGERPRINT,
+
+    /**
+     * Lock-free Bloom filter only; smallest footprint, but a small fraction
+     * of new URLs are wrongly treated as seen.
+     */
+    BLOOM,
+
+    /**
+     * Bloom filter in front of the exact fingerprint set.
+     */
+    BLOOM_FINGERPRINT
+}
@@ -0,0 +1,117 @@
+package com.webcrawler.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free Bloom filter over URL fingerprints. Bits are set with CAS, so
+ * concurrent admissions never block each other.
+ *
+ * On its own the filter is lossy: a URL whose bits are all already set is
+ * treated as seen, with the false-positive rate reported by
+ * {@link #falsePositiveRate()}. Given an exact backing set, the filter instead
+ * acts as a front: a URL whose bits were not all set is certainly new and goes
+ * straight to the backing set's locked insert, skipping its probe, while a
+ * "maybe seen" is settled by the backing set, whose optimistic read answers an
+ * already stored URL without locking.
+ */
+public class BloomVisitedSet implements VisitedSet {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final FingerprintVisitedSet exact;
+    private final LongAdder insertions = new LongAdder();
+
+    public BloomVisitedSet(long expectedEntries, double falsePositiveRate) {
+        this(expectedEntries, falsePositiveRate, null);
+    }
+
+    /**
+     * @param exact backing set consulted when the filter reports a possible
+     *              match, or {@code null} for a lossy filter
+     */
+    public BloomVisitedSet(long expectedEntries, double falsePositiveRate, FingerprintVisitedSet exact) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        long n = Math.max(1, expectedEntries);
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * ln2));
+        this.exact = exact;
+    }
+
+    @Override
+    public boolean addFingerprint(long fingerprint) {
+        boolean changed = false;
+        long h1 = fingerprint;
+        long h2 = UrlFingerprint.mix(fingerprint) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            changed |= setBit(bit);
+        }
+
+        if (exact == null) {
+            if (changed) {
+                insertions.increment();
+            }
+            return changed;
+        }
+        // A bit that was clear proves the URL new; otherwise the exact set settles the "maybe seen".
+        boolean added = changed ? exact.addNewFingerprint(fingerprint) : exact.addFingerprint(fingerprint);
+        if (added) {
+            insertions.increment();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean containsFingerprint(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = UrlFingerprint.mix(fingerprint) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return exact == null || exact.containsFingerprint(fingerprint);
+    }
+
+    private boolean setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current = bits.get(word);
+        while ((current & mask) == 0) {
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+            current = bits.get(word);
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return insertions.sum();
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = bitCount / 8;
+        return exact == null ? bytes : bytes + exact.memoryBytes();
+    }
+
+    @Override
+    public double falsePositiveRate() {
+        if (exact != null) {
+            return exact.falsePositiveRate();
+        }
+        // (1 - e^(-kn/m))^k for the current fill level
+        double fill = 1 - Math.exp(-(double) hashCount * size() / bitCount);
+        return Math.pow(fill, hashCount);
+    }
+}
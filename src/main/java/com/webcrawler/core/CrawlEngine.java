@@ -0,0 +1,342 @@
+package com.webcrawler.core;
+
+import com.webcrawler.config.CrawlerConfig;
+import com.webcrawler.model.CrawlTask;
+import com.webcrawler.service.HttpClient;
+import com.webcrawler.service.RateLimiter;
+import com.webcrawler.service.RobotsCache;
+import com.webcrawler.service.RobotsRules;
+import com.webcrawler.service.UrlCanonicalizer;
+import com.webcrawler.service.ValidatorCache;
+import com.webcrawler.sink.ResultSink;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-lived crawler that runs many crawl jobs at once. The engine owns
+ * the worker threads, the HTTP client and its connections, the per-host rate
+ * limiter and the robots.txt cache; each {@link CrawlJob} keeps only its
+ * frontier, visited set, page budget and result sink. Politeness therefore
+ * holds across jobs: jobs crawling the same host share its request rate.
+ *
+ * <p>The engine's configuration supplies {@code maxThreads} (the shared
+ * workers), {@code permitsPerSecond}, the user agent, timeouts, content
+ * settings, robots.txt handling, URL canonicalization and the validator
+ * cache. A job's configuration supplies everything about what to crawl:
+ * depth, page budget, scoring, visited set, frontier, results and
+ * checkpointing. A job always fetches one page per worker, whatever its
+ * fetch mode, pipeline or concurrency settings say.
+ *
+ * <p>Workers choose a job by stride scheduling. Every task taken advances
+ * the job's pass by the inverse of its weight, and the job with the lowest
+ * pass that has a task ready goes next. Jobs with work ready are served in
+ * proportion to their weights, so a big job cannot starve a small one, and
+ * a job that had nothing ready is brought up to the current pass instead of
+ * saving up a burst.
+ *
+ * <p>The engine's lock only guards the job queues, a heap ordered by pass. A worker
+ * claims the head and looks for a task in the job's frontier without the
+ * lock, so workers serving different jobs never wait on each other's
+ * frontiers. A job with nothing ready is parked until it queues new tasks,
+ * or briefly, since tasks held back by politeness become ready without a
+ * signal.
+ */
+public class CrawlEngine implements AutoCloseable {
+    private static final long STRIDE = 1L << 20;
+    // How long a job with nothing ready is left alone unless it queues new tasks
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final CrawlerConfig config;
+    private final ValidatorCache validatorCache;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final HttpClient httpClient;
+    private final RateLimiter rateLimiter;
+    private final RobotsCache robotsCache;
+    private final ExecutorService workers;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition jobReady = lock.newCondition();
+    // Running jobs, ready jobs by pass, and parked jobs in order of their deadline; guarded by lock
+    private final List<CrawlJob> jobs = new ArrayList<>();
+    private final PriorityQueue<CrawlJob> ready = new PriorityQueue<>(
+            Comparator.<CrawlJob>comparingLong(job -> job.pass).thenComparingLong(CrawlJob::getId));
+    private final ArrayDeque<CrawlJob> parked = new ArrayDeque<>();
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    // Pass of the job served last; guarded by lock
+    private long currentPass;
+    private volatile boolean closed;
+
+    public CrawlEngine(CrawlerConfig config) {
+        this.config = config;
+        this.validatorCache = WebCrawler.createValidatorCache(config);
+        this.urlCanonicalizer = WebCrawler.createUrlCanonicalizer(config);
+        this.httpClient = WebCrawler.createHttpClient(config, validatorCache, urlCanonicalizer);
+        this.rateLimiter = new RateLimiter(config.getPermitsPerSecond());
+        this.robotsCache = config.isRespectRobotsTxt()
+                ? new RobotsCache(httpClient, config.getUserAgent(), config.getRobotsCacheTtlMs(),
+                        config.getRobotsCacheMaxHosts(), this::robotsLoaded)
+                : null;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(config.getMaxThreads(),
+                r -> new Thread(r, "engine-worker-" + threadIds.incrementAndGet()));
+        for (int i = 0; i < config.getMaxThreads(); i++) {
+            workers.execute(this::runWorker);
+        }
+    }
+
+    /**
+     * Starts a job of weight 1 that writes its results where its configuration says.
+     */
+    public CrawlJob submit(String startUrl, CrawlerConfig jobConfig) {
+        return submit(startUrl, jobConfig, 1);
+    }
+
+    public CrawlJob submit(String startUrl, CrawlerConfig jobConfig, int weight) {
+        return submit(startUrl, jobConfig, WebCrawler.createResultSink(jobConfig), weight);
+    }
+
+    /**
+     * Starts a job that hands its results to the given sink, served in
+     * proportion to {@code weight} while other jobs have work too.
+     *
+     * @throws IllegalArgumentException if the weight is not positive, the start URL is
+     *                                  not an absolute http(s) URL or the job is a cluster node
+     * @throws IllegalStateException    if the engine is closed
+     */
+    public CrawlJob submit(String startUrl, CrawlerConfig jobConfig, ResultSink resultSink, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("A job's weight must be positive.");
+        }
+        if (closed) {
+            throw new IllegalStateException("The crawl engine is closed");
+        }
+        CrawlJob job = new CrawlJob(nextJobId.getAndIncrement(), weight, this);
+        job.start(new WebCrawler(jobConfig, resultSink, WebCrawler.createScorer(jobConfig), job), startUrl);
+        lock.lock();
+        try {
+            job.pass = currentPass;
+            jobs.add(job);
+            makeReady(job);
+        } finally {
+            lock.unlock();
+        }
+        job.getCompletion().whenComplete((summary, error) -> remove(job));
+        return job;
+    }
+
+    /** Jobs submitted and not yet over. */
+    public List<CrawlJob> getJobs() {
+        lock.lock();
+        try {
+            return new ArrayList<>(jobs);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the running jobs, waits for them to close their sinks and stops
+     * the workers.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List<CrawlJob> running = getJobs();
+        running.forEach(CrawlJob::cancel);
+        for (CrawlJob job : running) {
+            try {
+                job.join();
+            } catch (RuntimeException e) {
+                // Cancelled or failed; either way it is over.
+            }
+        }
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Engine workers did not stop within 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        httpClient.close();
+        if (validatorCache != null) {
+            try {
+                validatorCache.save();
+            } catch (IOException e) {
+                System.err.println("Failed to save validator cache: " + e.getMessage());
+            }
+        }
+    }
+
+    HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    RobotsCache getRobotsCache() {
+        return robotsCache;
+    }
+
+    UrlCanonicalizer getUrlCanonicalizer() {
+        return urlCanonicalizer;
+    }
+
+    /**
+     * Called after a job has queued new tasks: a parked job is made ready at
+     * once, and a claimed one is not parked when its worker finds nothing.
+     * Free while the job is already ready, as it is for most admissions.
+     */
+    void workAvailable(CrawlJob job) {
+        CrawlJob.Dispatch state = job.state;
+        if (state != CrawlJob.Dispatch.PARKED && state != CrawlJob.Dispatch.CLAIMED) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (job.state == CrawlJob.Dispatch.PARKED) {
+                parked.remove(job);
+                unpark(job);
+            } else if (job.state == CrawlJob.Dispatch.CLAIMED) {
+                job.signalled = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWorker() {
+        try {
+            while (!closed) {
+                CrawlJob job = claim();
+                CrawlTask task = null;
+                try {
+                    task = job.crawler().takeTask();
+                } catch (RuntimeException e) {
+                    // A failing frontier parks the job like one with nothing ready.
+                    System.err.println("Error in " + job + " taking a task: " + e.getMessage());
+                } finally {
+                    release(job, task != null);
+                }
+                if (task == null) {
+                    continue;
+                }
+                try {
+                    job.crawler().crawlTask(task);
+                } catch (RuntimeException e) {
+                    // One job's failure must not cost the other jobs a worker.
+                    System.err.println("Error in " + job + " crawling " + task.getUrl() + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the ready job with the lowest pass off the heap, waiting until
+     * there is one. No other worker looks at the job until it is released.
+     */
+    private CrawlJob claim() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                while (!parked.isEmpty() && now - parked.peekFirst().parkedUntilNanos >= 0) {
+                    unpark(parked.pollFirst());
+                }
+                CrawlJob job = ready.poll();
+                if (job != null) {
+                    job.state = CrawlJob.Dispatch.CLAIMED;
+                    job.signalled = false;
+                    return job;
+                }
+                if (parked.isEmpty()) {
+                    jobReady.await();
+                } else {
+                    jobReady.awaitNanos(parked.peekFirst().parkedUntilNanos - now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts a claimed job back: charged one stride if a task was taken, and
+     * parked if it had none ready and queued nothing in the meantime.
+     */
+    private void release(CrawlJob job, boolean taskTaken) {
+        lock.lock();
+        try {
+            if (job.state != CrawlJob.Dispatch.CLAIMED) {
+                return;
+            }
+            if (taskTaken) {
+                currentPass = Math.max(currentPass, job.pass);
+                job.pass += STRIDE / job.getWeight();
+                job.taskTaken();
+                makeReady(job);
+            } else if (job.signalled) {
+                unpark(job);
+            } else {
+                job.state = CrawlJob.Dispatch.PARKED;
+                job.parkedUntilNanos = System.nanoTime() + PARK_NANOS;
+                parked.addLast(job);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Readies a job that had nothing ready, at no earlier pass than the current
+     * one, so the time it was idle is not saved up as a burst. Needs the lock.
+     */
+    private void unpark(CrawlJob job) {
+        job.pass = Math.max(job.pass, currentPass);
+        makeReady(job);
+    }
+
+    private void makeReady(CrawlJob job) {
+        job.state = CrawlJob.Dispatch.READY;
+        ready.add(job);
+        jobReady.signal();
+    }
+
+    private void remove(CrawlJob job) {
+        lock.lock();
+        try {
+            job.state = CrawlJob.Dispatch.DONE;
+            jobs.remove(job);
+            ready.remove(job);
+            parked.remove(job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies a host's {@code Crawl-delay} to every job. Jobs seed themselves
+     * from a host's sitemaps when they first reach it.
+     */
+    private void robotsLoaded(String scheme, String host, RobotsRules rules) {
+        if (rules.getCrawlDelayMillis() > 0) {
+            long delayMs = Math.min(rules.getCrawlDelayMillis(), config.getMaxCrawlDelayMs());
+            rateLimiter.setCrawlDelay(host, TimeUnit.MILLISECONDS.toNanos(delayMs));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.webcrawler.core;
+
+import com.webcrawler.metrics.CrawlMetrics;
+import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlSummary;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handle to a crawl running on a {@link CrawlEngine}. The job has its own
+ * configuration, frontier, visited set, page budget, metrics and result
+ * sink; the engine supplies threads, connections and per-host politeness.
+ */
+public class CrawlJob {
+    /**
+     * Where the job is in the engine's dispatch: waiting to be registered,
+     * queued for a worker, being checked for a task by one worker, set aside
+     * after it had none ready, or over.
+     */
+    enum Dispatch { NEW, READY, CLAIMED, PARKED, DONE }
+
+    private final long id;
+    private final int weight;
+    private final CrawlEngine engine;
+    // Set by start before the job is handed to the caller or the workers
+    private WebCrawler crawler;
+    private CompletableFuture<CrawlSummary> completion;
+    private volatile long tasksRun;
+
+    // Dispatch state, guarded by the engine's lock; state is also read without it
+    long pass;
+    volatile Dispatch state = Dispatch.NEW;
+    // Whether tasks were queued while a worker had the job claimed
+    boolean signalled;
+    long parkedUntilNanos;
+
+    CrawlJob(long id, int weight, CrawlEngine engine) {
+        this.id = id;
+        this.weight = weight;
+        this.engine = engine;
+    }
+
+    void start(WebCrawler crawler, String startUrl) {
+        this.crawler = crawler;
+        this.completion = crawler.crawlAsync(startUrl);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Completes when the crawl is over, as {@link WebCrawler#crawlAsync} does;
+     * cancelling it cancels the job.
+     */
+    public CompletableFuture<CrawlSummary> getCompletion() {
+        return completion;
+    }
+
+    /** Waits for the crawl to end. */
+    public CrawlSummary join() {
+        return completion.join();
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /** Stops the job; the engine and its other jobs carry on. */
+    public void cancel() {
+        crawler.cancel();
+    }
+
+    public CrawlMetrics getMetrics() {
+        return crawler.getMetrics();
+    }
+
+    /**
+     * @throws IllegalStateException if results are streamed to another sink
+     */
+    public List<CrawlResult> getResults() {
+        return crawler.getResults();
+    }
+
+    /** Tasks the engine's workers have taken from this job so far. */
+    public long getTasksRun() {
+        return tasksRun;
+    }
+
+    WebCrawler crawler() {
+        return crawler;
+    }
+
+    CrawlEngine getEngine() {
+        return engine;
+    }
+
+    void taskTaken() {
+        tasksRun++;
+    }
+
+    @Override
+    public String toString() {
+        return "job " + id + " (weight " + weight + ")";
+    }
+}
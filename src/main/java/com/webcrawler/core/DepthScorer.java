@@ -0,0 +1,20 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+/**
+ * Breadth-first across all hosts: shallower URLs score higher, and a waiting
+ * URL moves up when a shorter path to it turns up.
+ */
+public class DepthScorer implements UrlScorer {
+
+    @Override
+    public double score(CrawlTask task, CrawlTask parent, int parentOutDegree) {
+        return -task.getDepth();
+    }
+
+    @Override
+    public double rescore(CrawlTask task, CrawlTask parent, int parentOutDegree) {
+        return Math.max(task.getScore(), -(parent.getDepth() + 1));
+    }
+}
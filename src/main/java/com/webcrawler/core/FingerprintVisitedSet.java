@@ -0,0 +1,189 @@
+package com.webcrawler.core;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Exact set of URL fingerprints held in primitive {@code long[]} tables.
+ * The key space is split across independently locked stripes, each an
+ * open-addressing table with linear probing that doubles when 70% full.
+ * This costs about 8-16 bytes per URL, against well over 100 for a
+ * {@code ConcurrentHashMap<String, Boolean>} entry.
+ *
+ * <p>Lookups first probe the stripe under an optimistic read, so a URL that
+ * is already stored is answered without taking a lock; only new URLs, and
+ * reads that raced with a write to the same stripe, lock it.
+ */
+public class FingerprintVisitedSet implements VisitedSet {
+    private static final int STRIPES = 64;
+    private static final double MAX_LOAD = 0.7;
+    // 0 marks an empty slot, so a real fingerprint of 0 is stored as this value instead.
+    private static final long ZERO_SUBSTITUTE = 0x9e3779b97f4a7c15L;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public FingerprintVisitedSet(long expectedEntries) {
+        int perStripe = (int) Math.min(1 << 28, Math.max(16, expectedEntries / STRIPES));
+        int capacity = Integer.highestOneBit((int) Math.ceil(perStripe / MAX_LOAD) - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    @Override
+    public boolean addFingerprint(long fingerprint) {
+        long key = fingerprint == 0 ? ZERO_SUBSTITUTE : fingerprint;
+        Stripe stripe = stripeFor(key);
+        long stamp = stripe.lock.tryOptimisticRead();
+        if (stamp != 0 && stripe.contains(key) && stripe.lock.validate(stamp)) {
+            return false;
+        }
+        return insert(stripe, key);
+    }
+
+    /**
+     * Adds a fingerprint a Bloom filter has just reported unseen, going
+     * straight to the stripe's locked insert without the optimistic probe.
+     * The insert still rejects a duplicate, as when two threads add the same
+     * new URL at once.
+     */
+    boolean addNewFingerprint(long fingerprint) {
+        long key = fingerprint == 0 ? ZERO_SUBSTITUTE : fingerprint;
+        return insert(stripeFor(key), key);
+    }
+
+    private static boolean insert(Stripe stripe, long key) {
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.add(key);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsFingerprint(long fingerprint) {
+        long key = fingerprint == 0 ? ZERO_SUBSTITUTE : fingerprint;
+        Stripe stripe = stripeFor(key);
+        long stamp = stripe.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = stripe.contains(key);
+            if (stripe.lock.validate(stamp)) {
+                return found;
+            }
+        }
+        stamp = stripe.lock.readLock();
+        try {
+            return stripe.contains(key);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                bytes += (long) stripe.table.length * Long.BYTES;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public double falsePositiveRate() {
+        // A new URL is misreported only if its fingerprint collides with a stored one.
+        return size() / Math.pow(2, 64);
+    }
+
+    private Stripe stripeFor(long key) {
+        // Top bits pick the stripe; the table index uses the low bits.
+        return stripes[(int) (key >>> 58) & (STRIPES - 1)];
+    }
+
+    private static class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private long[] table;
+        private int size;
+        private int resizeAt;
+
+        Stripe(int capacity) {
+            this.table = new long[capacity];
+            this.resizeAt = (int) (capacity * MAX_LOAD);
+        }
+
+        boolean add(long key) {
+            int mask = table.length - 1;
+            int index = (int) key & mask;
+            while (true) {
+                long slot = table[index];
+                if (slot == 0) {
+                    table[index] = key;
+                    if (++size > resizeAt) {
+                        grow();
+                    }
+                    return true;
+                }
+                if (slot == key) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        /**
+         * Safe to run under an optimistic read: it reads the table once and
+         * terminates on any snapshot, since a table is never full, even while
+         * {@link #grow} is filling it.
+         */
+        boolean contains(long key) {
+            long[] table = this.table;
+            int mask = table.length - 1;
+            int index = (int) key & mask;
+            while (true) {
+                long slot = table[index];
+                if (slot == 0) {
+                    return false;
+                }
+                if (slot == key) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            long[] old = table;
+            long[] grown = new long[old.length * 2];
+            int mask = grown.length - 1;
+            for (long key : old) {
+                if (key != 0) {
+                    int index = (int) key & mask;
+                    while (grown[index] != 0) {
+                        index = (index + 1) & mask;
+                    }
+                    grown[index] = key;
+                }
+            }
+            table = grown;
+            resizeAt = (int) (grown.length * MAX_LOAD);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The set of admitted tasks waiting to be crawled
+ */
+public interface Frontier {
+
+    void offer(CrawlTask task);
+
+    /**
+     * Queues the tasks admitted from one page. Callers group them by host, so
+     * a frontier can take its lock once and look each host up once.
+     */
+    default void offerAll(List<CrawlTask> tasks) {
+        for (CrawlTask task : tasks) {
+            offer(task);
+        }
+    }
+
+    /**
+     * Takes the next task that may be fetched right now, waiting up to the
+     * given time for one to become available.
+     *
+     * @return the task, or {@code null} if the timeout elapsed or the frontier was closed
+     */
+    CrawlTask poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Returns a task that was taken but could not be fetched yet; it becomes
+     * available again no earlier than {@code notBeforeNanos} ({@link System#nanoTime()}).
+     */
+    void retryLater(CrawlTask task, long notBeforeNanos);
+
+    /**
+     * Reports another link to a URL that was already admitted, found on
+     * {@code parent}, a page with {@code parentOutDegree} links. Frontiers
+     * that order tasks by score use it to raise a queued task; others ignore it.
+     */
+    default void linkFound(String url, CrawlTask parent, int parentOutDegree) {
+    }
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Releases any resources held outside the heap and wakes every thread
+     * blocked in {@link #poll}; later polls return {@code null} immediately.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,220 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Host-partitioned frontier. Each host has its own FIFO queue, and hosts with
+ * pending work sit in a heap ordered by the earliest time they may be hit again,
+ * so a worker always gets a URL from a host that is ready right now instead of
+ * queueing behind a single busy site.
+ *
+ * A host's queue is dropped as soon as it empties, so a broad crawl only holds
+ * the hosts it has work for. Until its politeness delay has passed, the host's
+ * next fetch time is kept in a small side table that a new queue starts from.
+ */
+public class HostFrontier implements Frontier {
+    private final long politenessDelayNanos;
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    // Next fetch time of hosts whose queue emptied, in insertion and therefore expiry order
+    private final LinkedHashMap<String, Long> coolingHosts = new LinkedHashMap<>();
+    private final PriorityQueue<HostQueue> readyHeap = new PriorityQueue<>(
+            (a, b) -> Long.compare(a.nextFetchNanos - b.nextFetchNanos, 0));
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private int size;
+    private boolean closed;
+
+    public HostFrontier(long politenessDelayMs) {
+        this.politenessDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, politenessDelayMs));
+    }
+
+    @Override
+    public void offer(CrawlTask task) {
+        lock.lock();
+        try {
+            HostQueue queue = queueFor(task.getHost());
+            queue.tasks.add(task);
+            size++;
+            if (!queue.scheduled) {
+                queue.scheduled = true;
+                readyHeap.add(queue);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void offerAll(List<CrawlTask> tasks) {
+        lock.lock();
+        try {
+            HostQueue queue = null;
+            for (CrawlTask task : tasks) {
+                if (queue == null || !queue.host.equals(task.getHost())) {
+                    queue = queueFor(task.getHost());
+                }
+                queue.tasks.add(task);
+                size++;
+                if (!queue.scheduled) {
+                    queue.scheduled = true;
+                    readyHeap.add(queue);
+                }
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public CrawlTask poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                HostQueue head = readyHeap.peek();
+                if (head == null) {
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    remaining = available.awaitNanos(remaining);
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                long delay = head.nextFetchNanos - now;
+                if (delay <= 0) {
+                    readyHeap.poll();
+                    CrawlTask task = head.tasks.poll();
+                    size--;
+                    head.nextFetchNanos = now + politenessDelayNanos;
+                    if (head.tasks.isEmpty()) {
+                        hosts.remove(head.host);
+                        if (politenessDelayNanos > 0) {
+                            coolingHosts.put(head.host, head.nextFetchNanos);
+                        }
+                    } else {
+                        readyHeap.add(head);
+                    }
+                    // Another host may already be ready; pass the signal on.
+                    if (!readyHeap.isEmpty()) {
+                        available.signal();
+                    }
+                    return task;
+                }
+
+                if (remaining <= 0) {
+                    return null;
+                }
+                long wait = Math.min(delay, remaining);
+                long left = available.awaitNanos(wait);
+                remaining -= wait - left;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts the task back at the head of its host's queue and keeps the host
+     * out of rotation until {@code notBeforeNanos}.
+     */
+    @Override
+    public void retryLater(CrawlTask task, long notBeforeNanos) {
+        lock.lock();
+        try {
+            HostQueue queue = queueFor(task.getHost());
+            queue.tasks.addFirst(task);
+            size++;
+            if (notBeforeNanos - queue.nextFetchNanos > 0) {
+                queue.nextFetchNanos = notBeforeNanos;
+                if (queue.scheduled) {
+                    readyHeap.remove(queue);
+                }
+                queue.scheduled = false;
+            }
+            if (!queue.scheduled) {
+                queue.scheduled = true;
+                readyHeap.add(queue);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The host's queue, created if needed with the next fetch time the host
+     * had when its last queue emptied. Needs the lock.
+     */
+    private HostQueue queueFor(String host) {
+        HostQueue queue = hosts.get(host);
+        if (queue != null) {
+            return queue;
+        }
+        queue = new HostQueue(host);
+        Long nextFetchNanos = coolingHosts.remove(host);
+        if (nextFetchNanos != null) {
+            queue.nextFetchNanos = nextFetchNanos;
+        }
+        hosts.put(host, queue);
+        long now = System.nanoTime();
+        Iterator<Long> cooling = coolingHosts.values().iterator();
+        while (cooling.hasNext() && cooling.next() - now <= 0) {
+            cooling.remove();
+        }
+        return queue;
+    }
+
+    private static class HostQueue {
+        private final String host;
+        private final ArrayDeque<CrawlTask> tasks = new ArrayDeque<>();
+        private long nextFetchNanos = System.nanoTime();
+        private boolean scheduled;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+
+        @Override
+        public String toString() {
+            return "HostQueue{host='" + host + "', pending=" + tasks.size() + "}";
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+/**
+ * Scores a URL by the number of links to it found so far. Seeds start at zero.
+ */
+public class InLinkScorer implements UrlScorer {
+
+    @Override
+    public double score(CrawlTask task, CrawlTask parent, int parentOutDegree) {
+        return parent == null ? 0 : 1;
+    }
+
+    @Override
+    public double rescore(CrawlTask task, CrawlTask parent, int parentOutDegree) {
+        return task.getScore() + 1;
+    }
+}
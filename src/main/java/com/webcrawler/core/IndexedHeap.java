@@ -0,0 +1,143 @@
+package com.webcrawler.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Binary heap whose nodes remember where they are, so any node can be removed
+ * or moved after its key changed in O(log n) instead of the O(n) search
+ * {@link java.util.PriorityQueue#remove(Object)} needs. A node can sit in
+ * several heaps at once as long as each uses its own slot. Not thread-safe.
+ */
+final class IndexedHeap<T extends IndexedHeap.Node> {
+
+    /**
+     * Something kept in one or more indexed heaps; holds its position in each.
+     */
+    static class Node {
+        final int[] positions;
+
+        Node(int slots) {
+            positions = new int[slots];
+            Arrays.fill(positions, -1);
+        }
+    }
+
+    private final Comparator<? super T> order;
+    private final int slot;
+    private Node[] nodes = new Node[16];
+    private int size;
+
+    /**
+     * @param order smallest first
+     * @param slot  which of the node's positions this heap uses
+     */
+    IndexedHeap(Comparator<? super T> order, int slot) {
+        this.order = order;
+        this.slot = slot;
+    }
+
+    void add(T node) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        place(node, size++);
+        siftUp(node.positions[slot]);
+    }
+
+    @SuppressWarnings("unchecked")
+    T peek() {
+        return size == 0 ? null : (T) nodes[0];
+    }
+
+    T poll() {
+        T head = peek();
+        if (head != null) {
+            remove(head);
+        }
+        return head;
+    }
+
+    boolean contains(T node) {
+        int position = node.positions[slot];
+        return position >= 0 && position < size && nodes[position] == node;
+    }
+
+    void remove(T node) {
+        int position = node.positions[slot];
+        node.positions[slot] = -1;
+        Node last = nodes[--size];
+        nodes[size] = null;
+        if (position != size) {
+            place(last, position);
+            update(position);
+        }
+    }
+
+    /**
+     * Restores the order after the node's key changed.
+     */
+    void changed(T node) {
+        update(node.positions[slot]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void update(int position) {
+        if (position > 0 && less(position, (position - 1) >>> 1)) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!less(position, parent)) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && less(child + 1, child)) {
+                child++;
+            }
+            if (!less(child, position)) {
+                return;
+            }
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean less(int a, int b) {
+        return order.compare((T) nodes[a], (T) nodes[b]) < 0;
+    }
+
+    private void swap(int a, int b) {
+        Node node = nodes[a];
+        place(nodes[b], a);
+        place(node, b);
+    }
+
+    private void place(Node node, int position) {
+        nodes[position] = node;
+        node.positions[slot] = position;
+    }
+}
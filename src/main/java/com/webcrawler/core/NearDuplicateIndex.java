@@ -0,0 +1,148 @@
+package com.webcrawler.core;
+
+import com.webcrawler.service.SimHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent index of page SimHashes for near-duplicate detection. Each
+ * fingerprint is split into {@code maxDistance + 1} bands; two fingerprints
+ * within {@code maxDistance} bits of each other must agree exactly on at least
+ * one band, so only pages sharing a band are compared.
+ *
+ * Adding a page holds the locks of all its bands' stripes while it checks and
+ * inserts, so of two near-duplicates indexed at once, one always sees the
+ * other. Lookups that find a match take no lock.
+ */
+public class NearDuplicateIndex {
+    private static final int STRIPES = 64;
+
+    private final int maxDistance;
+    private final int[] bandShifts;
+    private final long[] bandMasks;
+    private final ConcurrentHashMap<Long, Queue<Entry>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Queue<String>> clusters = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public NearDuplicateIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 15) {
+            throw new IllegalArgumentException("Max distance must be between 0 and 15.");
+        }
+        this.maxDistance = maxDistance;
+        int bands = maxDistance + 1;
+        this.bandShifts = new int[bands];
+        this.bandMasks = new long[bands];
+        int width = 64 / bands;
+        for (int band = 0; band < bands; band++) {
+            bandShifts[band] = band * width;
+            int bits = band == bands - 1 ? 64 - band * width : width;
+            bandMasks[band] = bits == 64 ? -1L : (1L << bits) - 1;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Looks for an indexed page within the distance of the given one. If there
+     * is none the page is indexed as a new original.
+     *
+     * @return the URL of the page this one duplicates, or {@code null} if it is new
+     */
+    public String findOrAdd(String url, long simHash) {
+        if (simHash == SimHash.NONE) {
+            return null;
+        }
+        String original = find(simHash);
+        if (original == null) {
+            // Locked in index order so two adds never wait on each other in a cycle.
+            int[] locked = stripesOf(simHash);
+            for (int stripe : locked) {
+                stripes[stripe].lock();
+            }
+            try {
+                original = find(simHash);
+                if (original == null) {
+                    Entry entry = new Entry(url, simHash);
+                    for (int band = 0; band < bandShifts.length; band++) {
+                        buckets.computeIfAbsent(bucketKey(simHash, band), k -> new ConcurrentLinkedQueue<>()).add(entry);
+                    }
+                    return null;
+                }
+            } finally {
+                for (int stripe : locked) {
+                    stripes[stripe].unlock();
+                }
+            }
+        }
+        clusters.computeIfAbsent(original, k -> new ConcurrentLinkedQueue<>()).add(url);
+        return original;
+    }
+
+    private String find(long simHash) {
+        for (int band = 0; band < bandShifts.length; band++) {
+            Queue<Entry> bucket = buckets.get(bucketKey(simHash, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry entry : bucket) {
+                if (SimHash.distance(entry.simHash, simHash) <= maxDistance) {
+                    return entry.url;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Distinct lock stripes of the fingerprint's band buckets, in ascending order.
+     */
+    private int[] stripesOf(long simHash) {
+        int[] indexes = new int[bandShifts.length];
+        for (int band = 0; band < bandShifts.length; band++) {
+            indexes[band] = Long.hashCode(bucketKey(simHash, band) * 0x9E3779B97F4A7C15L) & (STRIPES - 1);
+        }
+        return Arrays.stream(indexes).sorted().distinct().toArray();
+    }
+
+    /**
+     * Groups of near-duplicate pages, keyed by the first page of each group
+     * that was seen. Pages without duplicates are not listed.
+     */
+    public Map<String, List<String>> duplicateClusters() {
+        Map<String, List<String>> snapshot = new LinkedHashMap<>();
+        clusters.forEach((original, duplicates) -> snapshot.put(original, new ArrayList<>(duplicates)));
+        return snapshot;
+    }
+
+    public int duplicateCount() {
+        int count = 0;
+        for (Queue<String> duplicates : clusters.values()) {
+            count += duplicates.size();
+        }
+        return count;
+    }
+
+    private long bucketKey(long simHash, int band) {
+        long bandValue = (simHash >>> bandShifts[band]) & bandMasks[band];
+        return bandValue * 31 + band;
+    }
+
+    private static class Entry {
+        private final String url;
+        private final long simHash;
+
+        Entry(String url, long simHash) {
+            this.url = url;
+            this.simHash = simHash;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+/**
+ * Online Page Importance Computation (Abiteboul et al.). Seeds start with one
+ * unit of cash. A fetched page splits the cash it had accumulated by the time
+ * it was taken equally among its links, and a waiting URL's score is the cash
+ * it has received so far, so pages many important pages point to rise quickly.
+ */
+public class OpicScorer implements UrlScorer {
+    private static final double SEED_CASH = 1.0;
+
+    @Override
+    public double score(CrawlTask task, CrawlTask parent, int parentOutDegree) {
+        return parent == null ? SEED_CASH : share(parent, parentOutDegree);
+    }
+
+    @Override
+    public double rescore(CrawlTask task, CrawlTask parent, int parentOutDegree) {
+        return task.getScore() + share(parent, parentOutDegree);
+    }
+
+    private static double share(CrawlTask parent, int outDegree) {
+        return parent.getScore() / Math.max(1, outDegree);
+    }
+}
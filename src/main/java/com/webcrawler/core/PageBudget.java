@@ -0,0 +1,95 @@
+package com.webcrawler.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The number of URLs a FIFO crawl may still admit. Each thread reserves the
+ * budget in chunks and spends from its own reserve, so admitting a page of
+ * links touches the shared counter once per chunk rather than once per link.
+ * Reservations never exceed the limit: a thread that finds the shared
+ * counter empty takes what other threads hold in reserve, so the budget is
+ * spent down to the last URL.
+ */
+final class PageBudget {
+    private static final int CHUNK = 32;
+
+    private final int limit;
+    private final AtomicInteger unreserved;
+    private final List<AtomicInteger> reserves = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<AtomicInteger> reserve = ThreadLocal.withInitial(this::newReserve);
+
+    PageBudget(int limit) {
+        this.limit = Math.max(0, limit);
+        this.unreserved = new AtomicInteger(this.limit);
+    }
+
+    /**
+     * Takes up to {@code wanted} URLs from the budget.
+     *
+     * @return how many were granted, between 0 and {@code wanted}
+     */
+    int reserve(int wanted) {
+        if (wanted <= 0) {
+            return 0;
+        }
+        AtomicInteger own = reserve.get();
+        int granted = take(own, wanted);
+        if (granted < wanted) {
+            int needed = wanted - granted;
+            int taken = take(unreserved, needed + CHUNK);
+            if (taken > needed) {
+                own.addAndGet(taken - needed);
+                taken = needed;
+            }
+            granted += taken;
+        }
+        for (int i = 0; i < reserves.size() && granted < wanted; i++) {
+            granted += take(reserves.get(i), wanted - granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Counts URLs admitted before this budget existed, as on a resumed crawl.
+     */
+    void spend(long count) {
+        int spent = (int) Math.min(count, limit);
+        unreserved.getAndUpdate(n -> Math.max(0, n - spent));
+    }
+
+    /**
+     * Whether any URL may still be admitted; exact only while no thread is reserving.
+     */
+    boolean hasRemaining() {
+        if (unreserved.get() > 0) {
+            return true;
+        }
+        for (AtomicInteger held : reserves) {
+            if (held.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private AtomicInteger newReserve() {
+        AtomicInteger held = new AtomicInteger();
+        reserves.add(held);
+        return held;
+    }
+
+    private static int take(AtomicInteger counter, int wanted) {
+        while (true) {
+            int available = counter.get();
+            if (available == 0) {
+                return 0;
+            }
+            int taken = Math.min(available, wanted);
+            if (counter.compareAndSet(available, available - taken)) {
+                return taken;
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Best-first frontier. Tasks are ordered by the score a {@link UrlScorer} gave
+ * them, and a task's score can still rise while it waits as more links to it
+ * are found. Politeness works as in {@link HostFrontier}: each host has its
+ * own queue and is handed out at most once per politeness delay, and among the
+ * hosts that may be hit right now the one holding the best task goes first.
+ *
+ * Memory is bounded: past the capacity the lowest-scored task is dropped to
+ * make room (or the new task, if it scores no higher). A host that has had
+ * its quota of tasks taken loses the rest of its queue and accepts no more.
+ * Dropped tasks are handed to a callback outside the frontier's lock.
+ */
+public class PriorityFrontier implements Frontier {
+    // Highest score first; equal scores in admission order
+    private static final Comparator<Entry> BEST_FIRST = (a, b) -> {
+        int byScore = Double.compare(b.task.getScore(), a.task.getScore());
+        return byScore != 0 ? byScore : Long.compare(a.sequence, b.sequence);
+    };
+
+    private final UrlScorer scorer;
+    private final long politenessDelayNanos;
+    private final int capacity;
+    private final int maxTasksPerHost;
+    private final Consumer<CrawlTask> onDropped;
+
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final Map<String, Entry> queued = new HashMap<>();
+    private final IndexedHeap<Entry> lowest = new IndexedHeap<>(BEST_FIRST.reversed(), 1);
+    private final IndexedHeap<HostQueue> readyHosts = new IndexedHeap<>(
+            (a, b) -> BEST_FIRST.compare(a.tasks.peek(), b.tasks.peek()), 0);
+    private final IndexedHeap<HostQueue> waitingHosts = new IndexedHeap<>(
+            (a, b) -> Long.compare(a.nextFetchNanos - b.nextFetchNanos, 0), 0);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private long sequence;
+    private long droppedCount;
+    private boolean closed;
+
+    /**
+     * @param scorer          rescores queued tasks when {@link #linkFound} reports another link to them
+     * @param capacity        most tasks held at once
+     * @param maxTasksPerHost most tasks taken per host, or 0 for no quota
+     * @param onDropped       receives every task dropped without being taken
+     */
+    public PriorityFrontier(UrlScorer scorer, long politenessDelayMs, int capacity, int maxTasksPerHost,
+                            Consumer<CrawlTask> onDropped) {
+        this.scorer = scorer;
+        this.politenessDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, politenessDelayMs));
+        this.capacity = Math.max(1, capacity);
+        this.maxTasksPerHost = Math.max(0, maxTasksPerHost);
+        this.onDropped = onDropped;
+    }
+
+    /**
+     * Queues a task at its current {@link CrawlTask#getScore() score}.
+     */
+    @Override
+    public void offer(CrawlTask task) {
+        List<CrawlTask> dropped = new ArrayList<>(1);
+        lock.lock();
+        try {
+            offer(hosts.computeIfAbsent(task.getHost(), HostQueue::new), task, dropped);
+        } finally {
+            lock.unlock();
+            deliver(dropped);
+        }
+    }
+
+    @Override
+    public void offerAll(List<CrawlTask> tasks) {
+        List<CrawlTask> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            HostQueue host = null;
+            for (CrawlTask task : tasks) {
+                if (host == null || !host.host.equals(task.getHost())) {
+                    host = hosts.computeIfAbsent(task.getHost(), HostQueue::new);
+                }
+                offer(host, task, dropped);
+            }
+        } finally {
+            lock.unlock();
+            deliver(dropped);
+        }
+    }
+
+    private void offer(HostQueue host, CrawlTask task, List<CrawlTask> dropped) {
+        if (host.quotaReached()) {
+            dropped.add(task);
+            return;
+        }
+        if (queued.size() >= capacity) {
+            Entry worst = lowest.peek();
+            if (task.getScore() <= worst.task.getScore()) {
+                dropped.add(task);
+                return;
+            }
+            remove(worst);
+            dropped.add(worst.task);
+        }
+        add(host, task);
+    }
+
+    @Override
+    public CrawlTask poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        List<CrawlTask> dropped = null;
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                long now = System.nanoTime();
+                while (!waitingHosts.isEmpty() && waitingHosts.peek().nextFetchNanos - now <= 0) {
+                    readyHosts.add(waitingHosts.poll());
+                }
+
+                HostQueue host = readyHosts.poll();
+                if (host != null) {
+                    Entry entry = host.tasks.poll();
+                    lowest.remove(entry);
+                    queued.remove(entry.task.getUrl());
+                    host.nextFetchNanos = now + politenessDelayNanos;
+                    host.taken++;
+                    if (host.quotaReached() && !host.tasks.isEmpty()) {
+                        dropped = new ArrayList<>(host.tasks.size());
+                        while (!host.tasks.isEmpty()) {
+                            Entry rest = host.tasks.poll();
+                            lowest.remove(rest);
+                            queued.remove(rest.task.getUrl());
+                            dropped.add(rest.task);
+                        }
+                    }
+                    if (!host.tasks.isEmpty()) {
+                        waitingHosts.add(host);
+                    }
+                    // Another host may already be ready; pass the signal on.
+                    if (!readyHosts.isEmpty() || !waitingHosts.isEmpty()) {
+                        available.signal();
+                    }
+                    return entry.task;
+                }
+
+                if (remaining <= 0) {
+                    return null;
+                }
+                HostQueue next = waitingHosts.peek();
+                long wait = next == null ? remaining : Math.min(next.nextFetchNanos - now, remaining);
+                long left = available.awaitNanos(wait);
+                remaining -= wait - left;
+            }
+        } finally {
+            lock.unlock();
+            deliver(dropped);
+        }
+    }
+
+    /**
+     * Puts the task back and keeps its host out of rotation until
+     * {@code notBeforeNanos}. The task no longer counts against the host's
+     * quota and is never dropped to make room.
+     */
+    @Override
+    public void retryLater(CrawlTask task, long notBeforeNanos) {
+        lock.lock();
+        try {
+            HostQueue host = hosts.computeIfAbsent(task.getHost(), HostQueue::new);
+            if (host.taken > 0) {
+                host.taken--;
+            }
+            if (notBeforeNanos - host.nextFetchNanos > 0) {
+                host.nextFetchNanos = notBeforeNanos;
+            }
+            if (readyHosts.contains(host)) {
+                readyHosts.remove(host);
+            }
+            add(host, task);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rescores the task for {@code url} if it is still queued.
+     */
+    @Override
+    public void linkFound(String url, CrawlTask parent, int parentOutDegree) {
+        lock.lock();
+        try {
+            Entry entry = queued.get(url);
+            if (entry == null) {
+                return;
+            }
+            double score = scorer.rescore(entry.task, parent, parentOutDegree);
+            if (score == entry.task.getScore()) {
+                return;
+            }
+            entry.task.setScore(score);
+            entry.host.tasks.changed(entry);
+            lowest.changed(entry);
+            if (readyHosts.contains(entry.host)) {
+                readyHosts.changed(entry.host);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return queued.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tasks dropped so far to stay within the capacity or a host quota.
+     */
+    public long droppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int hostCount() {
+        lock.lock();
+        try {
+            return hosts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(HostQueue host, CrawlTask task) {
+        Entry entry = new Entry(task, host, sequence++);
+        Entry replaced = queued.put(task.getUrl(), entry);
+        if (replaced != null) {
+            // The same URL offered twice (a resumed crawl); keep the newer task only.
+            remove(replaced);
+            queued.put(task.getUrl(), entry);
+        }
+        host.tasks.add(entry);
+        lowest.add(entry);
+        if (readyHosts.contains(host)) {
+            readyHosts.changed(host);
+        } else if (waitingHosts.contains(host)) {
+            waitingHosts.changed(host);
+        } else {
+            waitingHosts.add(host);
+        }
+        available.signal();
+    }
+
+    private void remove(Entry entry) {
+        HostQueue host = entry.host;
+        host.tasks.remove(entry);
+        lowest.remove(entry);
+        queued.remove(entry.task.getUrl());
+        if (host.tasks.isEmpty()) {
+            if (readyHosts.contains(host)) {
+                readyHosts.remove(host);
+            } else if (waitingHosts.contains(host)) {
+                waitingHosts.remove(host);
+            }
+        } else if (readyHosts.contains(host)) {
+            readyHosts.changed(host);
+        }
+    }
+
+    private void deliver(List<CrawlTask> dropped) {
+        if (dropped == null || dropped.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            droppedCount += dropped.size();
+        } finally {
+            lock.unlock();
+        }
+        for (CrawlTask task : dropped) {
+            onDropped.accept(task);
+        }
+    }
+
+    private static class Entry extends IndexedHeap.Node {
+        private final CrawlTask task;
+        private final HostQueue host;
+        private final long sequence;
+
+        Entry(CrawlTask task, HostQueue host, long sequence) {
+            // Slot 0: the host's queue; slot 1: the eviction heap
+            super(2);
+            this.task = task;
+            this.host = host;
+            this.sequence = sequence;
+        }
+    }
+
+    private class HostQueue extends IndexedHeap.Node {
+        private final String host;
+        private final IndexedHeap<Entry> tasks = new IndexedHeap<>(BEST_FIRST, 0);
+        private long nextFetchNanos = System.nanoTime();
+        private int taken;
+
+        HostQueue(String host) {
+            // Slot 0: readyHosts or waitingHosts, never both
+            super(1);
+            this.host = host;
+        }
+
+        boolean quotaReached() {
+            return maxTasksPerHost > 0 && taken >= maxTasksPerHost;
+        }
+
+        @Override
+        public String toString() {
+            return "HostQueue{host='" + host + "', pending=" + tasks.size() + "}";
+        }
+    }
+}
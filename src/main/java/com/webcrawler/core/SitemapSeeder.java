@@ -0,0 +1,89 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+import com.webcrawler.service.HttpClient;
+import com.webcrawler.service.SitemapReader;
+import com.webcrawler.service.UrlCanonicalizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams a host's sitemaps into the frontier. The sitemaps listed in
+ * robots.txt are read, or {@code /sitemap.xml} if it lists none, following
+ * sitemap indexes. Only URLs on the host itself are admitted, at depth 1, and
+ * reading stops at the per-host limit or as soon as the crawl stops admitting.
+ */
+class SitemapSeeder {
+    // Sitemap files read per host, including those found through indexes
+    private static final int MAX_SITEMAP_FILES = 100;
+
+    private final HttpClient httpClient;
+    private final UrlCanonicalizer canonicalizer;
+    private final Consumer<CrawlTask> admit;
+    private final BooleanSupplier admitting;
+    private final int maxUrlsPerHost;
+
+    /**
+     * @param admit     offers a task to the crawl (which still applies its own checks)
+     * @param admitting false once the crawl takes no more URLs
+     */
+    SitemapSeeder(HttpClient httpClient, UrlCanonicalizer canonicalizer, Consumer<CrawlTask> admit,
+                  BooleanSupplier admitting, int maxUrlsPerHost) {
+        this.httpClient = httpClient;
+        this.canonicalizer = canonicalizer;
+        this.admit = admit;
+        this.admitting = admitting;
+        this.maxUrlsPerHost = maxUrlsPerHost;
+    }
+
+    /**
+     * Reads the host's sitemaps on the calling thread.
+     *
+     * @return the number of URLs offered to the crawl
+     */
+    int seed(String scheme, String host, List<String> sitemaps) {
+        Deque<String> queue = new ArrayDeque<>(sitemaps);
+        if (queue.isEmpty()) {
+            queue.add(scheme + "://" + host + "/sitemap.xml");
+        }
+        Set<String> seen = new HashSet<>();
+        int[] offered = {0};
+        int files = 0;
+
+        while (!queue.isEmpty() && files < MAX_SITEMAP_FILES && offered[0] < maxUrlsPerHost
+                && admitting.getAsBoolean()) {
+            String sitemapUrl = canonicalizer.canonicalize(queue.poll());
+            if (sitemapUrl == null || !seen.add(sitemapUrl)) {
+                continue;
+            }
+            files++;
+            try (HttpClient.Resource resource = httpClient.openResource(sitemapUrl)) {
+                if (!resource.isSuccess()) {
+                    continue;
+                }
+                InputStream body = sitemapUrl.endsWith(".gz")
+                        ? new GZIPInputStream(resource.getBody()) : resource.getBody();
+                SitemapReader.read(body, loc -> {
+                    String url = canonicalizer.canonicalize(loc);
+                    if (url != null && CrawlTask.hostOf(url).equals(host)) {
+                        admit.accept(new CrawlTask(url, 1));
+                        offered[0]++;
+                    }
+                    return offered[0] < maxUrlsPerHost && admitting.getAsBoolean();
+                }, queue::add);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Cannot read sitemap " + sitemapUrl + ": " + e.getMessage());
+            }
+        }
+        return offered[0];
+    }
+}
@@ -0,0 +1,235 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * FIFO of crawl tasks stored in append-only segment files. Records are
+ * {@code varint depth, varint length, UTF-8 url}; writes and reads both go
+ * through a small buffer. A segment file is closed and deleted as soon as it
+ * has been fully read. Segments are read through the channel rather than
+ * mapped, since a mapping keeps a deleted file's disk space until it is
+ * garbage collected, and on Windows stops the delete altogether.
+ *
+ * Not thread-safe; {@link SpillingFrontier} serialises access.
+ */
+class SpillSegments {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Two varints of at most five bytes each
+    private static final int MAX_HEADER_BYTES = 10;
+
+    private final Path directory;
+    private final long segmentSizeBytes;
+    private final ArrayDeque<Path> sealed = new ArrayDeque<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+    private FileChannel writeChannel;
+    private Path writePath;
+    private long writtenBytes;
+    private int nextSegmentId;
+
+    private Path readPath;
+    private FileChannel readChannel;
+    // Unread bytes of the current read segment, in read mode
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE).limit(0);
+
+    private long count;
+
+    SpillSegments(Path directory, long segmentSizeBytes) {
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create spill directory " + directory, e);
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    void append(CrawlTask task) throws IOException {
+        byte[] url = task.getUrl().getBytes(StandardCharsets.UTF_8);
+        int recordSize = 10 + url.length;
+        if (writeChannel == null || writtenBytes + writeBuffer.position() + recordSize > segmentSizeBytes) {
+            rollSegment();
+        }
+        if (writeBuffer.remaining() < recordSize) {
+            flushWriteBuffer();
+        }
+        if (writeBuffer.remaining() < recordSize) {
+            // Larger than the buffer: write it straight through.
+            ByteBuffer record = ByteBuffer.allocate(recordSize);
+            encode(record, task.getDepth(), url);
+            record.flip();
+            while (record.hasRemaining()) {
+                writtenBytes += writeChannel.write(record);
+            }
+        } else {
+            encode(writeBuffer, task.getDepth(), url);
+        }
+        count++;
+    }
+
+    /**
+     * Moves up to {@code maxTasks} of the oldest tasks into {@code out}.
+     */
+    int readBatch(int maxTasks, List<CrawlTask> out) throws IOException {
+        int read = 0;
+        while (read < maxTasks && count > 0) {
+            if (fill(MAX_HEADER_BYTES) == 0) {
+                if (!openNextReadSegment()) {
+                    break;
+                }
+                continue;
+            }
+            int depth = readVarInt(readBuffer);
+            byte[] url = new byte[readVarInt(readBuffer)];
+            readFully(url);
+            out.add(new CrawlTask(new String(url, StandardCharsets.UTF_8), depth));
+            count--;
+            read++;
+        }
+        if (count == 0) {
+            // Everything spilled has been read; free the last segment's disk space now.
+            closeReadSegment();
+        }
+        return read;
+    }
+
+    void close() {
+        try {
+            closeReadSegment();
+            if (writeChannel != null) {
+                writeChannel.close();
+                Files.deleteIfExists(writePath);
+            }
+            for (Path path : sealed) {
+                Files.deleteIfExists(path);
+            }
+            sealed.clear();
+            count = 0;
+        } catch (IOException e) {
+            System.err.println("Failed to clean up spill segments in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads from the current segment until at least {@code wanted} bytes are
+     * buffered or the segment is exhausted.
+     *
+     * @return the number of bytes buffered
+     */
+    private int fill(int wanted) throws IOException {
+        if (readBuffer.remaining() < wanted && readChannel != null) {
+            readBuffer.compact();
+            while (readBuffer.position() < wanted && readChannel.read(readBuffer) > 0) {
+                // Keep reading until enough is buffered or the file ends.
+            }
+            readBuffer.flip();
+        }
+        return readBuffer.remaining();
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+        int copied = Math.min(bytes.length, readBuffer.remaining());
+        readBuffer.get(bytes, 0, copied);
+        // A URL longer than the buffer is read straight from the channel.
+        ByteBuffer rest = ByteBuffer.wrap(bytes, copied, bytes.length - copied);
+        while (rest.hasRemaining()) {
+            if (readChannel.read(rest) < 0) {
+                throw new IOException("Truncated spill segment " + readPath);
+            }
+        }
+    }
+
+    private void closeReadSegment() throws IOException {
+        readBuffer.clear().limit(0);
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+        if (readPath != null) {
+            Files.deleteIfExists(readPath);
+            readPath = null;
+        }
+    }
+
+    private boolean openNextReadSegment() throws IOException {
+        closeReadSegment();
+        if (sealed.isEmpty()) {
+            // The only data left is in the segment being written; seal it so it can be read.
+            if (writeChannel == null) {
+                return false;
+            }
+            sealWriteSegment();
+        }
+        readPath = sealed.poll();
+        readChannel = FileChannel.open(readPath, StandardOpenOption.READ);
+        return true;
+    }
+
+    private void rollSegment() throws IOException {
+        if (writeChannel != null) {
+            sealWriteSegment();
+        }
+        writePath = directory.resolve(String.format("frontier-%06d.seg", nextSegmentId++));
+        writeChannel = FileChannel.open(writePath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writtenBytes = 0;
+    }
+
+    private void sealWriteSegment() throws IOException {
+        flushWriteBuffer();
+        writeChannel.close();
+        sealed.add(writePath);
+        writeChannel = null;
+        writePath = null;
+    }
+
+    private void flushWriteBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            writtenBytes += writeChannel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private static void encode(ByteBuffer buffer, int depth, byte[] url) {
+        writeVarInt(buffer, depth);
+        writeVarInt(buffer, url.length);
+        buffer.put(url);
+    }
+
+    private static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,148 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frontier that keeps a bounded hot window in memory and spills the overflow
+ * to disk. While anything is spilled, new tasks are appended behind it so the
+ * overall order stays first-in first-out. When the hot window drains below
+ * half its budget it is refilled from disk in one batch.
+ */
+public class SpillingFrontier implements Frontier {
+    private static final long SEGMENT_SIZE_BYTES = 64L * 1024 * 1024;
+    // Rough heap cost of a queued CrawlTask besides its URL characters
+    private static final int TASK_OVERHEAD_BYTES = 96;
+
+    private final Frontier hot;
+    private final long memoryLimitBytes;
+    private final SpillSegments spill;
+    private final AtomicLong hotBytes = new AtomicLong();
+    private volatile long spilledCount;
+
+    public SpillingFrontier(Frontier hot, long memoryLimitBytes, Path spillDirectory) {
+        this.hot = hot;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.spill = new SpillSegments(spillDirectory, SEGMENT_SIZE_BYTES);
+    }
+
+    @Override
+    public void offer(CrawlTask task) {
+        long cost = estimateBytes(task);
+        synchronized (spill) {
+            if (spilledCount == 0 && hotBytes.get() + cost <= memoryLimitBytes) {
+                hotBytes.addAndGet(cost);
+                hot.offer(task);
+                return;
+            }
+            try {
+                spill.append(task);
+                spilledCount = spill.count();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill frontier task " + task, e);
+            }
+        }
+        // Idle workers wait on the in-memory window without a timeout, so it
+        // must not stay empty while tasks are sitting on disk.
+        refillIfLow();
+    }
+
+    @Override
+    public void offerAll(List<CrawlTask> tasks) {
+        synchronized (spill) {
+            int fits = 0;
+            long bytes = 0;
+            if (spilledCount == 0) {
+                long free = memoryLimitBytes - hotBytes.get();
+                while (fits < tasks.size() && bytes + estimateBytes(tasks.get(fits)) <= free) {
+                    bytes += estimateBytes(tasks.get(fits++));
+                }
+                if (fits > 0) {
+                    hotBytes.addAndGet(bytes);
+                    hot.offerAll(tasks.subList(0, fits));
+                }
+            }
+            if (fits == tasks.size()) {
+                return;
+            }
+            try {
+                for (CrawlTask task : tasks.subList(fits, tasks.size())) {
+                    spill.append(task);
+                }
+                spilledCount = spill.count();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill frontier tasks", e);
+            }
+        }
+        refillIfLow();
+    }
+
+    @Override
+    public CrawlTask poll(long timeout, TimeUnit unit) throws InterruptedException {
+        refillIfLow();
+        CrawlTask task = hot.poll(timeout, unit);
+        if (task != null) {
+            hotBytes.addAndGet(-estimateBytes(task));
+        }
+        return task;
+    }
+
+    @Override
+    public void retryLater(CrawlTask task, long notBeforeNanos) {
+        // Already counted against the window once; keep it in memory regardless.
+        hotBytes.addAndGet(estimateBytes(task));
+        hot.retryLater(task, notBeforeNanos);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, hot.size() + spilledCount);
+    }
+
+    public long spilledCount() {
+        return spilledCount;
+    }
+
+    @Override
+    public void close() {
+        synchronized (spill) {
+            spill.close();
+            spilledCount = 0;
+        }
+        hot.close();
+    }
+
+    private void refillIfLow() {
+        if (spilledCount == 0 || hotBytes.get() > memoryLimitBytes / 2) {
+            return;
+        }
+        synchronized (spill) {
+            List<CrawlTask> batch = new ArrayList<>();
+            try {
+                while (spill.count() > 0 && hotBytes.get() <= memoryLimitBytes) {
+                    batch.clear();
+                    spill.readBatch(256, batch);
+                    for (CrawlTask task : batch) {
+                        hotBytes.addAndGet(estimateBytes(task));
+                        hot.offer(task);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read spilled frontier tasks", e);
+            } finally {
+                spilledCount = spill.count();
+            }
+        }
+    }
+
+    private static long estimateBytes(CrawlTask task) {
+        return TASK_OVERHEAD_BYTES + 2L * task.getUrl().length();
+    }
+}
@@ -0,0 +1,65 @@
+package com.webcrawler.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One stage of the staged pipeline: an executor and a bound on the work
+ * handed to it. {@link #submit} blocks while the stage already holds
+ * {@code capacity} tasks, queued or running, so a slow stage holds back the
+ * stage feeding it instead of letting its queue grow.
+ */
+final class Stage {
+    private final String name;
+    private final ExecutorService executor;
+    private final int capacity;
+    private final Semaphore slots;
+
+    Stage(String name, ExecutorService executor, int capacity) {
+        this.name = name;
+        this.executor = executor;
+        this.capacity = Math.max(1, capacity);
+        this.slots = new Semaphore(this.capacity);
+    }
+
+    /**
+     * Hands a task to the stage, waiting for room if it is full.
+     *
+     * @throws RejectedExecutionException if the stage has been shut down
+     */
+    void submit(Runnable task) throws InterruptedException {
+        slots.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /** Tasks queued or running. */
+    int backlog() {
+        return capacity - slots.availablePermits();
+    }
+
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
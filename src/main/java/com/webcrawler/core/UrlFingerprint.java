@@ -0,0 +1,34 @@
+package com.webcrawler.core;
+
+/**
+ * 64-bit fingerprints of URL strings. Collisions between distinct URLs are
+ * possible but, at roughly n / 2^64 per lookup, negligible for crawl-sized sets.
+ */
+public final class UrlFingerprint {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UrlFingerprint() {
+    }
+
+    public static long of(String url) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash ^ url.length());
+    }
+
+    /**
+     * MurmurHash3 finalizer; spreads every input bit over the whole word.
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,30 @@
+package com.webcrawler.core;
+
+import com.webcrawler.model.CrawlTask;
+
+/**
+ * Decides how valuable a URL is to fetch; a {@link PriorityFrontier} hands
+ * out the highest score first. Scorers are called from many threads and
+ * must not keep mutable state of their own: everything a score depends on
+ * comes from the tasks, and a task's current score is in
+ * {@link CrawlTask#getScore()}.
+ */
+public interface UrlScorer {
+
+    /**
+     * Scores a newly admitted URL.
+     *
+     * @param parent         the page the link was found on, or {@code null} for
+     *                       seeds, sitemap entries and resumed tasks
+     * @param parentOutDegree number of links on the parent page
+     */
+    double score(CrawlTask task, CrawlTask parent, int parentOutDegree);
+
+    /**
+     * Rescores a URL that is still waiting in the frontier when another link
+     * to it is found. Returns the current score by default.
+     */
+    default double rescore(CrawlTask task, CrawlTask parent, int parentOutDegree) {
+        return task.getScore();
+    }
+}
@@ -0,0 +1,40 @@
+package com.webcrawler.core;
+
+/**
+ * Records which URLs have already been admitted to the crawl. Implementations
+ * store 64-bit fingerprints rather than URL strings.
+ */
+public interface VisitedSet {
+
+    /**
+     * Marks the URL as visited.
+     *
+     * @return {@code true} if it was not already present
+     */
+    default boolean add(String url) {
+        return addFingerprint(UrlFingerprint.of(url));
+    }
+
+    default boolean contains(String url) {
+        return containsFingerprint(UrlFingerprint.of(url));
+    }
+
+    boolean addFingerprint(long fingerprint);
+
+    boolean containsFingerprint(long fingerprint);
+
+    /**
+     * Number of distinct entries added so far.
+     */
+    long size();
+
+    /**
+     * Approximate heap or off-heap bytes held by the set.
+     */
+    long memoryBytes();
+
+    /**
+     * Estimated probability that a URL never added is reported as present.
+     */
+    double falsePositiveRate();
+}
@@ -1,175 +1,1190 @@
 package com.webcrawler.core;
 
+import com.webcrawler.checkpoint.CheckpointState;
+import com.webcrawler.checkpoint.CrawlCheckpointer;
+import com.webcrawler.cluster.ClusterNode;
 import com.webcrawler.config.CrawlerConfig;
+import com.webcrawler.config.FetchMode;
+import com.webcrawler.config.ScoringPolicy;
+import com.webcrawler.config.VisitedSetType;
+import com.webcrawler.graph.LinkGraphBuilder;
+import com.webcrawler.metrics.CrawlMetrics;
+import com.webcrawler.metrics.MetricsReporter;
 import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlSummary;
 import com.webcrawler.model.CrawlTask;
+import com.webcrawler.model.CrawlTimings;
+import com.webcrawler.service.ConcurrencyLimiter;
+import com.webcrawler.service.ContentPolicy;
+import com.webcrawler.service.FetchTimings;
 import com.webcrawler.service.HttpClient;
+import com.webcrawler.service.ParsedPage;
+import com.webcrawler.service.ValidatorCache;
 import com.webcrawler.service.RateLimiter;
+import com.webcrawler.service.RobotsCache;
+import com.webcrawler.service.RobotsRules;
+import com.webcrawler.service.UrlCanonicalizer;
+import com.webcrawler.sink.AsyncResultSink;
+import com.webcrawler.sink.InMemoryResultSink;
+import com.webcrawler.sink.ResultSink;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Main web crawler class that coordinates the crawling process
  */
 public class WebCrawler {
     private final CrawlerConfig config;
+    private final UrlCanonicalizer urlCanonicalizer;
     private final HttpClient httpClient;
+    private final ValidatorCache validatorCache;
     private final RateLimiter rateLimiter;
+    private final RobotsCache robotsCache;
+    private final SitemapSeeder sitemapSeeder;
+    private final ExecutorService sitemapExecutor;
+    private final Set<String> sitemapHosts = ConcurrentHashMap.newKeySet();
+    // Null when this crawl is a job on a shared engine, whose workers run its tasks
     private final ExecutorService executorService;
-    private final BlockingQueue<CrawlTask> taskQueue;
-    private final ConcurrentHashMap<String, Boolean> visitedUrls;
-    private final ConcurrentLinkedQueue<CrawlResult> results;
-    private final AtomicInteger activeWorkers;
-    private final AtomicInteger pagesSubmittedCount;
+    // Null unless the crawl runs as a staged pipeline; the workers are then the fetch stage
+    private final Stage parseStage;
+    private final Stage admissionStage;
+    // Null for a FIFO crawl
+    private final UrlScorer urlScorer;
+    private final Frontier frontier;
+    private final VisitedSet visitedUrls;
+    private final NearDuplicateIndex nearDuplicates;
+    private final ResultSink resultSink;
+    // Null unless the link graph is exported
+    private final LinkGraphBuilder linkGraph;
+    // Null unless this crawler is one node of a cluster
+    private final ClusterNode cluster;
+    private final CrawlMetrics metrics;
+    private final AtomicInteger pagesCrawled;
+    private final AtomicInteger pagesUnchanged;
+    private final AtomicInteger pagesFailed;
+    // URLs admitted so far; only a FIFO crawl limits them, through the page budget
+    private final LongAdder pagesAdmitted = new LongAdder();
+    private final PageBudget pageBudget;
+    // Tasks admitted but not yet finished; a task is finished only after its links are admitted.
+    private final AtomicLong pendingTasks;
+    private final Semaphore inFlightRequests;
+    // Null unless adaptive concurrency is on; it then bounds fetches in flight instead of the semaphore
+    private final ConcurrencyLimiter concurrencyLimiter;
+    // Null unless this crawl is a job on a shared engine; the engine then owns the HTTP client,
+    // the rate limiter, robots.txt and the threads
+    private final CrawlEngine engine;
+    private final CrawlJob engineJob;
+    // Engine workers currently running one of this job's tasks
+    private final AtomicInteger engineWorkers = new AtomicInteger();
+    // Notified when the last engine worker leaves this job after shutdown
+    private final Object engineWorkersDone = new Object();
+    private final CrawlWorker engineWorker = new CrawlWorker();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final CompletableFuture<CrawlSummary> completion = new CompletableFuture<>();
     private volatile boolean shutdown = false;
+    // Set once the start URL or checkpoint has been admitted and the workers are running
+    private volatile boolean running = false;
+    private long startNanos;
+    private CrawlCheckpointer checkpointer;
+    private MetricsReporter metricsReporter;
 
     public WebCrawler(CrawlerConfig config) {
+        this(config, createResultSink(config));
+    }
+
+    /**
+     * Creates a crawler that hands its results to a custom sink instead of the
+     * one described by the configuration. The crawler closes the sink when done.
+     */
+    public WebCrawler(CrawlerConfig config, ResultSink resultSink) {
+        this(config, resultSink, createScorer(config));
+    }
+
+    /**
+     * Creates a best-first crawler that orders URLs with a custom scorer
+     * instead of the configured scoring policy.
+     */
+    public WebCrawler(CrawlerConfig config, ResultSink resultSink, UrlScorer urlScorer) {
+        this(config, resultSink, urlScorer, null);
+    }
+
+    /**
+     * Creates a crawl that runs as a job on the engine: it keeps its own
+     * frontier, visited set, budget and sink, and fetches through the engine's
+     * HTTP client, rate limiter, robots.txt cache and worker threads.
+     */
+    WebCrawler(CrawlerConfig config, ResultSink resultSink, UrlScorer urlScorer, CrawlJob engineJob) {
+        if (engineJob != null && !config.getClusterNodes().isEmpty()) {
+            throw new IllegalArgumentException("A crawl job on a shared engine cannot be a cluster node.");
+        }
         this.config = config;
-        this.httpClient = new HttpClient(
-                config.getUserAgent(),
-                config.getConnectionTimeoutMs(),
-                config.getReadTimeoutMs()
-        );
-        this.rateLimiter = new RateLimiter(config.getPermitsPerSecond());
-        this.executorService = Executors.newFixedThreadPool(config.getMaxThreads());
-        this.taskQueue = new LinkedBlockingQueue<>();
-        this.visitedUrls = new ConcurrentHashMap<>();
-        this.results = new ConcurrentLinkedQueue<>();
-        this.activeWorkers = new AtomicInteger(0);
-        this.pagesSubmittedCount = new AtomicInteger(0);
+        this.urlScorer = urlScorer;
+        this.engineJob = engineJob;
+        this.engine = engineJob == null ? null : engineJob.getEngine();
+        this.linkGraph = config.getLinkGraphFile() != null ? new LinkGraphBuilder(config.getMaxPages()) : null;
+        if (engine != null) {
+            this.validatorCache = null;
+            this.urlCanonicalizer = engine.getUrlCanonicalizer();
+            this.httpClient = engine.getHttpClient();
+            this.rateLimiter = engine.getRateLimiter();
+            this.robotsCache = engine.getRobotsCache();
+        } else {
+            this.validatorCache = createValidatorCache(config);
+            this.urlCanonicalizer = createUrlCanonicalizer(config);
+            this.httpClient = createHttpClient(config, validatorCache, urlCanonicalizer);
+            this.rateLimiter = new RateLimiter(config.getPermitsPerSecond());
+            this.robotsCache = config.isRespectRobotsTxt()
+                    ? new RobotsCache(httpClient, config.getUserAgent(), config.getRobotsCacheTtlMs(),
+                            config.getRobotsCacheMaxHosts(), this::robotsLoaded)
+                    : null;
+        }
+        if (robotsCache != null && config.isSitemapSeeding()) {
+            this.sitemapSeeder = new SitemapSeeder(httpClient, urlCanonicalizer, this::addTask,
+                    this::isAdmitting, config.getMaxSitemapUrls());
+            this.sitemapExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "sitemap-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.sitemapSeeder = null;
+            this.sitemapExecutor = null;
+        }
+        this.executorService = engine == null ? createWorkerExecutor(config) : null;
+        boolean staged = engine == null && config.isStagedPipeline();
+        this.parseStage = staged ? createParseStage(config) : null;
+        this.admissionStage = staged ? createAdmissionStage(config) : null;
+        this.frontier = createFrontier();
+        this.visitedUrls = createVisitedSet(config);
+        this.nearDuplicates = config.isNearDuplicateDetection()
+                ? new NearDuplicateIndex(config.getNearDuplicateMaxDistance()) : null;
+        this.resultSink = resultSink;
+        this.cluster = config.getClusterNodes().isEmpty() ? null
+                : new ClusterNode(config.getClusterNodes(), config.getClusterNodeIndex(),
+                        config.getClusterBatchSize(), config.getClusterFlushIntervalMs(),
+                        config.getClusterDedupCacheSize(), this::addTask, this::isIdle, this::clusterTerminated);
+        this.metrics = new CrawlMetrics();
+        this.pagesCrawled = new AtomicInteger(0);
+        this.pagesUnchanged = new AtomicInteger(0);
+        this.pagesFailed = new AtomicInteger(0);
+        this.pageBudget = new PageBudget(config.getMaxPages());
+        this.pendingTasks = new AtomicLong(0);
+        this.inFlightRequests = new Semaphore(config.getMaxInFlightRequests());
+        int maxConcurrency = config.getFetchMode() == FetchMode.ASYNC
+                ? config.getMaxInFlightRequests() : config.getMaxThreads();
+        this.concurrencyLimiter = engine == null && config.isAdaptiveConcurrency()
+                ? new ConcurrencyLimiter(Math.min(config.getMinConcurrency(), maxConcurrency), maxConcurrency,
+                        metrics::recordConcurrencyLimit)
+                : null;
+    }
+
+    /**
+     * Crawls from the given URL and blocks until the crawl is over.
+     *
+     * @throws CancellationException if the crawl was cancelled through the future returned by {@link #crawlAsync}
+     */
+    public CrawlSummary crawl(String startUrl) {
+        return crawlAsync(startUrl).join();
+    }
+
+    /**
+     * Starts crawling from the given URL and returns right away. The future
+     * completes as soon as the last admitted task has finished, when
+     * {@code maxPages} results have been recorded, or when the crawl is
+     * cancelled; cancelling the future stops the crawl. A cluster node's future
+     * completes only once every node of the cluster is done.
+     *
+     * @throws IllegalArgumentException if the start URL is not an absolute http(s) URL
+     */
+    public CompletableFuture<CrawlSummary> crawlAsync(String startUrl) {
+        // Canonicalized like every discovered link, so links back to the seed are recognised.
+        String seedUrl = urlCanonicalizer.canonicalize(startUrl);
+        if (seedUrl == null) {
+            throw new IllegalArgumentException("Not an absolute http(s) URL: " + startUrl);
+        }
+        claimStart();
+        System.out.println("Starting crawl from: " + seedUrl);
+
+        if (config.getCheckpointDirectory() != null) {
+            try {
+                checkpointer = CrawlCheckpointer.create(config.getCheckpointDirectory(),
+                        config.getCheckpointSyncIntervalMs(), config.getCheckpointSnapshotIntervalMs());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot start checkpoint in " + config.getCheckpointDirectory(), e);
+            }
+        }
+        // Every node adds the seed; it is routed to the node owning its host.
+        startCluster();
+
+        addTask(new CrawlTask(seedUrl, 0));
+        return startWorkers();
+    }
+
+    /**
+     * Continues a crawl from the checkpoint in the given directory and blocks
+     * until it is over. See {@link #resumeAsync(Path)}.
+     */
+    public CrawlSummary resume(Path checkpointDirectory) {
+        return resumeAsync(checkpointDirectory).join();
+    }
+
+    /**
+     * Continues a crawl from the checkpoint in the given directory: every URL
+     * admitted before is marked visited, and the tasks that had not completed are
+     * put back on the frontier. Checkpointing continues into the same directory.
+     */
+    public CompletableFuture<CrawlSummary> resumeAsync(Path checkpointDirectory) {
+        claimStart();
+        CheckpointState state;
+        try {
+            state = CheckpointState.load(checkpointDirectory, visitedUrls::addFingerprint);
+            checkpointer = CrawlCheckpointer.resume(checkpointDirectory, state,
+                    config.getCheckpointSyncIntervalMs(), config.getCheckpointSnapshotIntervalMs());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot resume from checkpoint in " + checkpointDirectory, e);
+        }
+
+        startCluster();
+        System.out.println("Resuming crawl: " + state.getAdmittedCount() + " URLs admitted, "
+                + state.getCompletedCount() + " completed, " + state.getPendingTasks().size() + " pending");
+        pagesAdmitted.add(state.getAdmittedCount());
+        pageBudget.spend(state.getAdmittedCount());
+        for (CrawlTask task : state.getPendingTasks()) {
+            if (urlScorer != null) {
+                task.setScore(urlScorer.score(task, null, 0));
+            }
+            pendingTasks.incrementAndGet();
+            frontier.offer(task);
+        }
+        if (engine != null) {
+            engine.workAvailable(engineJob);
+        }
+        return startWorkers();
+    }
+
+    /**
+     * Stops the crawl as soon as possible. The future returned by
+     * {@link #crawlAsync} completes with a {@link CrawlSummary.Outcome#CANCELLED} summary.
+     */
+    public void cancel() {
+        finish(CrawlSummary.Outcome.CANCELLED);
     }
 
-    public void crawl(String startUrl) {
-        System.out.println("Starting crawl from: " + startUrl);
+    private void claimStart() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("A WebCrawler can only run one crawl");
+        }
+        startNanos = System.nanoTime();
+    }
 
-        addTask(new CrawlTask(startUrl, 0));
+    private void startCluster() {
+        if (cluster == null) {
+            return;
+        }
+        try {
+            cluster.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start cluster node " + config.getClusterNodeIndex(), e);
+        }
+        System.out.println("Cluster node " + cluster.getIndex() + " of " + cluster.getNodeCount() + " listening on "
+                + config.getClusterNodes().get(cluster.getIndex()));
+    }
 
-        for (int i = 0; i < config.getMaxThreads(); i++) {
-            executorService.submit(new CrawlWorker());
+    private CompletableFuture<CrawlSummary> startWorkers() {
+        completion.whenComplete((summary, error) -> {
+            if (completion.isCancelled()) {
+                finish(CrawlSummary.Outcome.CANCELLED);
+            }
+        });
+        metrics.registerProgressEvent(pendingTasks::get, frontier::size);
+        if (config.getMetricsReportIntervalMs() > 0) {
+            metricsReporter = new MetricsReporter(metrics, config.getMetricsReportIntervalMs(),
+                    () -> "Progress: " + pagesCrawled.get() + " pages recorded, " + pendingTasks.get()
+                            + " tasks pending, " + frontier.size() + " in the frontier"
+                            + (parseStage == null ? "" : ", " + parseStage.backlog() + " parsing, "
+                                    + admissionStage.backlog() + " admitting")
+                            + (concurrencyLimiter == null ? "" : ", " + concurrencyLimiter.getInFlight() + " of "
+                                    + concurrencyLimiter.getLimit() + " fetch slots in use"));
         }
+        if (executorService != null) {
+            for (int i = 0; i < config.getMaxThreads(); i++) {
+                executorService.submit(new CrawlWorker());
+            }
+        }
+        running = true;
+        // Nothing was admitted (seed too deep or already visited, or an empty checkpoint).
+        // A cluster node waits for links from its peers instead.
+        if (pendingTasks.get() == 0 && cluster == null) {
+            finish(CrawlSummary.Outcome.COMPLETED);
+        }
+        return completion;
+    }
 
-        // Supervisor loop to monitor progress and determine when to shut down
-        monitorCrawl();
+    /**
+     * Stops the workers and completes the crawl future. Runs at most once; the
+     * cleanup happens on its own thread because this is usually called from a
+     * worker or an HTTP completion thread, which the cleanup waits for.
+     */
+    private void finish(CrawlSummary.Outcome outcome) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        shutdown = true;
+        // Idle workers are parked in frontier.poll; the interrupt releases them.
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+        if (parseStage != null) {
+            parseStage.shutdownNow();
+            admissionStage.shutdownNow();
+        }
+
+        Thread finisher = new Thread(() -> {
+            try {
+                shutdown();
+                int admitted = (int) Math.min(Integer.MAX_VALUE, pagesAdmitted.sum());
+                CrawlSummary summary = new CrawlSummary(outcome, pagesCrawled.get(), pagesFailed.get(),
+                        admitted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                printSummary(summary);
+                completion.complete(summary);
+            } catch (Throwable t) {
+                completion.completeExceptionally(t);
+            }
+        }, "crawl-finisher");
+        finisher.start();
+    }
 
-        shutdown();
-        System.out.println("Crawl completed. Total pages processed: " + results.size());
+    private void printSummary(CrawlSummary summary) {
+        System.out.println("Crawl " + summary.getOutcome().name().toLowerCase().replace('_', ' ')
+                + ". Total pages processed: " + summary.getPagesCrawled());
+        if (validatorCache != null) {
+            System.out.println("Unchanged since the previous crawl: " + pagesUnchanged.get());
+        }
+        if (nearDuplicates != null) {
+            System.out.println("Near-duplicate pages not expanded: " + nearDuplicates.duplicateCount()
+                    + " in " + nearDuplicates.duplicateClusters().size() + " clusters");
+        }
+        if (frontier instanceof PriorityFrontier) {
+            System.out.println("Frontier tasks dropped for capacity or host quota: "
+                    + ((PriorityFrontier) frontier).droppedCount());
+        }
+        if (cluster != null) {
+            System.out.println("Cluster node " + cluster.getIndex() + ": " + cluster.getSentCount()
+                    + " links sent to peers, " + cluster.getDeduplicatedCount() + " skipped as recently sent, "
+                    + cluster.getReceivedCount() + " received");
+        }
+        System.out.printf("Visited set: %d URLs, %d KB, estimated false-positive rate %.2e%n",
+                visitedUrls.size(), visitedUrls.memoryBytes() / 1024, visitedUrls.falsePositiveRate());
+        System.out.println(metrics.report());
     }
 
-    private void monitorCrawl() {
-        while (!shutdown) {
+    /**
+     * The crawl workers; in a staged pipeline they are the fetch stage and may
+     * be virtual threads. Virtual threads are looked up reflectively so the
+     * crawler still runs on Java 11; without them the workers are a fixed pool
+     * of {@code maxThreads} platform threads either way.
+     */
+    private static ExecutorService createWorkerExecutor(CrawlerConfig config) {
+        if (config.isStagedPipeline() && config.isVirtualFetchThreads()) {
             try {
-                Thread.sleep(1000);
-                // The crawl is finished if the queue is empty and no workers are processing a page.
-                if (taskQueue.isEmpty() && activeWorkers.get() == 0) {
-                    // Double-check to prevent a race condition where a worker finishes
-                    // after the first check but before the second, having added new tasks.
-                    if (taskQueue.isEmpty() && activeWorkers.get() == 0) {
-                        System.out.println("Crawl finished: No more tasks and no active workers.");
-                        shutdown = true;
-                    }
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                shutdown = true;
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not available on Java " + Runtime.version().feature()
+                        + "; fetching on " + config.getMaxThreads() + " platform threads");
             }
         }
+        return Executors.newFixedThreadPool(config.getMaxThreads());
+    }
+
+    private static Stage createParseStage(CrawlerConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(config.getParseParallelism(), forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("crawl-parse-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+        return new Stage("parse", pool, config.getParseQueueCapacity());
     }
 
+    private static Stage createAdmissionStage(CrawlerConfig config) {
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(config.getAdmissionThreads(),
+                r -> new Thread(r, "crawl-admission-" + threadIds.incrementAndGet()));
+        return new Stage("admission", executor, config.getAdmissionQueueCapacity());
+    }
 
-    private void addTask(CrawlTask task) {
+    /**
+     * A scored crawl gets a best-first frontier, bounded by task count; a FIFO
+     * crawl gets the host frontier, spilling to disk past the memory limit.
+     */
+    private Frontier createFrontier() {
+        if (urlScorer != null) {
+            return new PriorityFrontier(urlScorer, config.getPolitenessDelayMs(), config.getFrontierCapacity(),
+                    config.getMaxPagesPerHost(), this::taskDropped);
+        }
+        Frontier frontier = new HostFrontier(config.getPolitenessDelayMs());
+        if (config.getFrontierMemoryLimitBytes() <= 0) {
+            return frontier;
+        }
+        Path spillDirectory = config.getFrontierSpillDirectory();
+        try {
+            if (spillDirectory == null) {
+                spillDirectory = Files.createTempDirectory("arachne-frontier-");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create frontier spill directory", e);
+        }
+        return new SpillingFrontier(frontier, config.getFrontierMemoryLimitBytes(), spillDirectory);
+    }
+
+    static UrlScorer createScorer(CrawlerConfig config) {
+        ScoringPolicy policy = config.getScoringPolicy();
+        switch (policy) {
+            case FIFO:
+                return null;
+            case DEPTH:
+                return new DepthScorer();
+            case IN_LINKS:
+                return new InLinkScorer();
+            case OPIC:
+                return new OpicScorer();
+            default:
+                throw new IllegalArgumentException("Unsupported scoring policy: " + policy);
+        }
+    }
+
+    static UrlCanonicalizer createUrlCanonicalizer(CrawlerConfig config) {
+        return config.getTrackingParameters() != null
+                ? new UrlCanonicalizer(config.getTrackingParameters()) : UrlCanonicalizer.getDefault();
+    }
+
+    static HttpClient createHttpClient(CrawlerConfig config, ValidatorCache validatorCache,
+                                       UrlCanonicalizer urlCanonicalizer) {
+        return new HttpClient(
+                config.getUserAgent(),
+                config.getConnectionTimeoutMs(),
+                config.getReadTimeoutMs(),
+                config.getFetchMode(),
+                validatorCache,
+                urlCanonicalizer,
+                new ContentPolicy(config.isAcceptCompression(), config.getMaxBodyBytes(), config.isHtmlOnly(),
+                        config.isHeadProbe() ? config.getHeadProbeExtensions() : List.of())
+        );
+    }
+
+    static ValidatorCache createValidatorCache(CrawlerConfig config) {
+        if (config.getValidatorCacheFile() == null) {
+            return null;
+        }
+        try {
+            return new ValidatorCache(config.getValidatorCacheFile(), config.getValidatorCacheMaxBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load validator cache " + config.getValidatorCacheFile(), e);
+        }
+    }
+
+    static ResultSink createResultSink(CrawlerConfig config) {
+        try {
+            switch (config.getResultFormat()) {
+                case JSON_LINES:
+                    return AsyncResultSink.jsonLines(config.getResultFile(), config.isCompressResults(),
+                            config.getResultQueueCapacity());
+                case BINARY:
+                    return AsyncResultSink.binary(config.getResultFile(), config.isCompressResults(),
+                            config.getResultQueueCapacity());
+                case MEMORY:
+                default:
+                    return new InMemoryResultSink();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open result file " + config.getResultFile(), e);
+        }
+    }
+
+    private static VisitedSet createVisitedSet(CrawlerConfig config) {
+        VisitedSetType type = config.getVisitedSetType();
+        switch (type) {
+            case BLOOM:
+                return new BloomVisitedSet(config.getExpectedUrls(), config.getBloomFalsePositiveRate());
+            case BLOOM_FINGERPRINT:
+                return new BloomVisitedSet(config.getExpectedUrls(), config.getBloomFalsePositiveRate(),
+                        new FingerprintVisitedSet(config.getExpectedUrls()));
+            case FINGERPRINT:
+                return new FingerprintVisitedSet(config.getExpectedUrls());
+            default:
+                throw new IllegalArgumentException("Unsupported visited set type: " + type);
+        }
+    }
+
+    /**
+     * Admits a discovered URL: depth limit, cluster routing, visited check,
+     * robots.txt, page budget, then the frontier. A URL robots.txt disallows stays marked as
+     * visited, so it is only checked once. In a scored crawl admission takes no page budget:
+     * every new URL is scored and queued, the frontier decides what is fetched first, and the
+     * crawl stops once {@code maxPages} results are recorded. Package-private so the admission
+     * benchmark can drive it directly.
+     */
+    void addTask(CrawlTask task) {
         if (shutdown || task.getDepth() > config.getMaxDepth()) {
             return;
         }
+        if (cluster != null && !cluster.owns(task.getHost())) {
+            cluster.route(task);
+            return;
+        }
 
-        // Atomically check if URL is new. If it is, check against page limit.
-        if (visitedUrls.putIfAbsent(task.getUrl(), true) == null) {
-            if (pagesSubmittedCount.incrementAndGet() <= config.getMaxPages()) {
-                taskQueue.offer(task);
-            } else {
-                // We've hit the page limit; stop adding tasks.
-                // We can also trigger a shutdown here if desired for a hard stop.
-                // shutdown = true;
+        // Atomically check if URL is new. If it is, check robots.txt and the page limit.
+        if (visitedUrls.add(task.getUrl())) {
+            seedSitemaps(task.getUrl(), task.getHost());
+            if (robotsCache != null && !robotsCache.isAllowed(task.getUrl(), task.getHost())) {
+                metrics.recordRobotsDisallowed();
+                return;
             }
+            if (urlScorer == null && pageBudget.reserve(1) == 0) {
+                return;
+            }
+            if (urlScorer != null) {
+                task.setScore(urlScorer.score(task, null, 0));
+            }
+            if (checkpointer != null) {
+                checkpointer.recordAdmitted(task);
+            }
+            pagesAdmitted.increment();
+            pendingTasks.incrementAndGet();
+            frontier.offer(task);
+            if (engine != null) {
+                engine.workAvailable(engineJob);
+            }
+        }
+    }
+
+    /**
+     * Admits the links found on a page in one batch, with the same checks as
+     * {@link #addTask(CrawlTask)}. A link repeated on the page is checked once,
+     * the page budget is reserved once for all new URLs, and the frontier
+     * gets them grouped by host in one call. Links past the budget are
+     * dropped in page order. A link to a URL already admitted is reported to
+     * a scored frontier, which may raise its score. Package-private for the
+     * admission benchmark.
+     */
+    void admitLinks(CrawlTask parent, List<String> links) {
+        int depth = parent.getDepth() + 1;
+        if (shutdown || depth > config.getMaxDepth() || links.isEmpty()) {
+            return;
+        }
+        Set<String> distinct = new LinkedHashSet<>(links);
+        int outDegree = distinct.size();
+
+        List<CrawlTask> admitted = new ArrayList<>(outDegree);
+        for (String link : distinct) {
+            if (cluster != null && !cluster.owns(CrawlTask.hostOf(link))) {
+                cluster.route(new CrawlTask(link, depth));
+            } else if (visitedUrls.add(link)) {
+                CrawlTask task = new CrawlTask(link, depth);
+                seedSitemaps(link, task.getHost());
+                if (robotsCache != null && !robotsCache.isAllowed(link, task.getHost())) {
+                    metrics.recordRobotsDisallowed();
+                } else {
+                    admitted.add(task);
+                }
+            } else if (urlScorer != null) {
+                frontier.linkFound(link, parent, outDegree);
+            }
+        }
+
+        if (urlScorer == null) {
+            int granted = pageBudget.reserve(admitted.size());
+            admitted.subList(granted, admitted.size()).clear();
+        }
+        if (admitted.isEmpty()) {
+            return;
+        }
+        for (CrawlTask task : admitted) {
+            if (urlScorer != null) {
+                task.setScore(urlScorer.score(task, parent, outDegree));
+            }
+            if (checkpointer != null) {
+                checkpointer.recordAdmitted(task);
+            }
+        }
+        pagesAdmitted.add(admitted.size());
+        pendingTasks.addAndGet(admitted.size());
+        // A stable sort keeps the page's order within each host.
+        admitted.sort(Comparator.comparing(CrawlTask::getHost));
+        frontier.offerAll(admitted);
+        if (engine != null) {
+            engine.workAvailable(engineJob);
+        }
+    }
+
+    private boolean isAdmitting() {
+        return !shutdown && (urlScorer != null || pageBudget.hasRemaining());
+    }
+
+    /**
+     * Marks a task as done once its links have been admitted. The crawl is over
+     * when the last admitted task finishes.
+     */
+    private void taskFinished(CrawlTask task) {
+        if (checkpointer != null) {
+            checkpointer.recordCompleted(task.getUrl());
+        }
+        releasePending();
+    }
+
+    /**
+     * Releases a task the frontier dropped unfetched. It is not checkpointed as
+     * completed, so a resumed crawl queues it again.
+     */
+    private void taskDropped(CrawlTask task) {
+        releasePending();
+    }
+
+    private void releasePending() {
+        // A cluster node running out of work may still receive links; node 0 decides when all are done.
+        if (pendingTasks.decrementAndGet() == 0 && cluster == null) {
+            finish(CrawlSummary.Outcome.COMPLETED);
+        }
+    }
+
+    /**
+     * A node is busy until it has admitted its start URL, so the cluster
+     * cannot terminate before every node has joined. A node whose crawl has
+     * ended counts as idle for good, so the rest of the cluster can still terminate.
+     */
+    private boolean isIdle() {
+        return shutdown || (running && pendingTasks.get() == 0);
+    }
+
+    private void clusterTerminated() {
+        finish(CrawlSummary.Outcome.COMPLETED);
+    }
+
+    /**
+     * Applies a host's {@code Crawl-delay}. On an engine the delay is shared by
+     * every job and set by the engine instead.
+     */
+    private void robotsLoaded(String scheme, String host, RobotsRules rules) {
+        if (rules.getCrawlDelayMillis() > 0) {
+            long delayMs = Math.min(rules.getCrawlDelayMillis(), config.getMaxCrawlDelayMs());
+            rateLimiter.setCrawlDelay(host, TimeUnit.MILLISECONDS.toNanos(delayMs));
+        }
+    }
+
+    /**
+     * The first time this crawl admits a URL on a host, reads the host's
+     * sitemaps in the background with the robots.txt rules the admission check
+     * loads anyway. Only hosts the crawl reached itself are seeded, so a job on
+     * an engine never picks up the sitemaps of hosts that only other jobs visit.
+     * The sitemap job counts as a pending task, so the crawl cannot complete
+     * while it is still admitting URLs.
+     */
+    private void seedSitemaps(String url, String host) {
+        if (sitemapExecutor == null || shutdown || sitemapHosts.contains(host) || !sitemapHosts.add(host)) {
+            return;
+        }
+        String scheme = url.startsWith("https") ? "https" : "http";
+        RobotsRules rules = robotsCache.rulesFor(scheme, host);
+        pendingTasks.incrementAndGet();
+        try {
+            sitemapExecutor.execute(() -> {
+                try {
+                    int offered = sitemapSeeder.seed(scheme, host, rules.getSitemaps());
+                    if (offered > 0) {
+                        System.out.println("Seeded " + offered + " URLs from the sitemaps of " + host);
+                    }
+                } finally {
+                    releasePending();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The crawl is already finishing.
+            releasePending();
         }
     }
 
     private void shutdown() {
-        rateLimiter.shutdown();
-        executorService.shutdown(); // Disable new tasks from being submitted
         try {
-            // Wait a while for existing tasks to terminate
-            if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
-                executorService.shutdownNow(); // Cancel currently executing tasks
+            // Workers were interrupted by finish(); wait for any fetch in progress to give up
+            if (executorService != null && !executorService.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Crawl workers did not stop within 30 seconds");
+            }
+            // Engine workers are shared and not interrupted; wait for them to finish this job's tasks
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            synchronized (engineWorkersDone) {
+                while (engineWorkers.get() > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        System.err.println("Engine workers did not finish this job's tasks within 30 seconds");
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(engineWorkersDone, remaining);
+                }
+            }
+            // Parsing records results, so it must stop before the sink is closed
+            for (Stage stage : parseStage == null ? List.<Stage>of() : List.of(parseStage, admissionStage)) {
+                if (!stage.awaitTermination(30, TimeUnit.SECONDS)) {
+                    System.err.println("The " + stage + " stage did not stop within 30 seconds");
+                }
             }
         } catch (InterruptedException e) {
-            executorService.shutdownNow();
             Thread.currentThread().interrupt();
+        } finally {
+            if (metricsReporter != null) {
+                metricsReporter.close();
+            }
+            metrics.unregisterProgressEvent();
+            if (sitemapExecutor != null) {
+                sitemapExecutor.shutdownNow();
+            }
+            closeCluster();
+            if (engine == null) {
+                httpClient.close();
+            }
+            frontier.close();
+            if (checkpointer != null) {
+                checkpointer.close();
+            }
+            resultSink.close();
+            saveValidatorCache();
+            saveLinkGraph();
+        }
+    }
+
+    /**
+     * Waits for the whole cluster to finish before leaving it: the other nodes
+     * may still send links here, and node 0 needs this node's answers to see
+     * that they are done.
+     */
+    private void closeCluster() {
+        if (cluster == null) {
+            return;
+        }
+        try {
+            cluster.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cluster.close();
+        }
+    }
+
+    private void saveValidatorCache() {
+        if (validatorCache == null) {
+            return;
+        }
+        try {
+            validatorCache.save();
+        } catch (IOException e) {
+            System.err.println("Failed to save validator cache: " + e.getMessage());
         }
     }
 
+    private void saveLinkGraph() {
+        if (linkGraph == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            long links = linkGraph.freeze(config.getLinkGraphFile());
+            System.out.println("Link graph: " + linkGraph.nodeCount() + " URLs, " + links + " links written to "
+                    + config.getLinkGraphFile() + " in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            System.err.println("Failed to write link graph: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the collected results when they are kept in memory.
+     *
+     * @throws IllegalStateException if results are streamed to another sink
+     */
     public List<CrawlResult> getResults() {
-        return List.copyOf(results);
+        if (!(resultSink instanceof InMemoryResultSink)) {
+            throw new IllegalStateException("Results are streamed to " + resultSink.getClass().getSimpleName()
+                    + " and not kept in memory");
+        }
+        return ((InMemoryResultSink) resultSink).getResults();
+    }
+
+    /**
+     * Near-duplicate groups found so far, keyed by the first page of each group.
+     * Empty unless near-duplicate detection is enabled.
+     */
+    public Map<String, List<String>> getDuplicateClusters() {
+        return nearDuplicates == null ? Map.of() : nearDuplicates.duplicateClusters();
+    }
+
+    public int getPagesCrawled() {
+        return pagesCrawled.get();
+    }
+
+    /**
+     * Live latency histograms and fetch counters for this crawl.
+     */
+    public CrawlMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Takes a rate-limit permit for the task's host, or puts the task back on
+     * the frontier until the host has budget again.
+     *
+     * @return whether the task may be fetched now
+     */
+    private boolean acquireHost(CrawlTask task, long polledAt) {
+        long waitNanos = rateLimiter.tryAcquire(task.getHost());
+        if (waitNanos > 0) {
+            task.markDeferred(polledAt);
+            frontier.retryLater(task, polledAt + waitNanos);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes this job's next task that may be fetched right now, for an engine
+     * worker, without waiting. A task returned must be passed to
+     * {@link #crawlTask}, which the job waits for before it closes.
+     *
+     * @return the task, or {@code null} if none is ready or the job is over
+     */
+    CrawlTask takeTask() {
+        engineWorkers.incrementAndGet();
+        CrawlTask task = null;
+        boolean taken = false;
+        try {
+            if (!shutdown) {
+                task = frontier.poll(0, TimeUnit.NANOSECONDS);
+                taken = task != null && acquireHost(task, System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!taken) {
+                engineWorkerLeft();
+            }
+        }
+        return taken ? task : null;
+    }
+
+    /**
+     * Crawls a task from {@link #takeTask} on the calling engine worker.
+     */
+    void crawlTask(CrawlTask task) {
+        try {
+            engineWorker.processCrawlTask(task, System.nanoTime());
+        } finally {
+            taskFinished(task);
+            engineWorkerLeft();
+        }
+    }
+
+    private void engineWorkerLeft() {
+        if (engineWorkers.decrementAndGet() == 0 && shutdown) {
+            synchronized (engineWorkersDone) {
+                engineWorkersDone.notifyAll();
+            }
+        }
     }
 
     private class CrawlWorker implements Runnable {
         @Override
         public void run() {
             try {
-                // Loop while not shut down OR while there are still tasks to process
-                while (!shutdown || !taskQueue.isEmpty()) {
-                    CrawlTask task = taskQueue.poll(100, TimeUnit.MILLISECONDS);
+                while (!shutdown) {
+                    // Blocks until a task is ready; finish() interrupts the wait
+                    CrawlTask task = frontier.poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
                     if (task == null) {
-                        // If poll times out, just continue the loop.
-                        // The loop condition will handle termination.
                         continue;
                     }
 
-                    activeWorkers.incrementAndGet();
+                    // A host that is out of budget goes back to the frontier instead of holding this worker.
+                    long polledAt = System.nanoTime();
+                    if (!acquireHost(task, polledAt)) {
+                        continue;
+                    }
+                    if (config.getFetchMode() == FetchMode.ASYNC) {
+                        dispatchAsync(task, polledAt);
+                        continue;
+                    }
+                    if (concurrencyLimiter != null) {
+                        concurrencyLimiter.acquire();
+                    }
+                    if (parseStage != null) {
+                        fetchStaged(task, polledAt);
+                        continue;
+                    }
                     try {
-                        processCrawlTask(task);
+                        processCrawlTask(task, polledAt);
                     } finally {
-                        activeWorkers.decrementAndGet();
+                        taskFinished(task);
                     }
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                System.err.println("Worker thread interrupted.");
+                if (!shutdown) {
+                    System.err.println("Worker thread interrupted.");
+                }
             }
         }
 
-        private void processCrawlTask(CrawlTask task) {
+        private void processCrawlTask(CrawlTask task, long startedNanos) {
+            long startTime = System.currentTimeMillis();
+            long fetchStart = System.nanoTime();
+            HttpClient.HttpResponse response = null;
             try {
-                rateLimiter.acquire();
+                response = httpClient.fetchPage(task.getUrl());
+            } catch (Exception e) {
+                fetchFailed(task, e);
+                return;
+            } finally {
+                releaseFetchSlot(System.nanoTime() - fetchStart, response);
+            }
+            long crawlTime = System.currentTimeMillis() - startTime;
 
-                System.out.println("Crawling: " + task.getUrl() + " (depth: " + task.getDepth() + ")");
+            // The fetch succeeded; a failure to record the page or admit its links
+            // is ours, not the host's, so it must not slow the host down.
+            try {
+                handleResponse(task, response, crawlTime, startedNanos);
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + task.getUrl() + ": " + e.getMessage());
+            }
+        }
 
-                long startTime = System.currentTimeMillis();
-                HttpClient.HttpResponse response = httpClient.fetchPage(task.getUrl());
-                long crawlTime = System.currentTimeMillis() - startTime;
+        private void fetchFailed(CrawlTask task, Throwable error) {
+            rateLimiter.onError(task.getHost());
+            metrics.recordError(task.getHost());
+            pagesFailed.incrementAndGet();
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            System.err.println("Error crawling " + task.getUrl() + ": " + cause.getMessage());
+        }
+
+        /**
+         * The fetch stage of a staged pipeline: downloads the page on this
+         * worker and leaves scanning it to the parse stage.
+         */
+        private void fetchStaged(CrawlTask task, long startedNanos) {
+            long startTime = System.currentTimeMillis();
+            long fetchStart = System.nanoTime();
+            HttpClient.HttpResponse response = null;
+            try {
+                response = httpClient.fetchUnparsed(task.getUrl());
+            } catch (Exception e) {
+                fetchFailed(task, e);
+                taskFinished(task);
+                return;
+            } finally {
+                releaseFetchSlot(System.nanoTime() - fetchStart, response);
+            }
+            if (!toParseStage(task, response, System.currentTimeMillis() - startTime, startedNanos)) {
+                taskFinished(task);
+            }
+        }
 
-                if (response.isSuccess()) {
-                    String title = httpClient.extractTitle(response.getContent());
-                    List<String> extractedLinks = httpClient.extractLinks(response.getContent(), task.getUrl());
+        /**
+         * Feeds the response back to the rate limiter and queues it for the
+         * parse stage, waiting while that stage is full.
+         *
+         * @return false if the crawl is stopping and the task was not handed on
+         */
+        private boolean toParseStage(CrawlTask task, HttpClient.HttpResponse response, long crawlTime,
+                                     long startedNanos) {
+            rateLimiter.onResponse(task.getHost(), response.getStatusCode(),
+                    TimeUnit.MILLISECONDS.toNanos(crawlTime), response.getRetryAfter());
+            try {
+                parseStage.submit(() -> parseStaged(task, response, crawlTime, startedNanos));
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
 
+        /**
+         * The parse stage: scans the body, records the result and queues the
+         * links for the admission stage. The task is finished once its links
+         * are admitted, or here if there are none.
+         */
+        private void parseStaged(CrawlTask task, HttpClient.HttpResponse response, long crawlTime,
+                                 long startedNanos) {
+            boolean handedOn = false;
+            try {
+                List<String> links = recordResponse(task, httpClient.parse(response), crawlTime, startedNanos);
+                if (!links.isEmpty()) {
+                    admissionStage.submit(() -> {
+                        try {
+                            admitLinks(task, links);
+                        } finally {
+                            taskFinished(task);
+                        }
+                    });
+                    handedOn = true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RejectedExecutionException e) {
+                // The crawl is stopping.
+            } catch (RuntimeException e) {
+                pagesFailed.incrementAndGet();
+                System.err.println("Error parsing " + task.getUrl() + ": " + e.getMessage());
+            } finally {
+                if (!handedOn) {
+                    taskFinished(task);
+                }
+            }
+        }
+
+        /**
+         * Starts the fetch and returns immediately; the response is handled on the
+         * HTTP client's completion threads. The in-flight permit, or the slot
+         * under the adaptive limit, bounds how many requests the crawl keeps
+         * open at once.
+         */
+        private void dispatchAsync(CrawlTask task, long startedNanos) throws InterruptedException {
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.acquire();
+            } else {
+                inFlightRequests.acquire();
+            }
+
+            long startTime = System.currentTimeMillis();
+            long fetchStart = System.nanoTime();
+            CompletableFuture<HttpClient.HttpResponse> fetch = parseStage != null
+                    ? httpClient.fetchUnparsedAsync(task.getUrl()) : httpClient.fetchPageAsync(task.getUrl());
+            fetch.whenComplete((response, error) -> {
+                long rttNanos = System.nanoTime() - fetchStart;
+                boolean handedOn = false;
+                try {
+                    long crawlTime = System.currentTimeMillis() - startTime;
+                    if (error != null) {
+                        fetchFailed(task, error);
+                    } else if (parseStage != null) {
+                        // Waiting for room in the parse stage holds the in-flight permit, which slows dispatch
+                        handedOn = toParseStage(task, response, crawlTime, startedNanos);
+                    } else {
+                        handleResponse(task, response, crawlTime, startedNanos);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error crawling " + task.getUrl() + ": " + e.getMessage());
+                } finally {
+                    if (concurrencyLimiter != null) {
+                        releaseFetchSlot(rttNanos, response);
+                    } else {
+                        inFlightRequests.release();
+                    }
+                    if (!handedOn) {
+                        taskFinished(task);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Returns the slot taken under the adaptive concurrency limit, if any,
+         * reporting a failed fetch, 429 or 5xx as a sign of overload.
+         */
+        private void releaseFetchSlot(long rttNanos, HttpClient.HttpResponse response) {
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.release(rttNanos, response == null
+                        || response.getStatusCode() == 429 || response.getStatusCode() >= 500);
+            }
+        }
+
+        private void handleResponse(CrawlTask task, HttpClient.HttpResponse response, long crawlTime,
+                                    long startedNanos) {
+            rateLimiter.onResponse(task.getHost(), response.getStatusCode(),
+                    TimeUnit.MILLISECONDS.toNanos(crawlTime), response.getRetryAfter());
+            admitLinks(task, recordResponse(task, response, crawlTime, startedNanos));
+        }
+
+        /**
+         * Records a parsed response: metrics, then the result for a successful page.
+         *
+         * @return the links to admit, empty if the page is not to be followed
+         */
+        private List<String> recordResponse(CrawlTask task, HttpClient.HttpResponse response, long crawlTime,
+                                            long startedNanos) {
+            CrawlTimings timings = timingsOf(task, startedNanos, response.getTimings());
+            metrics.recordPage(task.getUrl(), task.getHost(), response.getStatusCode(), timings);
+            HttpClient.Transfer transfer = response.getTransfer();
+            metrics.recordTransfer(transfer.getWireBytes(), transfer.getBodyBytes(), transfer.isTruncated());
+
+            // Not a page and not a failure: the body was never downloaded.
+            if (response.isSkipped()) {
+                metrics.recordSkippedContent();
+                return List.of();
+            }
+
+            // A 304 carries the title and links cached from the previous crawl.
+            if (response.isSuccess() || response.isNotModified()) {
+                if (response.isUnchanged()) {
+                    pagesUnchanged.incrementAndGet();
+                }
+                ParsedPage page = response.getPage();
+                List<String> extractedLinks = page.getLinks();
+                String duplicateOf = nearDuplicates == null
+                        ? null : nearDuplicates.findOrAdd(task.getUrl(), page.getSimHash());
+
+                if (!page.isNoIndex()) {
                     CrawlResult result = new CrawlResult(
-                            task.getUrl(), response.getStatusCode(), title,
-                            extractedLinks, crawlTime, task.getDepth()
+                            task.getUrl(), response.getStatusCode(), page.getTitle(),
+                            extractedLinks, crawlTime, task.getDepth(), duplicateOf, timings
                     );
-                    results.add(result);
-
-                    // Add new tasks for extracted links
-                    for (String link : extractedLinks) {
-                        addTask(new CrawlTask(link, task.getDepth() + 1));
+                    // Hard stop: a resumed crawl can have more admitted work than pages left,
+                    // so results are capped here as well as at admission.
+                    int max = config.getMaxPages();
+                    int recorded = pagesCrawled.getAndUpdate(n -> n < max ? n + 1 : n);
+                    if (recorded >= max) {
+                        return List.of();
+                    }
+                    resultSink.accept(result);
+                    if (linkGraph != null) {
+                        linkGraph.addPage(task.getUrl(), extractedLinks);
+                    }
+                    if (recorded + 1 == max) {
+                        finish(CrawlSummary.Outcome.PAGE_LIMIT);
                     }
-                } else {
-                    System.out.println("Failed to crawl " + task.getUrl() + " - Status: " + response.getStatusCode());
                 }
 
-            } catch (Exception e) {
-                System.err.println("Error crawling " + task.getUrl() + ": " + e.getMessage());
+                // Follow the extracted links, unless the page asked not to be
+                // or is a copy of a page whose links are already being expanded
+                if (!page.isNoFollow() && duplicateOf == null) {
+                    return extractedLinks;
+                }
+            } else {
+                pagesFailed.incrementAndGet();
+                System.out.println("Failed to crawl " + task.getUrl() + " - Status: " + response.getStatusCode());
             }
+            return List.of();
+        }
+
+        /**
+         * Queue wait runs from admission until a worker first took the task; if the
+         * host was out of budget then, the time until the permit was granted is
+         * rate-limit wait instead.
+         */
+        private CrawlTimings timingsOf(CrawlTask task, long startedNanos, FetchTimings fetch) {
+            long firstTaken = task.isDeferred() ? task.getDeferredNanos() : startedNanos;
+            return new CrawlTimings(firstTaken - task.getCreatedNanos(), startedNanos - firstTaken,
+                    fetch.getConnectNanos(), fetch.getFirstByteNanos(), fetch.getDownloadNanos(),
+                    fetch.getParseNanos());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.webcrawler.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+/**
+ * A link graph written by {@link LinkGraphBuilder#freeze}, memory-mapped
+ * read-only. Nodes are the crawl's URLs numbered 0 to {@code nodeCount() - 1};
+ * each node's out-links are stored in compressed sparse row form as a sorted,
+ * delta-encoded varint list, so only the pages touched are read into memory.
+ * Safe for concurrent readers.
+ */
+public class LinkGraph {
+    private final int nodeCount;
+    private final long edgeCount;
+    private final IntBuffer offsets;
+    private final ByteBuffer neighbors;
+    private final IntBuffer urlOffsets;
+    private final ByteBuffer urls;
+
+    private LinkGraph(int nodeCount, long edgeCount, IntBuffer offsets, ByteBuffer neighbors,
+                      IntBuffer urlOffsets, ByteBuffer urls) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.urlOffsets = urlOffsets;
+        this.urls = urls;
+    }
+
+    public static LinkGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(LinkGraphBuilder.HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated link graph: " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != LinkGraphBuilder.MAGIC) {
+                throw new IOException("Not a link graph file: " + file);
+            }
+            int version = header.getInt();
+            if (version != LinkGraphBuilder.VERSION) {
+                throw new IOException("Unsupported link graph version " + version + ": " + file);
+            }
+            int nodeCount = header.getInt();
+            header.getInt();
+            long edgeCount = header.getLong();
+            long neighborBytes = header.getLong();
+            long urlBytes = header.getLong();
+            long offsetBytes = 4L * (nodeCount + 1);
+            if (channel.size() != LinkGraphBuilder.HEADER_BYTES + 2 * offsetBytes + neighborBytes + urlBytes) {
+                throw new IOException("Truncated link graph: " + file);
+            }
+
+            long position = LinkGraphBuilder.HEADER_BYTES;
+            IntBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, position, offsetBytes).asIntBuffer();
+            position += offsetBytes;
+            ByteBuffer neighbors = channel.map(FileChannel.MapMode.READ_ONLY, position, neighborBytes);
+            position += neighborBytes;
+            IntBuffer urlOffsets = channel.map(FileChannel.MapMode.READ_ONLY, position, offsetBytes).asIntBuffer();
+            position += offsetBytes;
+            ByteBuffer urls = channel.map(FileChannel.MapMode.READ_ONLY, position, urlBytes);
+            return new LinkGraph(nodeCount, edgeCount, offsets, neighbors, urlOffsets, urls);
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    public String url(int id) {
+        int start = urlOffsets.get(id);
+        byte[] bytes = new byte[urlOffsets.get(id + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = urls.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Distinct pages this page links to; 0 for a URL that was never fetched. */
+    public int outDegree(int id) {
+        return (int) readVarInt(neighbors, offsets.get(id));
+    }
+
+    /** IDs of the pages this page links to, in ascending order. */
+    public int[] neighbors(int id) {
+        long next = readVarInt(neighbors, offsets.get(id));
+        int[] result = new int[(int) next];
+        int target = 0;
+        for (int i = 0; i < result.length; i++) {
+            next = readVarInt(neighbors, (int) (next >>> 32));
+            target += (int) next;
+            result[i] = target;
+        }
+        return result;
+    }
+
+    /** Like {@link #neighbors} without allocating. */
+    public void forEachNeighbor(int id, IntConsumer action) {
+        long next = readVarInt(neighbors, offsets.get(id));
+        int count = (int) next;
+        int target = 0;
+        for (int i = 0; i < count; i++) {
+            next = readVarInt(neighbors, (int) (next >>> 32));
+            target += (int) next;
+            action.accept(target);
+        }
+    }
+
+    /**
+     * Reads the varint at {@code index} with absolute gets, so concurrent
+     * readers need no shared position.
+     *
+     * @return the position after the varint in the high 32 bits, the value in the low 32
+     */
+    private static long readVarInt(ByteBuffer buffer, int index) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(index++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return ((long) index << 32) | (value & 0xFFFFFFFFL);
+    }
+}
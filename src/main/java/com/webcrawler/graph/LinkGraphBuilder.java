@@ -0,0 +1,244 @@
+package com.webcrawler.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the link graph while the crawl runs and writes it out in the
+ * compact form {@link LinkGraph} reads. Every URL, fetched or only linked
+ * to, gets a dense int ID; each page's links are appended as IDs to a
+ * per-thread buffer, so recording a page takes no lock beyond the ID lookups.
+ * {@link #freeze} sorts each page's links, drops repeats and writes them as
+ * delta-encoded varints.
+ */
+public class LinkGraphBuilder {
+    static final int MAGIC = 0x41524752; // "ARGR"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 40;
+
+    private static final int CHUNK_INTS = 1 << 16;
+    // source ID, slots, distinct count
+    private static final int RECORD_HEADER = 3;
+
+    private final UrlIdMap ids;
+    private final List<Chunk> chunks = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Chunk> current = new ThreadLocal<>();
+    private final LongAdder links = new LongAdder();
+
+    public LinkGraphBuilder(long expectedUrls) {
+        this.ids = new UrlIdMap(expectedUrls);
+    }
+
+    /**
+     * Records a fetched page and the links found on it. Safe to call from any
+     * number of threads; if a page is recorded twice, one of its records is
+     * kept.
+     */
+    public void addPage(String url, List<String> pageLinks) {
+        int source = ids.idOf(url);
+        int slots = pageLinks.size();
+        Chunk chunk = reserve(RECORD_HEADER + slots);
+        int[] data = chunk.data;
+        int position = chunk.used;
+        data[position] = source;
+        data[position + 1] = slots;
+        for (int i = 0; i < slots; i++) {
+            data[position + RECORD_HEADER + i] = ids.idOf(pageLinks.get(i));
+        }
+        chunk.used = position + RECORD_HEADER + slots;
+        links.add(slots);
+    }
+
+    /** URLs seen so far, fetched or linked to. */
+    public int nodeCount() {
+        return ids.size();
+    }
+
+    /** Links recorded so far, before repeats within a page are dropped. */
+    public long linkCount() {
+        return links.sum();
+    }
+
+    /**
+     * Writes the graph to {@code file}, replacing it atomically. Must only be
+     * called once every {@link #addPage} call has returned, and only once.
+     *
+     * @return the number of distinct links written
+     */
+    public long freeze(Path file) throws IOException {
+        int nodes = ids.size();
+        // (chunk index + 1) << 32 | offset of the page's record; 0 if the page was never fetched
+        long[] recordAt = new long[nodes];
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            int[] data = chunk.data;
+            int position = 0;
+            while (position < chunk.used) {
+                int slots = data[position + 1];
+                int start = position + RECORD_HEADER;
+                data[position + 2] = sortDistinct(data, start, start + slots);
+                recordAt[data[position]] = ((long) (c + 1) << 32) | position;
+                position = start + slots;
+            }
+        }
+
+        int[] offsets = new int[nodes + 1];
+        long neighborBytes = 0;
+        long edges = 0;
+        for (int id = 0; id < nodes; id++) {
+            offsets[id] = (int) neighborBytes;
+            long record = recordAt[id];
+            if (record == 0) {
+                neighborBytes += 1;
+                continue;
+            }
+            int[] data = chunks.get((int) (record >>> 32) - 1).data;
+            int position = (int) record;
+            int count = data[position + 2];
+            neighborBytes += encodedSize(data, position + RECORD_HEADER, count);
+            edges += count;
+            checkSection("neighbor lists", neighborBytes);
+        }
+        offsets[nodes] = (int) neighborBytes;
+
+        int[] urlOffsets = new int[nodes + 1];
+        long urlBytes = 0;
+        for (int id = 0; id < nodes; id++) {
+            urlOffsets[id] = (int) urlBytes;
+            urlBytes += ids.urlBytes(id).length;
+            checkSection("URLs", urlBytes);
+        }
+        urlOffsets[nodes] = (int) urlBytes;
+        long offsetBytes = 4L * (nodes + 1);
+        checkSection("offsets", offsetBytes);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(0)
+                    .putLong(edges).putLong(neighborBytes).putLong(urlBytes).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            long position = HEADER_BYTES;
+            MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_WRITE, position, offsetBytes);
+            section.asIntBuffer().put(offsets);
+            section.force();
+            position += offsetBytes;
+
+            section = channel.map(FileChannel.MapMode.READ_WRITE, position, neighborBytes);
+            for (int id = 0; id < nodes; id++) {
+                long record = recordAt[id];
+                if (record == 0) {
+                    section.put((byte) 0);
+                } else {
+                    int[] data = chunks.get((int) (record >>> 32) - 1).data;
+                    int start = (int) record + RECORD_HEADER;
+                    encode(section, data, start, data[start - 1]);
+                }
+            }
+            section.force();
+            position += neighborBytes;
+
+            section = channel.map(FileChannel.MapMode.READ_WRITE, position, offsetBytes);
+            section.asIntBuffer().put(urlOffsets);
+            section.force();
+            position += offsetBytes;
+
+            section = channel.map(FileChannel.MapMode.READ_WRITE, position, urlBytes);
+            for (int id = 0; id < nodes; id++) {
+                section.put(ids.urlBytes(id));
+            }
+            section.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return edges;
+    }
+
+    private Chunk reserve(int ints) {
+        Chunk chunk = current.get();
+        if (chunk == null || chunk.data.length - chunk.used < ints) {
+            chunk = new Chunk(Math.max(CHUNK_INTS, ints));
+            chunks.add(chunk);
+            current.set(chunk);
+        }
+        return chunk;
+    }
+
+    private static int sortDistinct(int[] data, int from, int to) {
+        if (to - from < 2) {
+            return to - from;
+        }
+        Arrays.sort(data, from, to);
+        int last = from;
+        for (int i = from + 1; i < to; i++) {
+            if (data[i] != data[last]) {
+                data[++last] = data[i];
+            }
+        }
+        return last - from + 1;
+    }
+
+    private static long encodedSize(int[] data, int start, int count) {
+        long size = varIntSize(count);
+        int previous = 0;
+        for (int i = start; i < start + count; i++) {
+            size += varIntSize(data[i] - previous);
+            previous = data[i];
+        }
+        return size;
+    }
+
+    private static void encode(ByteBuffer buffer, int[] data, int start, int count) {
+        writeVarInt(buffer, count);
+        int previous = 0;
+        for (int i = start; i < start + count; i++) {
+            writeVarInt(buffer, data[i] - previous);
+            previous = data[i];
+        }
+    }
+
+    private static void checkSection(String name, long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Link graph " + name + " exceed 2 GB");
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static class Chunk {
+        final int[] data;
+        int used;
+
+        Chunk(int ints) {
+            this.data = new int[ints];
+        }
+    }
+}
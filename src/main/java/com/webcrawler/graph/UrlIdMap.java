@@ -0,0 +1,138 @@
+package com.webcrawler.graph;
+
+import com.webcrawler.core.UrlFingerprint;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent dictionary from URL to a dense int ID, handed out in order of
+ * first sight. URLs are keyed by their 64-bit fingerprint in lock-striped
+ * open-addressing tables of primitive arrays, as in the fingerprint visited
+ * set, and each URL is kept once as UTF-8 for the export. Two URLs with the
+ * same fingerprint would share an ID.
+ */
+final class UrlIdMap {
+    private static final int STRIPES = 64;
+    private static final double MAX_LOAD = 0.7;
+    // 0 marks an empty slot, so a real fingerprint of 0 is stored as this value instead.
+    private static final long ZERO_SUBSTITUTE = 0x9e3779b97f4a7c15L;
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger nextId = new AtomicInteger();
+    // URL bytes by ID, in chunks allocated as IDs reach them
+    private final AtomicReferenceArray<byte[][]> urls = new AtomicReferenceArray<>(1 << (31 - CHUNK_BITS));
+
+    UrlIdMap(long expectedUrls) {
+        int perStripe = (int) Math.min(1 << 28, Math.max(16, expectedUrls / STRIPES));
+        int capacity = Integer.highestOneBit((int) Math.ceil(perStripe / MAX_LOAD) - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Returns the URL's ID, assigning the next one if the URL is new.
+     */
+    int idOf(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        long key = fingerprint == 0 ? ZERO_SUBSTITUTE : fingerprint;
+        Stripe stripe = stripes[(int) (key >>> 58) & (STRIPES - 1)];
+        synchronized (stripe) {
+            int id = stripe.get(key);
+            if (id >= 0) {
+                return id;
+            }
+            id = nextId.getAndIncrement();
+            if (id < 0) {
+                throw new IllegalStateException("More than " + Integer.MAX_VALUE + " URLs in the link graph");
+            }
+            chunk(id)[id & (CHUNK_SIZE - 1)] = url.getBytes(StandardCharsets.UTF_8);
+            stripe.put(key, id);
+            return id;
+        }
+    }
+
+    int size() {
+        return nextId.get();
+    }
+
+    /**
+     * The UTF-8 bytes of the URL with this ID. Only safe once no thread is
+     * adding URLs any more.
+     */
+    byte[] urlBytes(int id) {
+        return urls.get(id >>> CHUNK_BITS)[id & (CHUNK_SIZE - 1)];
+    }
+
+    private byte[][] chunk(int id) {
+        int index = id >>> CHUNK_BITS;
+        byte[][] chunk = urls.get(index);
+        if (chunk == null) {
+            urls.compareAndSet(index, null, new byte[CHUNK_SIZE][]);
+            chunk = urls.get(index);
+        }
+        return chunk;
+    }
+
+    private static class Stripe {
+        private long[] keys;
+        private int[] ids;
+        private int size;
+        private int resizeAt;
+
+        Stripe(int capacity) {
+            this.keys = new long[capacity];
+            this.ids = new int[capacity];
+            this.resizeAt = (int) (capacity * MAX_LOAD);
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            int index = (int) key & mask;
+            while (true) {
+                long slot = keys[index];
+                if (slot == 0) {
+                    return -1;
+                }
+                if (slot == key) {
+                    return ids[index];
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        void put(long key, int id) {
+            insert(keys, ids, key, id);
+            if (++size > resizeAt) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+            resizeAt = (int) (keys.length * MAX_LOAD);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    insert(keys, ids, oldKeys[i], oldIds[i]);
+                }
+            }
+        }
+
+        private static void insert(long[] keys, int[] ids, long key, int id) {
+            int mask = keys.length - 1;
+            int index = (int) key & mask;
+            while (keys[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            ids[index] = id;
+        }
+    }
+}
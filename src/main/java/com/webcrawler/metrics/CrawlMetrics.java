@@ -0,0 +1,234 @@
+package com.webcrawler.metrics;
+
+import com.webcrawler.model.CrawlTimings;
+import jdk.jfr.FlightRecorder;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Crawl-wide instrumentation: a latency histogram per {@link Stage} and
+ * fetch counters by status code and by host. Everything is recorded without
+ * locks, so workers can report every page. Each page also becomes a
+ * {@code com.webcrawler.PageFetch} JFR event when a recording asks for it.
+ */
+public class CrawlMetrics {
+    private static final int REPORTED_HOSTS = 10;
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final ConcurrentHashMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> hostCounts = new ConcurrentHashMap<>();
+    private final LongAdder pagesFetched = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder robotsDisallowed = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder bodyBytes = new LongAdder();
+    private final LongAdder truncatedPages = new LongAdder();
+    private final LongAdder skippedContent = new LongAdder();
+    // 0 until an adaptive concurrency limit is recorded
+    private final AtomicInteger concurrencyLimit = new AtomicInteger();
+    private final AtomicInteger lowestConcurrencyLimit = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger highestConcurrencyLimit = new AtomicInteger();
+    private Runnable progressHook;
+
+    public CrawlMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records a fetch that got an HTTP response, whatever its status.
+     */
+    public void recordPage(String url, String host, int statusCode, CrawlTimings timings) {
+        pagesFetched.increment();
+        statusCounts.computeIfAbsent(statusCode, k -> new LongAdder()).increment();
+        hostCounts.computeIfAbsent(host, k -> new LongAdder()).increment();
+
+        stages.get(Stage.QUEUE_WAIT).record(timings.getQueueWaitNanos());
+        stages.get(Stage.RATE_LIMIT_WAIT).record(timings.getRateLimitWaitNanos());
+        stages.get(Stage.CONNECT).record(timings.getConnectNanos());
+        stages.get(Stage.FIRST_BYTE).record(timings.getFirstByteNanos());
+        stages.get(Stage.DOWNLOAD).record(timings.getDownloadNanos());
+        stages.get(Stage.PARSE).record(timings.getParseNanos());
+
+        PageFetchEvent event = new PageFetchEvent();
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.host = host;
+            event.statusCode = statusCode;
+            event.queueWait = timings.getQueueWaitNanos();
+            event.rateLimitWait = timings.getRateLimitWaitNanos();
+            event.connect = timings.getConnectNanos();
+            event.firstByte = timings.getFirstByteNanos();
+            event.download = timings.getDownloadNanos();
+            event.parse = timings.getParseNanos();
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a fetch that failed without an HTTP response.
+     */
+    public void recordError(String host) {
+        errors.increment();
+        hostCounts.computeIfAbsent(host, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records a discovered link that robots.txt does not let us fetch.
+     */
+    public void recordRobotsDisallowed() {
+        robotsDisallowed.increment();
+    }
+
+    /**
+     * Records how much of a page body was received and how much of it, once
+     * decompressed, was scanned.
+     */
+    public void recordTransfer(long wire, long body, boolean truncated) {
+        wireBytes.add(wire);
+        bodyBytes.add(body);
+        if (truncated) {
+            truncatedPages.increment();
+        }
+    }
+
+    /**
+     * Records a response whose body was not downloaded because of its content type.
+     */
+    public void recordSkippedContent() {
+        skippedContent.increment();
+    }
+
+    /**
+     * Records a new value of the adaptive limit on fetches in flight.
+     */
+    public void recordConcurrencyLimit(int limit) {
+        concurrencyLimit.set(limit);
+        lowestConcurrencyLimit.accumulateAndGet(limit, Math::min);
+        highestConcurrencyLimit.accumulateAndGet(limit, Math::max);
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public long getPagesFetched() {
+        return pagesFetched.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getRobotsDisallowedCount() {
+        return robotsDisallowed.sum();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.sum();
+    }
+
+    public long getBodyBytes() {
+        return bodyBytes.sum();
+    }
+
+    public long getTruncatedCount() {
+        return truncatedPages.sum();
+    }
+
+    public long getSkippedContentCount() {
+        return skippedContent.sum();
+    }
+
+    /** The current adaptive concurrency limit, or 0 if concurrency is fixed. */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.get();
+    }
+
+    public Map<Integer, Long> statusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    public Map<String, Long> hostCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        hostCounts.forEach((host, count) -> counts.put(host, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Emits a {@code com.webcrawler.CrawlProgress} JFR event every second while
+     * a recording has it enabled, until {@link #unregisterProgressEvent()}.
+     */
+    public synchronized void registerProgressEvent(LongSupplier pendingTasks, LongSupplier frontierSize) {
+        unregisterProgressEvent();
+        progressHook = () -> {
+            CrawlProgressEvent event = new CrawlProgressEvent();
+            event.pagesFetched = pagesFetched.sum();
+            event.errors = errors.sum();
+            event.pendingTasks = pendingTasks.getAsLong();
+            event.frontierSize = frontierSize.getAsLong();
+            event.concurrencyLimit = concurrencyLimit.get();
+            event.commit();
+        };
+        FlightRecorder.addPeriodicEvent(CrawlProgressEvent.class, progressHook);
+    }
+
+    public synchronized void unregisterProgressEvent() {
+        if (progressHook != null) {
+            FlightRecorder.removePeriodicEvent(progressHook);
+            progressHook = null;
+        }
+    }
+
+    /**
+     * Multi-line summary: per-stage percentiles, body bytes, the adaptive
+     * concurrency limit, status codes and the busiest hosts.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Fetched %d pages, %d errors, %d links disallowed by robots.txt%n",
+                getPagesFetched(), getErrorCount(), getRobotsDisallowedCount()));
+        sb.append(String.format("  %-16s %8s %9s %9s %9s %9s%n", "stage (ms)", "count", "p50", "p90", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = stages.get(stage);
+            sb.append(String.format("  %-16s %8d %9.2f %9.2f %9.2f %9.2f%n", stage.getLabel(), histogram.getCount(),
+                    millis(histogram.percentileNanos(0.50)), millis(histogram.percentileNanos(0.90)),
+                    millis(histogram.percentileNanos(0.99)), millis(histogram.getMaxNanos())));
+        }
+        sb.append(String.format("  bodies: %d KB received, %d KB scanned, %d truncated, %d skipped as not HTML%n",
+                wireBytes.sum() / 1024, bodyBytes.sum() / 1024, truncatedPages.sum(), skippedContent.sum()));
+        if (concurrencyLimit.get() > 0) {
+            sb.append(String.format("  concurrency limit: %d (lowest %d, highest %d)%n", concurrencyLimit.get(),
+                    lowestConcurrencyLimit.get(), highestConcurrencyLimit.get()));
+        }
+        sb.append("  status codes: ").append(statusCounts()).append(System.lineSeparator());
+        sb.append("  busiest hosts: ").append(busiestHosts());
+        return sb.toString();
+    }
+
+    private Map<String, Long> busiestHosts() {
+        Map<String, Long> top = new LinkedHashMap<>();
+        hostCounts.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(REPORTED_HOSTS)
+                .forEach(e -> top.put(e.getKey(), e.getValue()));
+        return top;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
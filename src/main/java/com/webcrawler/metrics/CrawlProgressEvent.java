@@ -0,0 +1,37 @@
+package com.webcrawler.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Periodic JFR event with the crawl's running totals, emitted while a crawl
+ * registered through {@link CrawlMetrics#registerProgressEvent} is running.
+ */
+@Name("com.webcrawler.CrawlProgress")
+@Label("Crawl Progress")
+@Category({"Arachne", "Crawl"})
+@Description("Running totals of a crawl")
+@Period("1 s")
+@StackTrace(false)
+class CrawlProgressEvent extends Event {
+    @Label("Pages Fetched")
+    long pagesFetched;
+
+    @Label("Errors")
+    long errors;
+
+    @Label("Pending Tasks")
+    long pendingTasks;
+
+    @Label("Frontier Size")
+    long frontierSize;
+
+    @Label("Concurrency Limit")
+    @Description("Adaptive limit on fetches in flight; 0 if concurrency is fixed")
+    int concurrencyLimit;
+}
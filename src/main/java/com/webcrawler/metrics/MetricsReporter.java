@@ -0,0 +1,39 @@
+package com.webcrawler.metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Prints a {@link CrawlMetrics} report at a fixed interval from a daemon thread,
+ * so progress is visible without the workers writing to the console.
+ */
+public class MetricsReporter implements AutoCloseable {
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param progress one-line status printed above each report, such as the
+     *                 frontier size; may be {@code null}
+     */
+    public MetricsReporter(CrawlMetrics metrics, long intervalMs, Supplier<String> progress) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                String header = progress == null ? "" : progress.get() + System.lineSeparator();
+                System.out.println(header + metrics.report());
+            } catch (RuntimeException e) {
+                System.err.println("Failed to report metrics: " + e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
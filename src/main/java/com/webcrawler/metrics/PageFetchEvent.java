@@ -0,0 +1,53 @@
+package com.webcrawler.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed once per fetched page, carrying its stage timings.
+ * Costs nothing unless a recording has the event enabled.
+ */
+@Name("com.webcrawler.PageFetch")
+@Label("Page Fetch")
+@Category({"Arachne", "Crawl"})
+@Description("A page fetched by the crawler and where its time went")
+@StackTrace(false)
+class PageFetchEvent extends Event {
+    @Label("URL")
+    String url;
+
+    @Label("Host")
+    String host;
+
+    @Label("Status Code")
+    int statusCode;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+
+    @Label("Rate-Limit Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long rateLimitWait;
+
+    @Label("Connect")
+    @Timespan(Timespan.NANOSECONDS)
+    long connect;
+
+    @Label("Time to First Byte")
+    @Timespan(Timespan.NANOSECONDS)
+    long firstByte;
+
+    @Label("Download")
+    @Timespan(Timespan.NANOSECONDS)
+    long download;
+
+    @Label("Parse")
+    @Timespan(Timespan.NANOSECONDS)
+    long parse;
+}
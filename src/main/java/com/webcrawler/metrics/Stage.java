@@ -0,0 +1,23 @@
+package com.webcrawler.metrics;
+
+/**
+ * The stages a page goes through, each with its own latency histogram.
+ */
+public enum Stage {
+    QUEUE_WAIT("queue wait"),
+    RATE_LIMIT_WAIT("rate-limit wait"),
+    CONNECT("connect"),
+    FIRST_BYTE("first byte"),
+    DOWNLOAD("download"),
+    PARSE("parse");
+
+    private final String label;
+
+    Stage(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
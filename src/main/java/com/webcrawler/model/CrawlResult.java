@@ -13,15 +13,29 @@ public class CrawlResult {
     private final List<String> extractedLinks;
     private final long crawlTimeMs;
     private final int depth;
+    private final String nearDuplicateOf;
+    private final CrawlTimings timings;
 
     public CrawlResult(String url, int statusCode, String title,
                        List<String> extractedLinks, long crawlTimeMs, int depth) {
+        this(url, statusCode, title, extractedLinks, crawlTimeMs, depth, null);
+    }
+
+    public CrawlResult(String url, int statusCode, String title,
+                       List<String> extractedLinks, long crawlTimeMs, int depth, String nearDuplicateOf) {
+        this(url, statusCode, title, extractedLinks, crawlTimeMs, depth, nearDuplicateOf, null);
+    }
+
+    public CrawlResult(String url, int statusCode, String title, List<String> extractedLinks,
+                       long crawlTimeMs, int depth, String nearDuplicateOf, CrawlTimings timings) {
         this.url = url;
         this.statusCode = statusCode;
         this.title = title;
         this.extractedLinks = extractedLinks;
         this.crawlTimeMs = crawlTimeMs;
         this.depth = depth;
+        this.nearDuplicateOf = nearDuplicateOf;
+        this.timings = timings;
     }
 
     // Getters
@@ -31,6 +45,10 @@ public class CrawlResult {
     public List<String> getExtractedLinks() { return extractedLinks; }
     public long getCrawlTimeMs() { return crawlTimeMs; }
     public int getDepth() { return depth; }
+    /** URL of the page this one nearly duplicates, or null if it is original. */
+    public String getNearDuplicateOf() { return nearDuplicateOf; }
+    /** Per-stage time for this page, including the waits before the fetch; null if not recorded. */
+    public CrawlTimings getTimings() { return timings; }
 
     @Override
     public String toString() {
@@ -0,0 +1,51 @@
+package com.webcrawler.model;
+
+/**
+ * Outcome of a finished crawl
+ */
+public class CrawlSummary {
+
+    /**
+     * Why the crawl stopped.
+     */
+    public enum Outcome {
+        /** Every admitted task was processed. */
+        COMPLETED,
+        /** {@code maxPages} results were recorded; remaining work was dropped. */
+        PAGE_LIMIT,
+        /** The crawl was cancelled before it ran out of work. */
+        CANCELLED
+    }
+
+    private final Outcome outcome;
+    private final int pagesCrawled;
+    private final int pagesFailed;
+    private final int urlsAdmitted;
+    private final long elapsedMs;
+
+    public CrawlSummary(Outcome outcome, int pagesCrawled, int pagesFailed, int urlsAdmitted, long elapsedMs) {
+        this.outcome = outcome;
+        this.pagesCrawled = pagesCrawled;
+        this.pagesFailed = pagesFailed;
+        this.urlsAdmitted = urlsAdmitted;
+        this.elapsedMs = elapsedMs;
+    }
+
+    // Getters
+    public Outcome getOutcome() { return outcome; }
+    public int getPagesCrawled() { return pagesCrawled; }
+    public int getPagesFailed() { return pagesFailed; }
+    public int getUrlsAdmitted() { return urlsAdmitted; }
+    public long getElapsedMs() { return elapsedMs; }
+
+    @Override
+    public String toString() {
+        return "CrawlSummary{" +
+                "outcome=" + outcome +
+                ", pagesCrawled=" + pagesCrawled +
+                ", pagesFailed=" + pagesFailed +
+                ", urlsAdmitted=" + urlsAdmitted +
+                ", elapsedMs=" + elapsedMs +
+                '}';
+    }
+}
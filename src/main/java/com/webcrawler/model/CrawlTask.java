@@ -1,11 +1,18 @@
 package com.webcrawler.model;
 
+import java.util.Locale;
+
 /**
  * Represents a crawling task with URL and depth information
  */
 public class CrawlTask {
     private final String url;
     private final int depth;
+    private final long createdNanos = System.nanoTime();
+    private long deferredNanos;
+    private boolean deferred;
+    private double score;
+    private String host;
 
     public CrawlTask(String url, int depth) {
         this.url = url;
@@ -20,6 +27,74 @@ public class CrawlTask {
         return depth;
     }
 
+    /**
+     * Returns the lower-cased authority (host and optional port) of the URL,
+     * which is the unit politeness is enforced on.
+     */
+    public String getHost() {
+        if (host == null) {
+            host = hostOf(url);
+        }
+        return host;
+    }
+
+    /**
+     * {@link System#nanoTime()} at which the task was created, which for a
+     * link is when it was admitted to the frontier.
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    /**
+     * Records the first time the task had to wait for its host's rate budget.
+     * Only the worker holding the task calls this, so it needs no locking.
+     */
+    public void markDeferred(long nowNanos) {
+        if (!deferred) {
+            deferred = true;
+            deferredNanos = nowNanos;
+        }
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    public long getDeferredNanos() {
+        return deferredNanos;
+    }
+
+    /**
+     * Priority assigned by the crawl's URL scorer; higher is fetched first.
+     * Unused (0) when the frontier is FIFO.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    public static String hostOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            start = at + 1;
+        }
+        return url.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
     @Override
     public String toString() {
         return String.format("CrawlTask{url='%s', depth=%d}", url, depth);
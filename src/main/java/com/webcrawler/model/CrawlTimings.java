@@ -0,0 +1,57 @@
+package com.webcrawler.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time for one page went, in nanoseconds. Stages that could not be
+ * observed (the connect time of a pooled async connection, for instance) are
+ * {@link #UNKNOWN}.
+ */
+public class CrawlTimings {
+    public static final long UNKNOWN = -1;
+
+    private final long queueWaitNanos;
+    private final long rateLimitWaitNanos;
+    private final long connectNanos;
+    private final long firstByteNanos;
+    private final long downloadNanos;
+    private final long parseNanos;
+
+    public CrawlTimings(long queueWaitNanos, long rateLimitWaitNanos, long connectNanos,
+                        long firstByteNanos, long downloadNanos, long parseNanos) {
+        this.queueWaitNanos = queueWaitNanos;
+        this.rateLimitWaitNanos = rateLimitWaitNanos;
+        this.connectNanos = connectNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.downloadNanos = downloadNanos;
+        this.parseNanos = parseNanos;
+    }
+
+    // Getters
+    /** From admission to the frontier until a worker first took the task. */
+    public long getQueueWaitNanos() { return queueWaitNanos; }
+    /** Time spent parked on the frontier because the host was out of rate budget. */
+    public long getRateLimitWaitNanos() { return rateLimitWaitNanos; }
+    public long getConnectNanos() { return connectNanos; }
+    /** From the request being sent until the response headers arrived. */
+    public long getFirstByteNanos() { return firstByteNanos; }
+    /** Reading the body, not counting the time spent scanning it. */
+    public long getDownloadNanos() { return downloadNanos; }
+    public long getParseNanos() { return parseNanos; }
+
+    @Override
+    public String toString() {
+        return "CrawlTimings{" +
+                "queueWait=" + millis(queueWaitNanos) +
+                ", rateLimitWait=" + millis(rateLimitWaitNanos) +
+                ", connect=" + millis(connectNanos) +
+                ", firstByte=" + millis(firstByteNanos) +
+                ", download=" + millis(downloadNanos) +
+                ", parse=" + millis(parseNanos) +
+                '}';
+    }
+
+    private static String millis(long nanos) {
+        return nanos == UNKNOWN ? "?" : TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0 + "ms";
+    }
+}
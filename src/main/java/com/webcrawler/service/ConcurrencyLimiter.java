@@ -0,0 +1,150 @@
+package com.webcrawler.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Adaptive bound on the number of fetches in flight across all hosts. The
+ * limit moves between a lower and an upper bound, adjusted once per window
+ * of completed requests:
+ *
+ * <ul>
+ *   <li>If more than {@link #ERROR_RATE_THRESHOLD} of the window failed
+ *       (timeouts, connection errors, 429s, 5xx), the limit is cut
+ *       multiplicatively.</li>
+ *   <li>Otherwise the window's mean round-trip time is compared with the
+ *       baseline, the lowest window mean of the last one to two
+ *       {@link #BASELINE_PERIOD_NANOS} periods. While latency stays within
+ *       {@link #RTT_TOLERANCE} times the baseline the limit grows by its
+ *       square root; beyond that the gradient shrinks it in proportion.</li>
+ * </ul>
+ *
+ * The crawl therefore adds concurrency while it buys throughput and backs
+ * off once extra requests only queue at the other end. Queueing cannot pull
+ * the baseline up with it, yet it expires, so the limit still follows a
+ * network that has become slower for good.
+ */
+public class ConcurrencyLimiter {
+    static final double ERROR_RATE_THRESHOLD = 0.05;
+    static final double RTT_TOLERANCE = 1.5;
+    static final long BASELINE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final double BACKOFF_FACTOR = 0.75;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.5;
+    private static final int MIN_WINDOW_SAMPLES = 8;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final IntConsumer limitListener;
+    private double limit;
+    private volatile int currentLimit;
+    private int inFlight;
+    // Lowest window mean RTT in the current and the previous baseline period; 0 if none yet
+    private double currentPeriodMinRtt;
+    private double previousPeriodMinRtt;
+    private long periodStartNanos = System.nanoTime();
+
+    // The window being measured
+    private int samples;
+    private int failures;
+    private long rttSumNanos;
+    private int peakInFlight;
+
+    /**
+     * @param limitListener told the new limit each time it changes, e.g. to record it as a metric
+     */
+    public ConcurrencyLimiter(int minLimit, int maxLimit, IntConsumer limitListener) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Concurrency bounds must satisfy 0 < min <= max.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limitListener = limitListener;
+        this.limit = minLimit;
+        this.currentLimit = minLimit;
+        limitListener.accept(minLimit);
+    }
+
+    /**
+     * Blocks until fewer than the current limit of fetches are in flight and
+     * takes a slot.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= currentLimit) {
+            wait();
+        }
+        inFlight++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+    }
+
+    /**
+     * Returns a slot and feeds the fetch's outcome into the limit.
+     *
+     * @param rttNanos time from sending the request to the end of the response
+     * @param failed   whether the fetch timed out, failed, or was answered 429 or 5xx
+     */
+    public synchronized void release(long rttNanos, boolean failed) {
+        inFlight--;
+        samples++;
+        if (failed) {
+            failures++;
+        } else {
+            rttSumNanos += rttNanos;
+        }
+        if (samples >= Math.max(MIN_WINDOW_SAMPLES, currentLimit / 2)) {
+            int previous = currentLimit;
+            adjust();
+            if (currentLimit > previous) {
+                notifyAll();
+                return;
+            }
+        }
+        notify();
+    }
+
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void adjust() {
+        double target;
+        int successes = samples - failures;
+        if (failures > samples * ERROR_RATE_THRESHOLD) {
+            target = limit * BACKOFF_FACTOR;
+        } else {
+            double rtt = rttSumNanos / (double) successes;
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, RTT_TOLERANCE * baselineRtt(rtt) / rtt));
+            // Grow only a limit the crawl actually used; an idle limit says nothing about the other end
+            double headroom = gradient == 1.0 && peakInFlight >= currentLimit ? Math.sqrt(limit) : 0;
+            target = limit * gradient + headroom;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit + SMOOTHING * (target - limit)));
+        samples = 0;
+        failures = 0;
+        rttSumNanos = 0;
+        peakInFlight = inFlight;
+
+        int rounded = (int) Math.round(limit);
+        if (rounded != currentLimit) {
+            currentLimit = rounded;
+            limitListener.accept(rounded);
+        }
+    }
+
+    private double baselineRtt(double rtt) {
+        long now = System.nanoTime();
+        if (now - periodStartNanos >= BASELINE_PERIOD_NANOS) {
+            previousPeriodMinRtt = currentPeriodMinRtt;
+            currentPeriodMinRtt = 0;
+            periodStartNanos = now;
+        }
+        if (currentPeriodMinRtt == 0 || rtt < currentPeriodMinRtt) {
+            currentPeriodMinRtt = rtt;
+        }
+        return previousPeriodMinRtt == 0 ? currentPeriodMinRtt : Math.min(previousPeriodMinRtt, currentPeriodMinRtt);
+    }
+}
@@ -0,0 +1,221 @@
+package com.webcrawler.service;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Undoes a {@code Content-Encoding} on a body pushed in chunk by chunk, as
+ * it arrives from either fetch engine. Decoded bytes go straight to a sink
+ * through one reused buffer, and the sink can stop decoding at any point, so
+ * a capped body (or a compression bomb) is never inflated past the cap.
+ * Handles {@code gzip} and {@code deflate}, the latter with or without the
+ * zlib wrapper servers disagree about. Not thread-safe; one per response.
+ */
+final class ContentDecoder {
+    private static final int OUTPUT_SIZE = 16 * 1024;
+
+    private static final int FLAG_HCRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    /**
+     * Receives decoded bytes; returns false to stop decoding.
+     */
+    interface Sink {
+        boolean accept(byte[] bytes, int offset, int length);
+    }
+
+    private enum State {
+        IDENTITY, GZIP_HEADER, GZIP_EXTRA_LENGTH, GZIP_EXTRA, GZIP_NAME, GZIP_COMMENT, GZIP_HEADER_CRC,
+        DEFLATE_DETECT, INFLATE, DONE, UNSUPPORTED
+    }
+
+    private final String encoding;
+    private State state;
+    private Inflater inflater;
+    private byte[] output;
+    // Bytes still to skip in the current gzip header field, or bytes of it seen so far
+    private int headerCount;
+    private int headerFlags;
+    private int extraLength;
+    private final byte[] lead = new byte[2];
+
+    private ContentDecoder(String encoding, State state) {
+        this.encoding = encoding;
+        this.state = state;
+    }
+
+    /**
+     * @param contentEncoding the response's {@code Content-Encoding}, or {@code null}
+     */
+    static ContentDecoder forEncoding(String contentEncoding) {
+        String encoding = contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "":
+            case "identity":
+                return new ContentDecoder(encoding, State.IDENTITY);
+            case "gzip":
+            case "x-gzip":
+                return new ContentDecoder(encoding, State.GZIP_HEADER);
+            case "deflate":
+                return new ContentDecoder(encoding, State.DEFLATE_DETECT);
+            default:
+                // Reported on the first chunk, so both engines fail the fetch the same way
+                return new ContentDecoder(encoding, State.UNSUPPORTED);
+        }
+    }
+
+    /**
+     * Decodes the next chunk of the body.
+     *
+     * @return false if the sink stopped decoding
+     */
+    boolean feed(byte[] bytes, int offset, int length, Sink sink) throws IOException {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            switch (state) {
+                case IDENTITY:
+                    return sink.accept(bytes, i, end - i);
+                case INFLATE:
+                    return inflate(bytes, i, end - i, sink);
+                case DONE:
+                    // A gzip trailer, or garbage after the compressed stream
+                    return true;
+                case UNSUPPORTED:
+                    throw new IOException("Unsupported Content-Encoding: " + encoding);
+                case DEFLATE_DETECT:
+                    lead[headerCount++] = bytes[i++];
+                    if (headerCount == 2) {
+                        // RFC 1950 header: compression method 8 and a checksum over the two bytes
+                        int header = ((lead[0] & 0xFF) << 8) | (lead[1] & 0xFF);
+                        boolean zlib = (lead[0] & 0x0F) == 8 && header % 31 == 0;
+                        startInflating(!zlib);
+                        if (!inflate(lead, 0, 2, sink)) {
+                            return false;
+                        }
+                    }
+                    break;
+                default:
+                    gzipHeader(bytes[i++] & 0xFF);
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the inflater, if the stream has not ended and released it
+     * already. The decoder cannot be used afterwards.
+     */
+    void end() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+        state = State.DONE;
+    }
+
+    /**
+     * Steps through the RFC 1952 member header one byte at a time; headers
+     * are a few bytes long and may be split across chunks.
+     */
+    private void gzipHeader(int b) throws IOException {
+        switch (state) {
+            case GZIP_HEADER:
+                if ((headerCount == 0 && b != 0x1F) || (headerCount == 1 && b != 0x8B)
+                        || (headerCount == 2 && b != 8)) {
+                    throw new ZipException("Not in GZIP format");
+                }
+                if (headerCount == 3) {
+                    headerFlags = b;
+                }
+                if (++headerCount == 10) {
+                    nextHeaderField();
+                }
+                break;
+            case GZIP_EXTRA_LENGTH:
+                extraLength |= b << (8 * headerCount);
+                if (++headerCount == 2) {
+                    headerCount = extraLength;
+                    state = State.GZIP_EXTRA;
+                    if (headerCount == 0) {
+                        nextHeaderField();
+                    }
+                }
+                break;
+            case GZIP_EXTRA:
+            case GZIP_HEADER_CRC:
+                if (--headerCount == 0) {
+                    nextHeaderField();
+                }
+                break;
+            case GZIP_NAME:
+            case GZIP_COMMENT:
+                if (b == 0) {
+                    nextHeaderField();
+                }
+                break;
+            default:
+                throw new IllegalStateException(state.name());
+        }
+    }
+
+    private void nextHeaderField() {
+        headerCount = 0;
+        if ((headerFlags & FLAG_EXTRA) != 0) {
+            headerFlags &= ~FLAG_EXTRA;
+            state = State.GZIP_EXTRA_LENGTH;
+        } else if ((headerFlags & FLAG_NAME) != 0) {
+            headerFlags &= ~FLAG_NAME;
+            state = State.GZIP_NAME;
+        } else if ((headerFlags & FLAG_COMMENT) != 0) {
+            headerFlags &= ~FLAG_COMMENT;
+            state = State.GZIP_COMMENT;
+        } else if ((headerFlags & FLAG_HCRC) != 0) {
+            headerFlags &= ~FLAG_HCRC;
+            headerCount = 2;
+            state = State.GZIP_HEADER_CRC;
+        } else {
+            startInflating(true);
+        }
+    }
+
+    private void startInflating(boolean raw) {
+        inflater = new Inflater(raw);
+        output = new byte[OUTPUT_SIZE];
+        state = State.INFLATE;
+    }
+
+    private boolean inflate(byte[] bytes, int offset, int length, Sink sink) throws IOException {
+        inflater.setInput(bytes, offset, length);
+        try {
+            // A full output buffer can leave inflated bytes pending even when all
+            // input is used, so stop only once a call produces nothing.
+            while (true) {
+                int inflated = inflater.inflate(output);
+                if (inflated > 0 && !sink.accept(output, 0, inflated)) {
+                    return false;
+                }
+                if (inflater.finished()) {
+                    end();
+                    return true;
+                }
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("Compressed body needs a preset dictionary");
+                    }
+                    if (inflater.needsInput()) {
+                        return true;
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt " + encoding + " body: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.webcrawler.service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * What the crawler is willing to download: whether to ask for compressed
+ * bodies, which {@code Content-Type}s are worth reading, how many decoded
+ * bytes of a page are scanned, and which URL extensions are checked with a
+ * {@code HEAD} request before they are fetched. Immutable.
+ */
+public final class ContentPolicy {
+    public static final ContentPolicy DEFAULT = new ContentPolicy(true, 4L * 1024 * 1024, true, List.of());
+
+    private final boolean acceptCompression;
+    private final long maxBodyBytes;
+    private final boolean htmlOnly;
+    private final Set<String> headProbeExtensions;
+
+    /**
+     * @param maxBodyBytes        decoded bytes of a page that are scanned; 0 for no limit
+     * @param htmlOnly            skip the body of a response that is not declared as HTML
+     * @param headProbeExtensions URL extensions (without the dot) probed with
+     *                            {@code HEAD} first; empty for no probing
+     */
+    public ContentPolicy(boolean acceptCompression, long maxBodyBytes, boolean htmlOnly,
+                         List<String> headProbeExtensions) {
+        this.acceptCompression = acceptCompression;
+        this.maxBodyBytes = Math.max(0, maxBodyBytes);
+        this.htmlOnly = htmlOnly;
+        this.headProbeExtensions = new HashSet<>();
+        for (String extension : headProbeExtensions) {
+            this.headProbeExtensions.add(extension.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    public boolean isAcceptCompression() {
+        return acceptCompression;
+    }
+
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * Whether a body with this {@code Content-Type} should be read. A missing
+     * type is read, as browsers sniff it; so is anything when the policy is
+     * not HTML-only.
+     */
+    public boolean accepts(String contentType) {
+        if (!htmlOnly || contentType == null) {
+            return true;
+        }
+        int end = contentType.indexOf(';');
+        String mediaType = (end < 0 ? contentType : contentType.substring(0, end)).trim();
+        return mediaType.isEmpty()
+                || mediaType.equalsIgnoreCase("text/html")
+                || mediaType.equalsIgnoreCase("application/xhtml+xml");
+    }
+
+    /**
+     * Whether the URL's last path segment has an extension that is probed
+     * with {@code HEAD} before the page is fetched.
+     */
+    public boolean needsHeadProbe(String url) {
+        if (headProbeExtensions.isEmpty()) {
+            return false;
+        }
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        int dot = url.lastIndexOf('.', end - 1);
+        if (dot < 0 || dot < url.lastIndexOf('/', end - 1)) {
+            return false;
+        }
+        return headProbeExtensions.contains(url.substring(dot + 1, end).toLowerCase(Locale.ROOT));
+    }
+}
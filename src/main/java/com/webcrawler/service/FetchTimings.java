@@ -0,0 +1,63 @@
+package com.webcrawler.service;
+
+import com.webcrawler.model.CrawlTimings;
+
+/**
+ * Timestamps taken while one request is in progress. The stages are marked by
+ * whichever thread is driving the request at the time; each mark happens
+ * before the response is handed on, so no further synchronisation is needed.
+ */
+public class FetchTimings {
+    private final long startNanos = System.nanoTime();
+    private long connectNanos = CrawlTimings.UNKNOWN;
+    private long firstByteAt;
+    private long parseNanos;
+    // The part of parseNanos spent while the body was still downloading
+    private long streamingParseNanos;
+    private long doneAt;
+
+    void connected() {
+        connectNanos = System.nanoTime() - startNanos;
+    }
+
+    void firstByte() {
+        firstByteAt = System.nanoTime();
+    }
+
+    void parsed(long nanos) {
+        parseNanos += nanos;
+        if (doneAt == 0) {
+            streamingParseNanos += nanos;
+        }
+    }
+
+    void done() {
+        doneAt = System.nanoTime();
+        if (firstByteAt == 0) {
+            firstByteAt = doneAt;
+        }
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    public long getFirstByteNanos() {
+        if (doneAt == 0) {
+            return CrawlTimings.UNKNOWN;
+        }
+        long sentAt = connectNanos == CrawlTimings.UNKNOWN ? startNanos : startNanos + connectNanos;
+        return firstByteAt - sentAt;
+    }
+
+    public long getDownloadNanos() {
+        if (doneAt == 0) {
+            return CrawlTimings.UNKNOWN;
+        }
+        return Math.max(0, doneAt - firstByteAt - streamingParseNanos);
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+}
@@ -0,0 +1,667 @@
+package com.webcrawler.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass, push-based HTML tokenizer working directly on response bytes.
+ * It recognises only the markup the crawler cares about ({@code <title>},
+ * {@code <a href>}, {@code <base href>} and {@code <meta>}) and reports it to a
+ * {@link Listener} as it goes, along with hashes of the words of visible text.
+ * Script and style bodies and comments are skipped.
+ * Memory use is bounded by small fixed buffers regardless of document size,
+ * and the document is never decoded into a {@code String}.
+ *
+ * Bytes are interpreted as an ASCII-compatible encoding; only the captured
+ * attribute values and title text are decoded, using the charset from the
+ * {@code Content-Type} header or, failing that, from a {@code <meta>} declaration.
+ */
+public class HtmlScanner {
+
+    /**
+     * Receives the elements of interest in document order
+     */
+    public interface Listener {
+        default void onTitle(String title) {}
+        default void onLink(String href) {}
+        default void onBase(String href) {}
+        default void onMetaRobots(String content) {}
+
+        /**
+         * Called for each word of visible text with a 64-bit hash of its
+         * lower-cased bytes. No string is created for the word.
+         */
+        default void onWord(long wordHash) {}
+    }
+
+    private static final int MAX_NAME_LENGTH = 16;
+    private static final int MAX_VALUE_LENGTH = 8192;
+    private static final int MAX_TITLE_LENGTH = 2048;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Tokenizer states
+    private static final int TEXT = 0;
+    private static final int TAG_OPEN = 1;
+    private static final int TAG_NAME = 2;
+    private static final int BEFORE_ATTR_NAME = 3;
+    private static final int ATTR_NAME = 4;
+    private static final int AFTER_ATTR_NAME = 5;
+    private static final int BEFORE_ATTR_VALUE = 6;
+    private static final int ATTR_VALUE_DOUBLE_QUOTED = 7;
+    private static final int ATTR_VALUE_SINGLE_QUOTED = 8;
+    private static final int ATTR_VALUE_UNQUOTED = 9;
+    private static final int MARKUP_DECLARATION = 10;
+    private static final int COMMENT = 11;
+    private static final int BOGUS = 12;
+    private static final int RAW_TEXT = 13;
+
+    // Tags the scanner reacts to
+    private static final int TAG_OTHER = 0;
+    private static final int TAG_A = 1;
+    private static final int TAG_BASE = 2;
+    private static final int TAG_META = 3;
+    private static final int TAG_TITLE = 4;
+    private static final int TAG_SCRIPT = 5;
+    private static final int TAG_STYLE = 6;
+
+    private static final byte[][] TAG_NAMES = {
+            null, bytes("a"), bytes("base"), bytes("meta"), bytes("title"), bytes("script"), bytes("style")
+    };
+
+    private static final byte[] HREF = bytes("href");
+    private static final byte[] NAME = bytes("name");
+    private static final byte[] CONTENT = bytes("content");
+    private static final byte[] CHARSET = bytes("charset");
+    private static final byte[] HTTP_EQUIV = bytes("http-equiv");
+
+    private final Listener listener;
+    private Charset charset;
+    private final boolean charsetFromHeader;
+
+    private int state = TEXT;
+    private final byte[] name = new byte[MAX_NAME_LENGTH];
+    private int nameLength;
+    private boolean endTag;
+    private int tagKind;
+
+    private final byte[] attrName = new byte[MAX_NAME_LENGTH];
+    private int attrNameLength;
+    private byte[] value = new byte[256];
+    private int valueLength;
+    private boolean valueOverflow;
+
+    private String href;
+    private String metaName;
+    private String metaContent;
+    private String metaCharset;
+    private String metaHttpEquiv;
+
+    private int rawTextKind;
+    private int endTagMatch;
+    private int dashes;
+
+    private final byte[] title = new byte[MAX_TITLE_LENGTH];
+    private int titleLength;
+    private long titleBytesSeen;
+    private boolean titleDone;
+    private boolean baseDone;
+    private boolean finished;
+    private long contentHash = FNV_OFFSET_BASIS;
+    private long wordHash = FNV_OFFSET_BASIS;
+    private int wordLength;
+
+    /**
+     * @param charset the charset announced by the server, or {@code null} to use
+     *                a {@code <meta>} declaration with UTF-8 as the fallback
+     */
+    public HtmlScanner(Listener listener, Charset charset) {
+        this.listener = listener;
+        this.charsetFromHeader = charset != null;
+        this.charset = charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    public void feed(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            feed(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            scan(buffer.get() & 0xFF);
+        }
+    }
+
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            scan(bytes[i] & 0xFF);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of every byte fed so far, used to recognise unchanged pages.
+     */
+    public long contentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Signals the end of the document, flushing an unterminated title.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (state == TEXT) {
+            endWord();
+        }
+        if (state == RAW_TEXT && rawTextKind == TAG_TITLE) {
+            emitTitle(0);
+        }
+    }
+
+    private void scan(int b) {
+        contentHash = (contentHash ^ b) * FNV_PRIME;
+        switch (state) {
+            case TEXT:
+                if (isWordByte(b)) {
+                    wordHash = (wordHash ^ toLower(b)) * FNV_PRIME;
+                    wordLength++;
+                } else {
+                    endWord();
+                    if (b == '<') {
+                        state = TAG_OPEN;
+                    }
+                }
+                break;
+
+            case TAG_OPEN:
+                if (isLetter(b)) {
+                    startTagName(false);
+                    appendName(b);
+                } else if (b == '/') {
+                    startTagName(true);
+                } else if (b == '!') {
+                    dashes = 0;
+                    state = MARKUP_DECLARATION;
+                } else if (b == '?') {
+                    state = BOGUS;
+                } else if (b != '<') {
+                    state = TEXT;
+                }
+                break;
+
+            case TAG_NAME:
+                if (isWhitespace(b) || b == '/') {
+                    tagKind = classifyTag();
+                    state = BEFORE_ATTR_NAME;
+                } else if (b == '>') {
+                    tagKind = classifyTag();
+                    emitTag();
+                } else {
+                    appendName(b);
+                }
+                break;
+
+            case BEFORE_ATTR_NAME:
+                if (b == '>') {
+                    emitTag();
+                } else if (!isWhitespace(b) && b != '/') {
+                    startAttribute(b);
+                }
+                break;
+
+            case ATTR_NAME:
+                if (isWhitespace(b)) {
+                    state = AFTER_ATTR_NAME;
+                } else if (b == '=') {
+                    state = BEFORE_ATTR_VALUE;
+                } else if (b == '>') {
+                    finishAttribute();
+                    emitTag();
+                } else if (b == '/') {
+                    finishAttribute();
+                    state = BEFORE_ATTR_NAME;
+                } else if (attrNameLength < MAX_NAME_LENGTH) {
+                    attrName[attrNameLength++] = (byte) toLower(b);
+                }
+                break;
+
+            case AFTER_ATTR_NAME:
+                if (b == '=') {
+                    state = BEFORE_ATTR_VALUE;
+                } else if (b == '>') {
+                    finishAttribute();
+                    emitTag();
+                } else if (b == '/') {
+                    finishAttribute();
+                    state = BEFORE_ATTR_NAME;
+                } else if (!isWhitespace(b)) {
+                    finishAttribute();
+                    startAttribute(b);
+                }
+                break;
+
+            case BEFORE_ATTR_VALUE:
+                if (b == '"') {
+                    state = ATTR_VALUE_DOUBLE_QUOTED;
+                } else if (b == '\'') {
+                    state = ATTR_VALUE_SINGLE_QUOTED;
+                } else if (b == '>') {
+                    finishAttribute();
+                    emitTag();
+                } else if (!isWhitespace(b)) {
+                    appendValue(b);
+                    state = ATTR_VALUE_UNQUOTED;
+                }
+                break;
+
+            case ATTR_VALUE_DOUBLE_QUOTED:
+                if (b == '"') {
+                    finishAttribute();
+                    state = BEFORE_ATTR_NAME;
+                } else {
+                    appendValue(b);
+                }
+                break;
+
+            case ATTR_VALUE_SINGLE_QUOTED:
+                if (b == '\'') {
+                    finishAttribute();
+                    state = BEFORE_ATTR_NAME;
+                } else {
+                    appendValue(b);
+                }
+                break;
+
+            case ATTR_VALUE_UNQUOTED:
+                if (isWhitespace(b)) {
+                    finishAttribute();
+                    state = BEFORE_ATTR_NAME;
+                } else if (b == '>') {
+                    finishAttribute();
+                    emitTag();
+                } else {
+                    appendValue(b);
+                }
+                break;
+
+            case MARKUP_DECLARATION:
+                if (b == '-') {
+                    if (++dashes == 2) {
+                        dashes = 0;
+                        state = COMMENT;
+                    }
+                } else {
+                    state = b == '>' ? TEXT : BOGUS;
+                }
+                break;
+
+            case COMMENT:
+                if (b == '-') {
+                    dashes++;
+                } else if (b == '>' && dashes >= 2) {
+                    state = TEXT;
+                } else {
+                    dashes = 0;
+                }
+                break;
+
+            case BOGUS:
+                if (b == '>') {
+                    state = TEXT;
+                }
+                break;
+
+            case RAW_TEXT:
+                scanRawText(b);
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown scanner state " + state);
+        }
+    }
+
+    /**
+     * Inside script, style and title everything is text until the matching
+     * end tag, which is recognised by matching "&lt;/name" incrementally.
+     */
+    private void scanRawText(int b) {
+        if (rawTextKind == TAG_TITLE) {
+            if (titleLength < MAX_TITLE_LENGTH) {
+                title[titleLength++] = (byte) b;
+            }
+            titleBytesSeen++;
+        }
+
+        byte[] target = TAG_NAMES[rawTextKind];
+        if (endTagMatch == 0) {
+            if (b == '<') {
+                endTagMatch = 1;
+            }
+        } else if (endTagMatch == 1) {
+            endTagMatch = b == '/' ? 2 : (b == '<' ? 1 : 0);
+        } else if (endTagMatch - 2 < target.length) {
+            if (toLower(b) == target[endTagMatch - 2]) {
+                endTagMatch++;
+            } else {
+                endTagMatch = b == '<' ? 1 : 0;
+            }
+        } else if (isWhitespace(b) || b == '/' || b == '>') {
+            if (rawTextKind == TAG_TITLE) {
+                // Drop "</title" plus the delimiter just appended
+                emitTitle(endTagMatch + 1);
+            }
+            rawTextKind = TAG_OTHER;
+            endTagMatch = 0;
+            state = b == '>' ? TEXT : BOGUS;
+        } else {
+            endTagMatch = b == '<' ? 1 : 0;
+        }
+    }
+
+    private void endWord() {
+        if (wordLength > 0) {
+            listener.onWord(wordHash);
+            wordHash = FNV_OFFSET_BASIS;
+            wordLength = 0;
+        }
+    }
+
+    private void startTagName(boolean end) {
+        endTag = end;
+        nameLength = 0;
+        tagKind = TAG_OTHER;
+        href = null;
+        metaName = null;
+        metaContent = null;
+        metaCharset = null;
+        metaHttpEquiv = null;
+        state = TAG_NAME;
+    }
+
+    private void appendName(int b) {
+        // Longer names are truncated; none of them can match a tag we recognise.
+        if (nameLength < MAX_NAME_LENGTH) {
+            name[nameLength++] = (byte) toLower(b);
+        }
+    }
+
+    private int classifyTag() {
+        if (endTag) {
+            return TAG_OTHER;
+        }
+        for (int kind = 1; kind < TAG_NAMES.length; kind++) {
+            if (matches(name, nameLength, TAG_NAMES[kind])) {
+                return kind;
+            }
+        }
+        return TAG_OTHER;
+    }
+
+    private void startAttribute(int b) {
+        attrNameLength = 0;
+        attrName[attrNameLength++] = (byte) toLower(b);
+        valueLength = 0;
+        valueOverflow = false;
+        state = ATTR_NAME;
+    }
+
+    private void appendValue(int b) {
+        if (tagKind != TAG_A && tagKind != TAG_BASE && tagKind != TAG_META) {
+            return;
+        }
+        if (valueLength == value.length) {
+            if (valueLength >= MAX_VALUE_LENGTH) {
+                valueOverflow = true;
+                return;
+            }
+            byte[] grown = new byte[Math.min(value.length * 2, MAX_VALUE_LENGTH)];
+            System.arraycopy(value, 0, grown, 0, valueLength);
+            value = grown;
+        }
+        value[valueLength++] = (byte) b;
+    }
+
+    private void finishAttribute() {
+        if (valueOverflow || attrNameLength == 0) {
+            attrNameLength = 0;
+            return;
+        }
+        switch (tagKind) {
+            case TAG_A:
+            case TAG_BASE:
+                if (href == null && matches(attrName, attrNameLength, HREF)) {
+                    href = decodeValue();
+                }
+                break;
+            case TAG_META:
+                if (matches(attrName, attrNameLength, NAME)) {
+                    metaName = decodeValue();
+                } else if (matches(attrName, attrNameLength, CONTENT)) {
+                    metaContent = decodeValue();
+                } else if (matches(attrName, attrNameLength, CHARSET)) {
+                    metaCharset = decodeValue();
+                } else if (matches(attrName, attrNameLength, HTTP_EQUIV)) {
+                    metaHttpEquiv = decodeValue();
+                }
+                break;
+            default:
+                break;
+        }
+        attrNameLength = 0;
+        valueLength = 0;
+    }
+
+    private void emitTag() {
+        state = TEXT;
+        switch (tagKind) {
+            case TAG_A:
+                if (href != null) {
+                    listener.onLink(href);
+                }
+                break;
+            case TAG_BASE:
+                if (href != null && !baseDone) {
+                    baseDone = true;
+                    listener.onBase(href);
+                }
+                break;
+            case TAG_META:
+                handleMeta();
+                break;
+            case TAG_TITLE:
+                if (!titleDone) {
+                    titleLength = 0;
+                    titleBytesSeen = 0;
+                    enterRawText(TAG_TITLE);
+                }
+                break;
+            case TAG_SCRIPT:
+            case TAG_STYLE:
+                enterRawText(tagKind);
+                break;
+            default:
+                break;
+        }
+        tagKind = TAG_OTHER;
+    }
+
+    private void enterRawText(int kind) {
+        rawTextKind = kind;
+        endTagMatch = 0;
+        state = RAW_TEXT;
+    }
+
+    private void handleMeta() {
+        if (metaName != null && metaName.equalsIgnoreCase("robots") && metaContent != null) {
+            listener.onMetaRobots(metaContent);
+        }
+        if (!charsetFromHeader) {
+            if (metaCharset != null) {
+                switchCharset(metaCharset);
+            } else if (metaHttpEquiv != null && metaHttpEquiv.equalsIgnoreCase("content-type")) {
+                String declared = charsetParameter(metaContent);
+                if (declared != null) {
+                    switchCharset(declared);
+                }
+            }
+        }
+    }
+
+    private void switchCharset(String charsetName) {
+        try {
+            charset = Charset.forName(charsetName.trim());
+        } catch (IllegalArgumentException e) {
+            // Unknown or malformed charset; keep the current one.
+        }
+    }
+
+    private void emitTitle(int trailingBytes) {
+        titleDone = true;
+        long keep = Math.max(0, titleBytesSeen - trailingBytes);
+        int length = (int) Math.min(titleLength, keep);
+        listener.onTitle(decodeEntities(new String(title, 0, length, charset)).trim());
+    }
+
+    private String decodeValue() {
+        return decodeEntities(new String(value, 0, valueLength, charset)).trim();
+    }
+
+    /**
+     * Extracts the {@code charset} parameter from a Content-Type value.
+     *
+     * @return the charset name, or {@code null} if none is present
+     */
+    public static String charsetParameter(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        String charsetName = contentType.substring(index + "charset=".length());
+        int end = charsetName.indexOf(';');
+        if (end >= 0) {
+            charsetName = charsetName.substring(0, end);
+        }
+        charsetName = charsetName.trim().replace("\"", "").replace("'", "");
+        return charsetName.isEmpty() ? null : charsetName;
+    }
+
+    /**
+     * Resolves the charset named in a Content-Type header, or {@code null} if it
+     * names none or one the JVM does not support.
+     */
+    public static Charset charsetOf(String contentType) {
+        String charsetName = charsetParameter(contentType);
+        if (charsetName == null) {
+            return null;
+        }
+        try {
+            return Charset.forName(charsetName);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the character references that commonly appear in URLs and titles.
+     */
+    static String decodeEntities(String text) {
+        int amp = text.indexOf('&');
+        if (amp < 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        sb.append(text, 0, amp);
+        int i = amp;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c != '&') {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            int semi = text.indexOf(';', i);
+            if (semi < 0 || semi - i > 10) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            String entity = text.substring(i + 1, semi);
+            int decoded = decodeEntity(entity);
+            if (decoded < 0) {
+                sb.append(c);
+                i++;
+            } else {
+                sb.appendCodePoint(decoded);
+                i = semi + 1;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int decodeEntity(String entity) {
+        switch (entity) {
+            case "amp": return '&';
+            case "lt": return '<';
+            case "gt": return '>';
+            case "quot": return '"';
+            case "apos": return '\'';
+            case "nbsp": return ' ';
+            default:
+                break;
+        }
+        if (entity.length() > 1 && entity.charAt(0) == '#') {
+            try {
+                int codePoint = entity.charAt(1) == 'x' || entity.charAt(1) == 'X'
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static boolean matches(byte[] buffer, int length, byte[] target) {
+        if (length != target.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] != target[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(int b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    /**
+     * Letters, digits and any non-ASCII byte (part of a multi-byte character).
+     */
+    private static boolean isWordByte(int b) {
+        return isLetter(b) || (b >= '0' && b <= '9') || b >= 0x80;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+    }
+
+    private static int toLower(int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+}
@@ -1,41 +1,318 @@
 package com.webcrawler.service;
 
-import java.io.BufferedReader;
+import com.webcrawler.config.FetchMode;
+
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Simple HTTP client for fetching web pages and extracting links
+ * Simple HTTP client for fetching web pages and extracting links.
+ * Response bodies are streamed through an {@link HtmlScanner} as they arrive,
+ * so the page is parsed in one pass without materialising the document.
+ * A {@link ContentPolicy} decides what is downloaded at all: compressed
+ * bodies are inflated on the fly, bodies that are not HTML are abandoned
+ * after the headers, and pages are cut off at a maximum size.
+ * In {@link FetchMode#ASYNC} it is backed by a single JDK
+ * {@code java.net.http.HttpClient}, which pools keep-alive connections,
+ * negotiates HTTP/2 and completes requests without holding a thread per request.
  */
 public class HttpClient {
     private final String userAgent;
     private final int connectionTimeout;
     private final int readTimeout;
+    private final FetchMode fetchMode;
+    private final java.net.http.HttpClient asyncClient;
+    private final ExecutorService asyncExecutor;
+    private final ValidatorCache validatorCache;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final ContentPolicy contentPolicy;
 
-    private static final Pattern LINK_PATTERN = Pattern.compile(
-            "<a\\s+(?:[^>]*?\\s+)?href\\s*=\\s*[\"']([^\"']*)[\"']",
-            Pattern.CASE_INSENSITIVE
-    );
-    private static final Pattern TITLE_PATTERN = Pattern.compile(
-            "<title>\\s*(.*?)\\s*</title>",
-            Pattern.CASE_INSENSITIVE | Pattern.DOTALL
-    );
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
 
     public HttpClient(String userAgent, int connectionTimeout, int readTimeout) {
+        this(userAgent, connectionTimeout, readTimeout, FetchMode.BLOCKING);
+    }
+
+    public HttpClient(String userAgent, int connectionTimeout, int readTimeout, FetchMode fetchMode) {
+        this(userAgent, connectionTimeout, readTimeout, fetchMode, null);
+    }
+
+    /**
+     * @param validatorCache when not {@code null}, requests are made conditional on
+     *                       the validators from the previous crawl, and a 304 is
+     *                       answered with the title and links cached back then
+     */
+    public HttpClient(String userAgent, int connectionTimeout, int readTimeout, FetchMode fetchMode,
+                      ValidatorCache validatorCache) {
+        this(userAgent, connectionTimeout, readTimeout, fetchMode, validatorCache, UrlCanonicalizer.getDefault());
+    }
+
+    /**
+     * @param urlCanonicalizer resolves and canonicalizes the links of fetched pages
+     */
+    public HttpClient(String userAgent, int connectionTimeout, int readTimeout, FetchMode fetchMode,
+                      ValidatorCache validatorCache, UrlCanonicalizer urlCanonicalizer) {
+        this(userAgent, connectionTimeout, readTimeout, fetchMode, validatorCache, urlCanonicalizer,
+                ContentPolicy.DEFAULT);
+    }
+
+    /**
+     * @param contentPolicy compression, content types, body size and HEAD probing for pages
+     */
+    public HttpClient(String userAgent, int connectionTimeout, int readTimeout, FetchMode fetchMode,
+                      ValidatorCache validatorCache, UrlCanonicalizer urlCanonicalizer, ContentPolicy contentPolicy) {
         this.userAgent = userAgent;
+        this.contentPolicy = contentPolicy;
+        this.validatorCache = validatorCache;
+        this.urlCanonicalizer = urlCanonicalizer;
         this.connectionTimeout = connectionTimeout;
         this.readTimeout = readTimeout;
+        this.fetchMode = fetchMode;
+
+        if (fetchMode == FetchMode.ASYNC) {
+            // Completion callbacks run here; the transport itself is non-blocking,
+            // so a handful of threads can drive hundreds of in-flight requests.
+            AtomicInteger threadIds = new AtomicInteger();
+            this.asyncExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), r -> {
+                        Thread thread = new Thread(r, "http-async-" + threadIds.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.asyncClient = java.net.http.HttpClient.newBuilder()
+                    .version(java.net.http.HttpClient.Version.HTTP_2)
+                    .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+                    .connectTimeout(Duration.ofMillis(connectionTimeout))
+                    .executor(asyncExecutor)
+                    .build();
+        } else {
+            this.asyncExecutor = null;
+            this.asyncClient = null;
+        }
+    }
+
+    public FetchMode getFetchMode() {
+        return fetchMode;
     }
 
     public HttpResponse fetchPage(String urlString) throws IOException {
+        if (fetchMode == FetchMode.ASYNC) {
+            try {
+                return fetchPageAsync(urlString).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        return fetchBlocking(urlString, false);
+    }
+
+    /**
+     * Fetches a page without blocking the caller. In {@link FetchMode#BLOCKING}
+     * the fetch runs on the calling thread and an already-completed future is returned.
+     */
+    public CompletableFuture<HttpResponse> fetchPageAsync(String urlString) {
+        return fetchPageAsync(urlString, false);
+    }
+
+    /**
+     * Like {@link #fetchPage(String)}, but the decoded body (up to the size cap)
+     * is kept instead of scanned. {@link #parse(HttpResponse)} scans it later,
+     * usually on another thread, so downloading and parsing can be sized apart.
+     */
+    public HttpResponse fetchUnparsed(String urlString) throws IOException {
+        if (fetchMode == FetchMode.ASYNC) {
+            try {
+                return fetchUnparsedAsync(urlString).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        return fetchBlocking(urlString, true);
+    }
+
+    /**
+     * The non-blocking form of {@link #fetchUnparsed(String)}.
+     */
+    public CompletableFuture<HttpResponse> fetchUnparsedAsync(String urlString) {
+        return fetchPageAsync(urlString, true);
+    }
+
+    /**
+     * Scans the body kept by {@link #fetchUnparsed(String)} and returns the
+     * response with its page, as {@link #fetchPage(String)} would have. A
+     * response that needs no scanning is returned as it is.
+     */
+    public HttpResponse parse(HttpResponse response) {
+        Unparsed unparsed = response.unparsed;
+        if (unparsed == null) {
+            return response;
+        }
+        unparsed.body.scanBuffered();
+        return toResponse(unparsed.url, unparsed.cached, response.getStatusCode(), unparsed.body,
+                response.getTimings(), unparsed.etag, unparsed.lastModified, response.getRetryAfter());
+    }
+
+    private CompletableFuture<HttpResponse> fetchPageAsync(String urlString, boolean deferParsing) {
+        if (fetchMode != FetchMode.ASYNC) {
+            try {
+                return CompletableFuture.completedFuture(fetchBlocking(urlString, deferParsing));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        if (!contentPolicy.needsHeadProbe(urlString)) {
+            return fetchAsync(urlString, deferParsing);
+        }
+
+        // A failed probe proves nothing; the GET decides then.
+        FetchTimings probeTimings = new FetchTimings();
+        HttpRequest probe;
+        try {
+            probe = HttpRequest.newBuilder(URI.create(urlString))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .header("User-Agent", userAgent)
+                    .timeout(Duration.ofMillis((long) connectionTimeout + readTimeout))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new MalformedURLException(e.getMessage()));
+        }
+        return asyncClient.sendAsync(probe, java.net.http.HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> error != null ? null : response)
+                .thenCompose(response -> {
+                    String contentType = response == null
+                            ? null : response.headers().firstValue("Content-Type").orElse(null);
+                    if (response != null && isSuccess(response.statusCode()) && !contentPolicy.accepts(contentType)) {
+                        probeTimings.done();
+                        return CompletableFuture.completedFuture(HttpResponse.skipped(response.statusCode(),
+                                contentType, response.headers().firstValue("Retry-After").orElse(null),
+                                probeTimings));
+                    }
+                    return fetchAsync(urlString, deferParsing);
+                });
+    }
+
+    private CompletableFuture<HttpResponse> fetchAsync(String urlString, boolean deferParsing) {
+        ValidatorCache.Entry cached = cachedValidators(urlString);
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(urlString))
+                    .GET()
+                    .header("User-Agent", userAgent)
+                    .timeout(Duration.ofMillis((long) connectionTimeout + readTimeout));
+            if (contentPolicy.isAcceptCompression()) {
+                builder.header("Accept-Encoding", ACCEPT_ENCODING);
+            }
+            if (cached != null && cached.getEtag() != null) {
+                builder.header("If-None-Match", cached.getEtag());
+            }
+            if (cached != null && cached.getLastModified() != null) {
+                builder.header("If-Modified-Since", cached.getLastModified());
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new MalformedURLException(e.getMessage()));
+        }
+
+        // The pooled client does not report connection setup, so the connect
+        // time stays unknown and is part of the time to first byte.
+        FetchTimings timings = new FetchTimings();
+        // Only successful HTML responses are worth scanning. Other error bodies are
+        // discarded; a body of the wrong type is not downloaded at all.
+        BodyHandler<PageBody> bodyHandler = info -> {
+            timings.firstByte();
+            if (!isSuccess(info.statusCode())) {
+                return BodySubscribers.replacing(null);
+            }
+            String contentType = info.headers().firstValue("Content-Type").orElse(null);
+            if (!contentPolicy.accepts(contentType)) {
+                return new AbandoningSubscriber();
+            }
+            return new ScanningSubscriber(new PageBody(urlString, contentType,
+                    info.headers().firstValue("Content-Encoding").orElse(null), timings, deferParsing));
+        };
+
+        return asyncClient.sendAsync(request, bodyHandler).thenApply(response -> {
+            timings.done();
+            java.net.http.HttpHeaders headers = response.headers();
+            String retryAfter = headers.firstValue("Retry-After").orElse(null);
+            String contentType = headers.firstValue("Content-Type").orElse(null);
+            if (isSuccess(response.statusCode()) && !contentPolicy.accepts(contentType)) {
+                return HttpResponse.skipped(response.statusCode(), contentType, retryAfter, timings);
+            }
+            return toResponse(urlString, cached, response.statusCode(), response.body(), timings,
+                    headers.firstValue("ETag").orElse(null),
+                    headers.firstValue("Last-Modified").orElse(null),
+                    retryAfter);
+        });
+    }
+
+    /**
+     * Opens a plain GET for a resource that is not a page, such as robots.txt
+     * or a sitemap. This always uses a blocking connection, whatever the fetch
+     * mode, so it is safe to call from the async client's callback threads.
+     * The caller reads the body and closes the resource.
+     */
+    public Resource openResource(String urlString) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
+        try {
+            connection.setRequestMethod("GET");
+            connection.setRequestProperty("User-Agent", userAgent);
+            connection.setConnectTimeout(connectionTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setInstanceFollowRedirects(true);
+            int statusCode = connection.getResponseCode();
+            return new Resource(connection, statusCode,
+                    isSuccess(statusCode) ? connection.getInputStream() : null);
+        } catch (IOException | RuntimeException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    public void close() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+        }
+    }
+
+    private HttpResponse fetchBlocking(String urlString, boolean deferParsing) throws IOException {
+        if (contentPolicy.needsHeadProbe(urlString)) {
+            HttpResponse skipped = probeBlocking(urlString);
+            if (skipped != null) {
+                return skipped;
+            }
+        }
         URL url = new URL(urlString);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
 
@@ -45,79 +322,537 @@ public class HttpClient {
             connection.setConnectTimeout(connectionTimeout);
             connection.setReadTimeout(readTimeout);
             connection.setInstanceFollowRedirects(true);
+            if (contentPolicy.isAcceptCompression()) {
+                connection.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+            }
 
+            ValidatorCache.Entry cached = cachedValidators(urlString);
+            if (cached != null && cached.getEtag() != null) {
+                connection.setRequestProperty("If-None-Match", cached.getEtag());
+            }
+            if (cached != null && cached.getLastModified() != null) {
+                connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+            }
+
+            FetchTimings timings = new FetchTimings();
+            connection.connect();
+            timings.connected();
             int statusCode = connection.getResponseCode();
-            String content = "";
+            timings.firstByte();
+            PageBody body = null;
 
-            if (statusCode >= 200 && statusCode < 300) {
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                    content = reader.lines().collect(Collectors.joining("\n"));
+            if (isSuccess(statusCode)) {
+                String contentType = connection.getContentType();
+                if (!contentPolicy.accepts(contentType)) {
+                    // Disconnecting without reading drops the rest of the body.
+                    timings.done();
+                    return HttpResponse.skipped(statusCode, contentType, connection.getHeaderField("Retry-After"),
+                            timings);
                 }
+                body = new PageBody(urlString, contentType, connection.getContentEncoding(), timings, deferParsing);
+                try (InputStream in = connection.getInputStream()) {
+                    byte[] buffer = new byte[READ_BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        if (!body.feed(buffer, 0, read)) {
+                            // Truncated: close the socket rather than drain what is left.
+                            connection.disconnect();
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    if (!body.isTruncated()) {
+                        throw e;
+                    }
+                }
+                body.finish();
             }
-            return new HttpResponse(statusCode, content);
+            timings.done();
+            return toResponse(urlString, cached, statusCode, body, timings,
+                    connection.getHeaderField("ETag"),
+                    connection.getHeaderField("Last-Modified"),
+                    connection.getHeaderField("Retry-After"));
         } finally {
             connection.disconnect();
         }
     }
 
-    public String extractTitle(String html) {
-        Matcher matcher = TITLE_PATTERN.matcher(html);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    /**
+     * Sends a {@code HEAD} for the URL and returns a skipped response if it
+     * declares a type the policy does not read, or {@code null} to go on with the GET.
+     */
+    private HttpResponse probeBlocking(String urlString) throws IOException {
+        FetchTimings timings = new FetchTimings();
+        HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
+        try {
+            connection.setRequestMethod("HEAD");
+            connection.setRequestProperty("User-Agent", userAgent);
+            connection.setConnectTimeout(connectionTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setInstanceFollowRedirects(true);
+            connection.connect();
+            timings.connected();
+            int statusCode = connection.getResponseCode();
+            timings.done();
+            String contentType = connection.getContentType();
+            if (isSuccess(statusCode) && !contentPolicy.accepts(contentType)) {
+                return HttpResponse.skipped(statusCode, contentType, connection.getHeaderField("Retry-After"),
+                        timings);
+            }
+            return null;
+        } catch (IOException e) {
+            // A failed probe proves nothing; the GET decides.
+            return null;
+        } finally {
+            connection.disconnect();
         }
-        return "No Title Found";
     }
 
-    public List<String> extractLinks(String html, String baseUrl) {
-        List<String> links = new ArrayList<>();
-        Matcher matcher = LINK_PATTERN.matcher(html);
+    private ValidatorCache.Entry cachedValidators(String url) {
+        return validatorCache == null ? null : validatorCache.get(url);
+    }
+
+    /**
+     * Turns a 304 into the page cached from the previous crawl, and records the
+     * validators of a fresh 2xx page for the next one. A 2xx whose body hashes
+     * the same as last time is also reported as unchanged.
+     */
+    private HttpResponse toResponse(String url, ValidatorCache.Entry cached, int statusCode, PageBody body,
+                                    FetchTimings timings, String etag, String lastModified, String retryAfter) {
+        if (statusCode == 304 && cached != null) {
+            ParsedPage previous = new ParsedPage(cached.getTitle(), cached.getLinks(), false, false,
+                    cached.getContentHash(), SimHash.NONE);
+            return new HttpResponse(statusCode, previous, retryAfter, true, timings);
+        }
+        Transfer transfer = body == null ? Transfer.NONE : body.transfer();
+        if (body != null && body.getPage() == null) {
+            // Not scanned yet; parse(HttpResponse) finishes the job.
+            return new HttpResponse(statusCode, ParsedPage.EMPTY, retryAfter, false, timings, transfer, null,
+                    new Unparsed(url, cached, etag, lastModified, body));
+        }
+        ParsedPage page = body == null ? ParsedPage.EMPTY : body.getPage();
+        if (!isSuccess(statusCode) || validatorCache == null) {
+            return new HttpResponse(statusCode, page, retryAfter, false, timings, transfer);
+        }
 
-        while (matcher.find()) {
-            String link = matcher.group(1);
-            resolveUrl(link, baseUrl).ifPresent(links::add);
+        boolean unchanged = cached != null && cached.getContentHash() == page.getContentHash();
+        // Pages carrying robots restrictions are not cached, nor are truncated ones, so a
+        // reused entry never needs them.
+        if (!page.isNoIndex() && !page.isNoFollow() && !transfer.isTruncated()) {
+            validatorCache.put(url, new ValidatorCache.Entry(etag, lastModified, page.getContentHash(),
+                    page.getTitle(), page.getLinks()));
         }
-        return links;
+        return new HttpResponse(statusCode, page, retryAfter, unchanged, timings, transfer);
     }
 
-    private java.util.Optional<String> resolveUrl(String link, String baseUrl) {
-        try {
-            link = link.trim();
-            if (link.isEmpty() || link.startsWith("#") || link.startsWith("mailto:") || link.startsWith("javascript:")) {
-                return java.util.Optional.empty();
+    public String extractTitle(String html) {
+        return parse(html, null).getTitle();
+    }
+
+    public List<String> extractLinks(String html, String baseUrl) {
+        return parse(html, baseUrl).getLinks();
+    }
+
+    /**
+     * Scans an in-memory document. Fetched pages are scanned while streaming
+     * instead; this is for callers that already hold the HTML.
+     */
+    public ParsedPage parse(String html, String pageUrl) {
+        ParsedPage.Collector collector = new ParsedPage.Collector(pageUrl, urlCanonicalizer);
+        HtmlScanner scanner = new HtmlScanner(collector, StandardCharsets.UTF_8);
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        scanner.feed(bytes, 0, bytes.length);
+        scanner.finish();
+        return collector.build(scanner.contentHash());
+    }
+
+    /**
+     * Resolves a link against a page URL with the default canonicalizer.
+     */
+    static Optional<String> resolveUrl(String link, String baseUrl) {
+        return Optional.ofNullable(UrlCanonicalizer.getDefault().resolve(link, baseUrl));
+    }
+
+    private static boolean isSuccess(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * A page body on its way through the content decoder and the scanner.
+     * Decoding counts as parse time. Once {@link ContentPolicy#getMaxBodyBytes()}
+     * decoded bytes have been scanned the page is truncated and the rest of the
+     * body is not wanted. A deferred body keeps the decoded bytes instead, and
+     * {@link #scanBuffered()} scans them later.
+     */
+    private final class PageBody {
+        private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+        private final ParsedPage.Collector collector;
+        private final HtmlScanner scanner;
+        private final ContentDecoder decoder;
+        private final FetchTimings timings;
+        private final boolean deferred;
+        private final ContentDecoder.Sink sink = this::scan;
+        private byte[] copyBuffer;
+        private byte[] buffered;
+        private long wireBytes;
+        private long bodyBytes;
+        private boolean truncated;
+        private ParsedPage page;
+
+        PageBody(String url, String contentType, String contentEncoding, FetchTimings timings, boolean deferred) {
+            this.collector = new ParsedPage.Collector(url, urlCanonicalizer);
+            this.scanner = new HtmlScanner(collector, HtmlScanner.charsetOf(contentType));
+            this.decoder = ContentDecoder.forEncoding(contentEncoding);
+            this.timings = timings;
+            this.deferred = deferred;
+        }
+
+        /**
+         * @return false once the page is truncated
+         */
+        boolean feed(byte[] bytes, int offset, int length) throws IOException {
+            wireBytes += length;
+            long scanStart = System.nanoTime();
+            try {
+                return decoder.feed(bytes, offset, length, sink) && !truncated;
+            } finally {
+                timings.parsed(System.nanoTime() - scanStart);
             }
+        }
 
-            URL base = new URL(baseUrl);
-            URL resolved = new URL(base, link);
-            String urlString = resolved.toString();
+        boolean feed(ByteBuffer buffer) throws IOException {
+            if (buffer.hasArray()) {
+                int length = buffer.remaining();
+                int offset = buffer.arrayOffset() + buffer.position();
+                buffer.position(buffer.limit());
+                return feed(buffer.array(), offset, length);
+            }
+            if (copyBuffer == null) {
+                copyBuffer = new byte[READ_BUFFER_SIZE];
+            }
+            while (buffer.hasRemaining()) {
+                int length = Math.min(copyBuffer.length, buffer.remaining());
+                buffer.get(copyBuffer, 0, length);
+                if (!feed(copyBuffer, 0, length)) {
+                    return false;
+                }
+            }
+            return true;
+        }
 
-            // Remove fragment identifier
-            int fragmentIndex = urlString.indexOf('#');
-            if (fragmentIndex != -1) {
-                urlString = urlString.substring(0, fragmentIndex);
+        void finish() {
+            long scanStart = System.nanoTime();
+            decoder.end();
+            if (!deferred) {
+                scanner.finish();
+                page = collector.build(scanner.contentHash());
             }
+            timings.parsed(System.nanoTime() - scanStart);
+        }
+
+        void scanBuffered() {
+            long scanStart = System.nanoTime();
+            if (buffered != null) {
+                scanner.feed(buffered, 0, (int) bodyBytes);
+                buffered = null;
+            }
+            scanner.finish();
+            page = collector.build(scanner.contentHash());
+            timings.parsed(System.nanoTime() - scanStart);
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
 
-            if (urlString.startsWith("http://") || urlString.startsWith("https://")) {
-                return java.util.Optional.of(urlString);
+        ParsedPage getPage() {
+            return page;
+        }
+
+        Transfer transfer() {
+            return new Transfer(wireBytes, bodyBytes, truncated);
+        }
+
+        private boolean scan(byte[] bytes, int offset, int length) {
+            long max = contentPolicy.getMaxBodyBytes();
+            if (max > 0 && bodyBytes + length > max) {
+                length = (int) (max - bodyBytes);
+                truncated = true;
+            }
+            if (deferred) {
+                buffer(bytes, offset, length);
+            } else {
+                scanner.feed(bytes, offset, length);
+            }
+            bodyBytes += length;
+            return !truncated;
+        }
+
+        private void buffer(byte[] bytes, int offset, int length) {
+            int size = (int) bodyBytes;
+            if (buffered == null || buffered.length - size < length) {
+                int capacity = Math.max(INITIAL_BUFFER_SIZE, buffered == null ? 0 : buffered.length * 2);
+                buffered = Arrays.copyOf(buffered == null ? new byte[0] : buffered,
+                        Math.max(capacity, size + length));
+            }
+            System.arraycopy(bytes, offset, buffered, size, length);
+        }
+    }
+
+    /**
+     * Feeds the async client's body buffers straight into a {@link PageBody},
+     * requesting one batch at a time so nothing accumulates. A truncated page
+     * cancels the rest of the response.
+     */
+    private static class ScanningSubscriber implements BodySubscriber<PageBody> {
+        private final CompletableFuture<PageBody> result = new CompletableFuture<>();
+        private final PageBody body;
+        private Flow.Subscription subscription;
+
+        ScanningSubscriber(PageBody body) {
+            this.body = body;
+        }
+
+        @Override
+        public CompletionStage<PageBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    if (!body.feed(buffer)) {
+                        subscription.cancel();
+                        onComplete();
+                        return;
+                    }
+                }
+                subscription.request(1);
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                body.finish();
+                result.complete(body);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
             }
-            return java.util.Optional.empty();
-        } catch (MalformedURLException e) {
-            return java.util.Optional.empty();
         }
     }
 
+    /**
+     * Cancels the response as soon as the headers are in, for bodies the
+     * content policy does not read.
+     */
+    private static class AbandoningSubscriber implements BodySubscriber<PageBody> {
+        private final CompletableFuture<PageBody> result = new CompletableFuture<>();
+
+        @Override
+        public CompletionStage<PageBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+            result.complete(null);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.complete(null);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(null);
+        }
+    }
+
+    /**
+     * What {@link #parse(HttpResponse)} needs to finish a deferred response.
+     */
+    private static final class Unparsed {
+        private final String url;
+        private final ValidatorCache.Entry cached;
+        private final String etag;
+        private final String lastModified;
+        private final PageBody body;
+
+        Unparsed(String url, ValidatorCache.Entry cached, String etag, String lastModified, PageBody body) {
+            this.url = url;
+            this.cached = cached;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+
+    /**
+     * How much of a page body was moved and scanned.
+     */
+    public static final class Transfer {
+        public static final Transfer NONE = new Transfer(0, 0, false);
+
+        private final long wireBytes;
+        private final long bodyBytes;
+        private final boolean truncated;
+
+        public Transfer(long wireBytes, long bodyBytes, boolean truncated) {
+            this.wireBytes = wireBytes;
+            this.bodyBytes = bodyBytes;
+            this.truncated = truncated;
+        }
+
+        /** Body bytes received, before decompression. */
+        public long getWireBytes() { return wireBytes; }
+        /** Decoded bytes that were scanned. */
+        public long getBodyBytes() { return bodyBytes; }
+        /** True if the body was cut off at the maximum size. */
+        public boolean isTruncated() { return truncated; }
+    }
+
     public static class HttpResponse {
         private final int statusCode;
-        private final String content;
+        private final ParsedPage page;
+        private final String retryAfter;
+        private final boolean unchanged;
+        private final FetchTimings timings;
+        private final Transfer transfer;
+        private final String skippedContentType;
+        private final Unparsed unparsed;
+
+        public HttpResponse(int statusCode, ParsedPage page) {
+            this(statusCode, page, null, false, new FetchTimings());
+        }
+
+        public HttpResponse(int statusCode, ParsedPage page, String retryAfter, boolean unchanged,
+                            FetchTimings timings) {
+            this(statusCode, page, retryAfter, unchanged, timings, Transfer.NONE);
+        }
+
+        public HttpResponse(int statusCode, ParsedPage page, String retryAfter, boolean unchanged,
+                            FetchTimings timings, Transfer transfer) {
+            this(statusCode, page, retryAfter, unchanged, timings, transfer, null, null);
+        }
+
+        private HttpResponse(int statusCode, ParsedPage page, String retryAfter, boolean unchanged,
+                             FetchTimings timings, Transfer transfer, String skippedContentType, Unparsed unparsed) {
+            this.statusCode = statusCode;
+            this.page = page;
+            this.retryAfter = retryAfter;
+            this.unchanged = unchanged;
+            this.timings = timings;
+            this.transfer = transfer;
+            this.skippedContentType = skippedContentType;
+            this.unparsed = unparsed;
+        }
+
+        /**
+         * A successful response whose body was not read because of its type.
+         */
+        static HttpResponse skipped(int statusCode, String contentType, String retryAfter, FetchTimings timings) {
+            return new HttpResponse(statusCode, ParsedPage.EMPTY, retryAfter, false, timings, Transfer.NONE,
+                    contentType == null ? "" : contentType, null);
+        }
+
+        public int getStatusCode() { return statusCode; }
+        public ParsedPage getPage() { return page; }
+        public String getRetryAfter() { return retryAfter; }
+        public FetchTimings getTimings() { return timings; }
+        public Transfer getTransfer() { return transfer; }
+
+        /**
+         * True if the body was not downloaded because the content policy does
+         * not read its {@code Content-Type}.
+         */
+        public boolean isSkipped() { return skippedContentType != null; }
+
+        /**
+         * The {@code Content-Type} of a skipped response, or {@code null}.
+         */
+        public String getSkippedContentType() { return skippedContentType; }
+
+        /**
+         * False for a response from {@link HttpClient#fetchUnparsed(String)} whose
+         * body has yet to go through {@link HttpClient#parse(HttpResponse)}.
+         */
+        public boolean isParsed() { return unparsed == null; }
+
+        /**
+         * True if the page is the same as in the previous crawl, either because the
+         * server answered 304 or because the body hashes identically.
+         */
+        public boolean isUnchanged() { return unchanged; }
+
+        public boolean isNotModified() { return statusCode == 304 && unchanged; }
+        public boolean isSuccess() {
+            return HttpClient.isSuccess(statusCode);
+        }
+    }
+
+    /**
+     * An open response from {@link #openResource(String)}.
+     */
+    public static class Resource implements Closeable {
+        private final HttpURLConnection connection;
+        private final int statusCode;
+        private final InputStream body;
 
-        public HttpResponse(int statusCode, String content) {
+        Resource(HttpURLConnection connection, int statusCode, InputStream body) {
+            this.connection = connection;
             this.statusCode = statusCode;
-            this.content = content;
+            this.body = body;
         }
 
         public int getStatusCode() { return statusCode; }
-        public String getContent() { return content; }
+
+        /**
+         * The response body, or {@code null} unless the status is 2xx.
+         */
+        public InputStream getBody() { return body; }
+
         public boolean isSuccess() {
-            return statusCode >= 200 && statusCode < 300;
+            return HttpClient.isSuccess(statusCode);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (body != null) {
+                    body.close();
+                }
+            } finally {
+                connection.disconnect();
+            }
         }
     }
-}
\ No newline at end of file
+}
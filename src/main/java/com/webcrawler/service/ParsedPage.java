@@ -0,0 +1,125 @@
+package com.webcrawler.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the crawler keeps from a downloaded HTML page: its title, resolved
+ * outgoing links, the robots directives declared in {@code <meta>} and a
+ * SimHash of its visible text.
+ */
+public class ParsedPage {
+    public static final String NO_TITLE = "No Title Found";
+    public static final ParsedPage EMPTY = new ParsedPage(NO_TITLE, Collections.emptyList(), false, false, 0, SimHash.NONE);
+
+    private final String title;
+    private final List<String> links;
+    private final boolean noIndex;
+    private final boolean noFollow;
+    private final long contentHash;
+    private final long simHash;
+
+    public ParsedPage(String title, List<String> links, boolean noIndex, boolean noFollow,
+                      long contentHash, long simHash) {
+        this.title = title;
+        this.links = links;
+        this.noIndex = noIndex;
+        this.noFollow = noFollow;
+        this.contentHash = contentHash;
+        this.simHash = simHash;
+    }
+
+    public String getTitle() { return title; }
+    public List<String> getLinks() { return links; }
+    public boolean isNoIndex() { return noIndex; }
+    public boolean isNoFollow() { return noFollow; }
+    public long getContentHash() { return contentHash; }
+
+    /**
+     * SimHash of the visible text, or {@link SimHash#NONE} if the page has too little text.
+     */
+    public long getSimHash() { return simHash; }
+
+    /**
+     * Scanner listener that assembles a {@link ParsedPage}. Links are resolved
+     * once the document ends, against {@code <base href>} when one was declared.
+     */
+    public static class Collector implements HtmlScanner.Listener {
+        private final String pageUrl;
+        private final UrlCanonicalizer canonicalizer;
+        private final List<String> hrefs = new ArrayList<>();
+        private final SimHash simHash = new SimHash();
+        private String title = NO_TITLE;
+        private String baseHref;
+        private boolean noIndex;
+        private boolean noFollow;
+
+        public Collector(String pageUrl) {
+            this(pageUrl, UrlCanonicalizer.getDefault());
+        }
+
+        public Collector(String pageUrl, UrlCanonicalizer canonicalizer) {
+            this.pageUrl = pageUrl;
+            this.canonicalizer = canonicalizer;
+        }
+
+        @Override
+        public void onTitle(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public void onLink(String href) {
+            hrefs.add(href);
+        }
+
+        @Override
+        public void onWord(long wordHash) {
+            simHash.add(wordHash);
+        }
+
+        @Override
+        public void onBase(String href) {
+            baseHref = href;
+        }
+
+        @Override
+        public void onMetaRobots(String content) {
+            for (String directive : content.split(",")) {
+                switch (directive.trim().toLowerCase()) {
+                    case "noindex":
+                        noIndex = true;
+                        break;
+                    case "nofollow":
+                        noFollow = true;
+                        break;
+                    case "none":
+                        noIndex = true;
+                        noFollow = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        public ParsedPage build(long contentHash) {
+            String base = pageUrl;
+            if (baseHref != null) {
+                String resolved = canonicalizer.resolve(baseHref, pageUrl);
+                if (resolved != null) {
+                    base = resolved;
+                }
+            }
+            List<String> links = new ArrayList<>(hrefs.size());
+            for (String href : hrefs) {
+                String link = canonicalizer.resolve(href, base);
+                if (link != null) {
+                    links.add(link);
+                }
+            }
+            return new ParsedPage(title, links, noIndex, noFollow, contentHash, simHash.value());
+        }
+    }
+}
@@ -1,60 +1,274 @@
 package com.webcrawler.service;
 
-import java.util.concurrent.Semaphore;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Simple rate limiter using a Semaphore and a refill thread.
- * This ensures that permits are added at a fixed rate.
+ * Per-host rate limiter. Each host has its own time-based token bucket,
+ * implemented as a generic cell rate algorithm: the bucket is a single
+ * "theoretical arrival time" advanced with CAS, so there is no refill thread
+ * and no lock. A bucket holds up to one second of requests.
+ *
+ * Hosts that answer 429 or 503, fail, or slow down markedly have their request
+ * interval stretched (up to {@link #MAX_BACKOFF}x), and {@code Retry-After} is
+ * honored exactly: it sets a deadline no burst allowance can reach past. The
+ * interval relaxes back as the host recovers, but never below the host's
+ * robots.txt {@code Crawl-delay}. Because state is per host, a struggling host
+ * never uses up another host's budget.
+ *
+ * A bucket that has been idle for {@link #IDLE_BUCKET_NANOS} with nothing to
+ * remember beyond its host's {@code Crawl-delay} is dropped, so a broad crawl
+ * does not keep one per host it has ever seen. Crawl delays are kept apart and
+ * given to the host's next bucket.
  */
 public class RateLimiter {
-    private final Semaphore semaphore;
-    private final int maxPermits;
-    private final long intervalNanos;
-    private final Thread refillThread;
-    private volatile boolean shutdown = false;
+    static final int MAX_BACKOFF = 64;
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+    private static final double SLOW_LATENCY_FACTOR = 2.0;
+    private static final long MIN_SLOW_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // Longer Retry-After values are cut to this, which also keeps nanoTime() + delay from overflowing
+    static final long MAX_RETRY_AFTER_NANOS = TimeUnit.HOURS.toNanos(1);
+    static final long IDLE_BUCKET_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final long baseIntervalNanos;
+    private final int burst;
+    private final ConcurrentHashMap<String, HostBucket> buckets = new ConcurrentHashMap<>();
+    // Crawl-delay of each host that has one longer than the base interval
+    private final ConcurrentHashMap<String, Long> crawlDelays = new ConcurrentHashMap<>();
+    private final AtomicLong nextEvictionNanos = new AtomicLong(System.nanoTime() + IDLE_BUCKET_NANOS);
 
     public RateLimiter(int permitsPerSecond) {
         if (permitsPerSecond <= 0) {
             throw new IllegalArgumentException("Permits per second must be positive.");
         }
-        this.maxPermits = permitsPerSecond;
-        this.semaphore = new Semaphore(maxPermits);
-        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.baseIntervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.burst = permitsPerSecond;
+    }
+
+    /**
+     * Blocks until a request to the host is allowed and consumes the permit.
+     */
+    public void acquire(String host) throws InterruptedException {
+        long wait = bucket(host).reserve(System.nanoTime());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Consumes a permit for the host if one is available right now.
+     *
+     * @return 0 if the permit was taken, otherwise the nanoseconds until one
+     *         will be available (nothing is consumed in that case)
+     */
+    public long tryAcquire(String host) {
+        return bucket(host).tryReserve(System.nanoTime());
+    }
+
+    /**
+     * Feeds the outcome of a request back into the host's pacing.
+     *
+     * @param retryAfter the raw {@code Retry-After} header, or {@code null}
+     */
+    public void onResponse(String host, int statusCode, long latencyNanos, String retryAfter) {
+        HostBucket bucket = bucket(host);
+        long retryAfterNanos = parseRetryAfterNanos(retryAfter);
+        if (statusCode == 429 || statusCode == 503) {
+            bucket.backOff();
+        } else {
+            bucket.recordLatency(latencyNanos);
+        }
+        if (retryAfterNanos > 0) {
+            bucket.retryAfter(System.nanoTime() + retryAfterNanos);
+        }
+    }
 
-        this.refillThread = new Thread(this::refillTokens);
-        this.refillThread.setDaemon(true);
-        this.refillThread.start();
+    /**
+     * Treats a failed request (timeout, connection reset) like an overload signal.
+     */
+    public void onError(String host) {
+        bucket(host).backOff();
     }
 
-    public void acquire() throws InterruptedException {
-        semaphore.acquire();
+    /**
+     * Sets the smallest interval between requests to the host, as asked by
+     * robots.txt {@code Crawl-delay}. Backoff stretches from this interval, and
+     * a host with a delay longer than the base interval gets no burst.
+     */
+    public void setCrawlDelay(String host, long delayNanos) {
+        long floor = Math.max(baseIntervalNanos, delayNanos);
+        if (floor > baseIntervalNanos) {
+            crawlDelays.put(host, floor);
+        } else {
+            crawlDelays.remove(host);
+        }
+        HostBucket bucket = bucket(host);
+        bucket.floorIntervalNanos = floor;
+        bucket.intervalNanos.accumulateAndGet(floor, Math::max);
     }
 
-    public void shutdown() {
-        shutdown = true;
-        refillThread.interrupt();
+    /**
+     * Current request interval for the host, including any backoff.
+     */
+    public long currentIntervalNanos(String host) {
+        HostBucket bucket = buckets.get(host);
+        return bucket == null ? baseIntervalNanos : bucket.intervalNanos.get();
     }
 
-    private void refillTokens() {
-        long nextRefill = System.nanoTime();
-        while (!shutdown) {
-            try {
-                long now = System.nanoTime();
-                if (now < nextRefill) {
-                    TimeUnit.NANOSECONDS.sleep(nextRefill - now);
+    private HostBucket bucket(String host) {
+        HostBucket bucket = buckets.get(host);
+        if (bucket != null) {
+            return bucket;
+        }
+        evictIdleBuckets();
+        return buckets.computeIfAbsent(host, HostBucket::new);
+    }
+
+    /**
+     * Drops idle buckets, at most once per {@link #IDLE_BUCKET_NANOS}, from the
+     * path that creates buckets anyway.
+     */
+    private void evictIdleBuckets() {
+        long now = System.nanoTime();
+        long due = nextEvictionNanos.get();
+        if (now - due < 0 || !nextEvictionNanos.compareAndSet(due, now + IDLE_BUCKET_NANOS)) {
+            return;
+        }
+        for (String host : buckets.keySet()) {
+            buckets.computeIfPresent(host, (h, bucket) -> bucket.isIdle(now) ? null : bucket);
+        }
+    }
+
+    /**
+     * Parses {@code Retry-After} given either as delta-seconds or as an HTTP-date.
+     *
+     * @return the delay in nanoseconds, at most {@link #MAX_RETRY_AFTER_NANOS},
+     *         or 0 if absent or unparseable
+     */
+    static long parseRetryAfterNanos(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.min(MAX_RETRY_AFTER_NANOS, TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value))));
+        } catch (NumberFormatException e) {
+            // Not delta-seconds; try the date form below.
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            long millis = date.toInstant().toEpochMilli() - System.currentTimeMillis();
+            return Math.min(MAX_RETRY_AFTER_NANOS, TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis)));
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The later of two {@link System#nanoTime()} values.
+     */
+    private static long later(long a, long b) {
+        return a - b > 0 ? a : b;
+    }
+
+    private class HostBucket {
+        // Time at which the bucket would be empty again if no more requests arrived
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+        // No request before this time, whatever the burst allowance; set by Retry-After
+        private final AtomicLong notBefore = new AtomicLong(System.nanoTime());
+        private final AtomicLong intervalNanos;
+        private final AtomicLong latencyEwmaNanos = new AtomicLong();
+        private final AtomicLong baselineLatencyNanos = new AtomicLong(Long.MAX_VALUE);
+        // Crawl-delay, or the base interval if the host has none
+        private volatile long floorIntervalNanos;
+
+        HostBucket(String host) {
+            this.floorIntervalNanos = crawlDelays.getOrDefault(host, baseIntervalNanos);
+            this.intervalNanos = new AtomicLong(floorIntervalNanos);
+        }
+
+        long reserve(long now) {
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long interval = intervalNanos.get();
+                long allowedAt = later(tat - burstToleranceNanos(interval), notBefore.get());
+                long next = later(tat, now) + interval;
+                if (theoreticalArrival.compareAndSet(tat, next)) {
+                    return Math.max(0, allowedAt - now);
                 }
+            }
+        }
 
-                if (semaphore.availablePermits() < maxPermits) {
-                    semaphore.release();
+        long tryReserve(long now) {
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long interval = intervalNanos.get();
+                long wait = later(tat - burstToleranceNanos(interval), notBefore.get()) - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(tat, later(tat, now) + interval)) {
+                    return 0;
                 }
+            }
+        }
 
-                nextRefill += intervalNanos;
+        /**
+         * A backed-off host loses its burst allowance and is paced strictly.
+         */
+        private long burstToleranceNanos(long interval) {
+            return interval == baseIntervalNanos ? (burst - 1) * interval : 0;
+        }
+
+        void backOff() {
+            long floor = floorIntervalNanos;
+            long interval = intervalNanos.updateAndGet(
+                    current -> Math.min(current * 2, floor * MAX_BACKOFF));
+            blockUntil(System.nanoTime() + interval);
+        }
+
+        void blockUntil(long untilNanos) {
+            theoreticalArrival.accumulateAndGet(untilNanos, RateLimiter::later);
+        }
+
+        void retryAfter(long untilNanos) {
+            notBefore.accumulateAndGet(untilNanos, RateLimiter::later);
+            blockUntil(untilNanos);
+        }
+
+        /**
+         * Nothing to keep: unused for a while, no Retry-After pending and no
+         * backoff left beyond the host's Crawl-delay.
+         */
+        boolean isIdle(long now) {
+            return now - theoreticalArrival.get() > IDLE_BUCKET_NANOS && now - notBefore.get() > 0
+                    && intervalNanos.get() == floorIntervalNanos;
+        }
+
+        void recordLatency(long latencyNanos) {
+            if (latencyNanos <= 0) {
+                return;
+            }
+            long ewma = latencyEwmaNanos.updateAndGet(current -> current == 0
+                    ? latencyNanos
+                    : (long) (current + LATENCY_EWMA_WEIGHT * (latencyNanos - current)));
+            // The baseline follows the fastest recent latency but drifts up slowly,
+            // so a permanent change in network conditions is eventually accepted.
+            long baseline = baselineLatencyNanos.accumulateAndGet(ewma,
+                    (current, sample) -> current == Long.MAX_VALUE ? sample : Math.min(sample, current + current / 64));
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+            long floor = floorIntervalNanos;
+            if (ewma > MIN_SLOW_LATENCY_NANOS && ewma > baseline * SLOW_LATENCY_FACTOR) {
+                // Latency is climbing: ease off before the host starts refusing us.
+                intervalNanos.updateAndGet(current -> Math.min(current + current / 4, floor * MAX_BACKOFF));
+            } else {
+                // Healthy response: relax a quarter of the way back to the base rate.
+                intervalNanos.updateAndGet(current -> Math.max(floor, current - (current - floor + 3) / 4));
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,163 @@
+package com.webcrawler.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiled robots.txt rules per host. A host's robots.txt is fetched the
+ * first time one of its URLs is checked; callers checking the same host in
+ * the meantime wait for that one fetch. Entries expire after a TTL and the
+ * cache holds a bounded number of hosts, evicting the least recently used.
+ * The cache is split into independently locked stripes, so checks against
+ * different hosts rarely contend.
+ *
+ * As RFC 9309 asks, a 4xx means no restrictions, while a 5xx, a 429 or an
+ * unreachable server means everything is disallowed. Such failures are only
+ * cached for a minute, so the host is tried again soon.
+ */
+public class RobotsCache {
+    private static final int STRIPES = 16;
+    private static final int MAX_ROBOTS_BYTES = 512 * 1024;
+    private static final long FAILURE_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Told whenever a host's robots.txt has been (re)loaded.
+     */
+    public interface Listener {
+        void onLoaded(String scheme, String host, RobotsRules rules);
+    }
+
+    private final HttpClient httpClient;
+    private final String userAgent;
+    private final long ttlNanos;
+    private final Listener listener;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * @param maxHosts most hosts kept; older entries are evicted least recently used first
+     */
+    public RobotsCache(HttpClient httpClient, String userAgent, long ttlMs, int maxHosts, Listener listener) {
+        this.httpClient = httpClient;
+        this.userAgent = userAgent;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.listener = listener;
+        int perStripe = Math.max(1, (maxHosts + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Checks a canonical URL against its host's rules, fetching them first if
+     * they are not cached. May block for one robots.txt request.
+     *
+     * @param host the URL's authority, as from {@code CrawlTask.getHost()}
+     */
+    public boolean isAllowed(String url, String host) {
+        int authorityStart = url.indexOf("://") + 3;
+        int pathStart = url.indexOf('/', authorityStart);
+        String scheme = url.startsWith("https") ? "https" : "http";
+        return rulesFor(scheme, host).isAllowed(url, pathStart);
+    }
+
+    public RobotsRules rulesFor(String scheme, String host) {
+        Stripe stripe = stripes[(host.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        CachedRules entry;
+        boolean load = false;
+        synchronized (stripe) {
+            entry = stripe.get(host);
+            if (entry == null || (entry.rules.isDone() && System.nanoTime() - entry.expiresAt >= 0)) {
+                entry = new CachedRules();
+                stripe.put(host, entry);
+                load = true;
+            }
+        }
+        if (!load) {
+            return entry.rules.join();
+        }
+
+        RobotsRules rules = RobotsRules.DISALLOW_ALL;
+        long ttl = FAILURE_TTL_NANOS;
+        try {
+            rules = fetch(scheme, host);
+            ttl = ttlNanos;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot fetch robots.txt for " + host + ", treating it as disallowed: "
+                    + e.getMessage());
+        } finally {
+            entry.expiresAt = System.nanoTime() + ttl;
+            entry.rules.complete(rules);
+        }
+        if (listener != null) {
+            listener.onLoaded(scheme, host, rules);
+        }
+        return rules;
+    }
+
+    /**
+     * Number of hosts currently cached.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private RobotsRules fetch(String scheme, String host) throws IOException {
+        try (HttpClient.Resource resource = httpClient.openResource(scheme + "://" + host + "/robots.txt")) {
+            int status = resource.getStatusCode();
+            if (resource.isSuccess()) {
+                return RobotsRules.parse(readLimited(resource.getBody()), userAgent);
+            }
+            if (status >= 500 || status == 429) {
+                throw new IOException("HTTP " + status);
+            }
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+
+    /**
+     * Reads at most {@link #MAX_ROBOTS_BYTES}; anything after that is ignored.
+     */
+    private static String readLimited(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while (out.size() < MAX_ROBOTS_BYTES
+                && (read = in.read(buffer, 0, Math.min(buffer.length, MAX_ROBOTS_BYTES - out.size()))) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class CachedRules {
+        final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        volatile long expiresAt;
+    }
+
+    // Never serialized; it only borrows LinkedHashMap's access order and eviction hook
+    @SuppressWarnings("serial")
+    private static class Stripe extends LinkedHashMap<String, CachedRules> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedRules> eldest) {
+            return size() > capacity;
+        }
+    }
+}
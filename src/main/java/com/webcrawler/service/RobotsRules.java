@@ -0,0 +1,210 @@
+package com.webcrawler.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The robots.txt rules that apply to one user agent on one host, compiled
+ * for matching (RFC 9309). Rules are ordered most specific first, so the
+ * first rule that matches a path decides it: the longest pattern wins and
+ * {@code Allow} wins a tie. Patterns without wildcards are plain prefix
+ * checks; {@code *} and a trailing {@code $} are matched segment by segment
+ * without backtracking. Matching works on the canonical URL in place and
+ * does not allocate.
+ */
+public class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), -1, List.of());
+    public static final RobotsRules DISALLOW_ALL =
+            new RobotsRules(List.of(new Rule("/", false)), -1, List.of());
+
+    private static final String ROBOTS_PATH = "/robots.txt";
+
+    private final Rule[] rules;
+    private final long crawlDelayMillis;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMillis, List<String> sitemaps) {
+        List<Rule> sorted = new ArrayList<>(rules);
+        sorted.sort(Comparator.comparingInt((Rule rule) -> rule.pattern.length()).reversed()
+                .thenComparing(rule -> !rule.allow));
+        this.rules = sorted.toArray(new Rule[0]);
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.sitemaps = Collections.unmodifiableList(sitemaps);
+    }
+
+    /**
+     * Parses robots.txt and keeps the groups for the given user agent: those
+     * naming its product token (the part before {@code /}), or the {@code *}
+     * groups if none does. {@code Sitemap} lines apply to every agent.
+     */
+    public static RobotsRules parse(String content, String userAgent) {
+        String token = productToken(userAgent);
+        List<Group> groups = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        Group current = null;
+        boolean inAgentLines = false;
+
+        for (String rawLine : content.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (key.equals("user-agent")) {
+                // Consecutive user-agent lines share the group that follows them
+                if (current == null || !inAgentLines) {
+                    current = new Group();
+                    groups.add(current);
+                }
+                current.agents.add(value.toLowerCase(Locale.ROOT));
+                inAgentLines = true;
+                continue;
+            }
+            inAgentLines = false;
+
+            switch (key) {
+                case "allow":
+                case "disallow":
+                    if (current != null && (value.startsWith("/") || value.startsWith("*"))) {
+                        current.rules.add(new Rule(UrlCanonicalizer.normalizeEncoding(value), key.equals("allow")));
+                    }
+                    break;
+                case "crawl-delay":
+                    if (current != null) {
+                        try {
+                            current.crawlDelayMillis = Math.max(current.crawlDelayMillis,
+                                    (long) (Double.parseDouble(value) * 1000));
+                        } catch (NumberFormatException e) {
+                            // Ignore a malformed delay, as for any unknown line.
+                        }
+                    }
+                    break;
+                case "sitemap":
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        long crawlDelay = -1;
+        boolean matched = false;
+        for (String agent : new String[]{token, "*"}) {
+            for (Group group : groups) {
+                if (group.agents.contains(agent)) {
+                    rules.addAll(group.rules);
+                    crawlDelay = Math.max(crawlDelay, group.crawlDelayMillis);
+                    matched = true;
+                }
+            }
+            if (matched) {
+                break;
+            }
+        }
+        return new RobotsRules(rules, crawlDelay, sitemaps);
+    }
+
+    /**
+     * Checks a canonical URL against the rules.
+     *
+     * @param pathStart index of the path in the URL, just after the authority
+     */
+    public boolean isAllowed(String url, int pathStart) {
+        if (rules.length == 0) {
+            return true;
+        }
+        if (pathStart < 0 || pathStart >= url.length()) {
+            url = "/";
+            pathStart = 0;
+        }
+        if (url.length() - pathStart == ROBOTS_PATH.length() && url.startsWith(ROBOTS_PATH, pathStart)) {
+            return true;
+        }
+        for (Rule rule : rules) {
+            if (rule.matches(url, pathStart)) {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@code Crawl-delay} in milliseconds, or -1 if the group set none.
+     */
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    /**
+     * Sitemap URLs listed in the file, as written.
+     */
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    private static String productToken(String userAgent) {
+        int end = 0;
+        while (end < userAgent.length() && userAgent.charAt(end) != '/' && userAgent.charAt(end) != ' ') {
+            end++;
+        }
+        return userAgent.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static class Group {
+        final List<String> agents = new ArrayList<>();
+        final List<Rule> rules = new ArrayList<>();
+        long crawlDelayMillis = -1;
+    }
+
+    private static class Rule {
+        final String pattern;
+        final boolean allow;
+        // Literal pieces between '*'s; null for a plain prefix
+        final String[] parts;
+        final boolean anchored;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            this.parts = anchored || body.indexOf('*') >= 0 ? body.split("\\*", -1) : null;
+        }
+
+        boolean matches(String url, int from) {
+            if (parts == null) {
+                return url.startsWith(pattern, from);
+            }
+            if (!url.startsWith(parts[0], from)) {
+                return false;
+            }
+            int position = from + parts[0].length();
+            int last = parts.length - 1;
+            for (int i = 1; i <= last; i++) {
+                if (i == last && anchored) {
+                    return url.length() - parts[i].length() >= position && url.endsWith(parts[i]);
+                }
+                int found = url.indexOf(parts[i], position);
+                if (found < 0) {
+                    return false;
+                }
+                position = found + parts[i].length();
+            }
+            return !anchored || position == url.length();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.webcrawler.service;
+
+/**
+ * Incremental 64-bit SimHash (Charikar) over word hashes. Pages with similar
+ * text produce fingerprints that differ in only a few bits, so near-duplicates
+ * can be found by Hamming distance.
+ */
+public class SimHash {
+    /**
+     * Pages with fewer words carry too little signal to compare.
+     */
+    public static final int MIN_WORDS = 16;
+
+    /**
+     * Returned by {@link #value()} when fewer than {@link #MIN_WORDS} words were seen.
+     */
+    public static final long NONE = 0;
+
+    private final int[] weights = new int[64];
+    private int words;
+
+    public void add(long wordHash) {
+        // Spread the FNV hash so every bit position is equally informative.
+        long h = wordHash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((h >>> bit) & 1) != 0 ? 1 : -1;
+        }
+        words++;
+    }
+
+    public int words() {
+        return words;
+    }
+
+    public long value() {
+        if (words < MIN_WORDS) {
+            return NONE;
+        }
+        long value = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                value |= 1L << bit;
+            }
+        }
+        return value;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,77 @@
+package com.webcrawler.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Streams a sitemap or sitemap index with StAX, handing over each
+ * {@code <loc>} as it is read. Only the current element is held in memory,
+ * so a 50,000-URL sitemap costs no more than a small one. DTDs and external
+ * entities are disabled.
+ */
+public final class SitemapReader {
+
+    private SitemapReader() {
+    }
+
+    /**
+     * @param pages    receives the {@code <loc>} of each {@code <url>}; returning
+     *                 false stops reading
+     * @param sitemaps receives the {@code <loc>} of each {@code <sitemap>} in a
+     *                 sitemap index
+     * @return the number of page URLs handed over
+     */
+    public static int read(InputStream in, Predicate<String> pages, Consumer<String> sitemaps) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        int count = 0;
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(in);
+            boolean inSitemap = false;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (name.equals("url")) {
+                    inSitemap = false;
+                } else if (name.equals("sitemap")) {
+                    inSitemap = true;
+                } else if (name.equals("loc")) {
+                    String loc = reader.getElementText().trim();
+                    if (loc.isEmpty()) {
+                        continue;
+                    }
+                    if (inSitemap) {
+                        sitemaps.accept(loc);
+                    } else {
+                        count++;
+                        if (!pages.test(loc)) {
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed sitemap: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Nothing left to read; the caller closes the stream.
+                }
+            }
+        }
+        return count;
+    }
+}
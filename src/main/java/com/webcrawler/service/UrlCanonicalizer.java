@@ -0,0 +1,675 @@
+package com.webcrawler.service;
+
+import java.net.IDN;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resolves links and brings http(s) URLs into one canonical form, so that
+ * spellings of the same page are fingerprinted as the same URL:
+ * <ul>
+ *   <li>scheme and host are lower-cased, a trailing dot on the host is dropped
+ *       and default ports ({@code :80}, {@code :443}) are removed;</li>
+ *   <li>{@code .} and {@code ..} segments are removed and an empty path becomes {@code /};</li>
+ *   <li>percent-escapes are upper-cased, escaped unreserved characters are
+ *       decoded, and characters that may not appear raw are escaped as UTF-8;</li>
+ *   <li>tracking parameters are stripped, the remaining query parameters are
+ *       sorted, and the fragment is dropped.</li>
+ * </ul>
+ * The parser works on string offsets and one per-thread buffer, so a resolved
+ * link costs a single {@code String}. Instances are immutable and thread-safe.
+ */
+public class UrlCanonicalizer {
+
+    /**
+     * Parameters stripped by default. A trailing {@code *} matches any suffix.
+     */
+    public static final List<String> DEFAULT_TRACKING_PARAMETERS = List.of(
+            "utm_*", "gclid", "dclid", "gbraid", "wbraid", "fbclid", "msclkid", "yclid", "igshid",
+            "mc_cid", "mc_eid", "_ga", "_gl", "_hsenc", "_hsmi", "mkt_tok", "ref_src");
+
+    private static final UrlCanonicalizer DEFAULT = new UrlCanonicalizer(DEFAULT_TRACKING_PARAMETERS);
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // Offsets filled in by parse(); -1 marks an absent component.
+    private static final int SCHEME_END = 0;
+    private static final int AUTHORITY_START = 1;
+    private static final int AUTHORITY_END = 2;
+    private static final int PATH_START = 3;
+    private static final int PATH_END = 4;
+    private static final int QUERY_START = 5;
+    private static final int QUERY_END = 6;
+
+    // Characters copied unchanged: unreserved, sub-delims, ':', '@' and '/', plus '?' in queries
+    private static final boolean[] PATH_SAFE = new boolean[128];
+    private static final boolean[] QUERY_SAFE = new boolean[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            PATH_SAFE[c] = isUnreserved(c) || isSubDelim(c) || c == ':' || c == '@' || c == '/';
+            QUERY_SAFE[c] = PATH_SAFE[c] || c == '?';
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final String[] strippedNames;
+    private final String[] strippedPrefixes;
+
+    /**
+     * @param trackingParameters query parameter names to strip, matched
+     *                           case-insensitively; a trailing {@code *} makes
+     *                           the entry a prefix
+     */
+    public UrlCanonicalizer(List<String> trackingParameters) {
+        List<String> names = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String parameter : trackingParameters) {
+            String name = parameter.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                prefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        this.strippedNames = names.toArray(new String[0]);
+        this.strippedPrefixes = prefixes.toArray(new String[0]);
+    }
+
+    /**
+     * The canonicalizer with {@link #DEFAULT_TRACKING_PARAMETERS}.
+     */
+    public static UrlCanonicalizer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the canonical form of an absolute http(s) URL, or {@code null}
+     * if it is not one.
+     */
+    public String canonicalize(String url) {
+        return resolve(url, null);
+    }
+
+    /**
+     * Resolves a link found on a page against the page's base URL and returns
+     * the canonical result, or {@code null} for links that are not crawlable:
+     * empty or fragment-only hrefs, non-http(s) schemes such as
+     * {@code mailto:} and {@code javascript:}, and malformed URLs.
+     */
+    public String resolve(String href, String baseUrl) {
+        int start = 0;
+        int end = href.length();
+        while (start < end && href.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && href.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end || href.charAt(start) == '#') {
+            return null;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        int[] link = scratch.link;
+        parse(href, start, end, link);
+
+        String base = null;
+        int[] baseParts = null;
+        int baseStart = 0;
+        if (link[SCHEME_END] >= 0) {
+            if (!isHttpScheme(href, start, link[SCHEME_END]) || link[AUTHORITY_START] < 0) {
+                return null;
+            }
+        } else {
+            if (baseUrl == null) {
+                return null;
+            }
+            while (baseStart < baseUrl.length() && baseUrl.charAt(baseStart) <= ' ') {
+                baseStart++;
+            }
+            baseParts = scratch.base;
+            parse(baseUrl, baseStart, baseUrl.length(), baseParts);
+            if (baseParts[SCHEME_END] < 0 || baseParts[AUTHORITY_START] < 0
+                    || !isHttpScheme(baseUrl, baseStart, baseParts[SCHEME_END])) {
+                return null;
+            }
+            base = baseUrl;
+        }
+
+        StringBuilder out = scratch.buffer;
+        out.setLength(0);
+        if (base == null) {
+            appendLower(out, href, start, link[SCHEME_END]);
+        } else {
+            appendLower(out, base, baseStart, baseParts[SCHEME_END]);
+        }
+        boolean https = out.length() == 5;
+        out.append("://");
+
+        // Authority: from the link if it has one ("//host/..." or absolute), else from the base
+        String authoritySource = link[AUTHORITY_START] >= 0 ? href : base;
+        int[] authorityParts = link[AUTHORITY_START] >= 0 ? link : baseParts;
+        if (!appendAuthority(out, authoritySource, authorityParts[AUTHORITY_START],
+                authorityParts[AUTHORITY_END], https)) {
+            return null;
+        }
+
+        // Path and query, merged per RFC 3986 section 5.2.2
+        int pathOut = out.length();
+        boolean hrefHasPath = link[PATH_END] > link[PATH_START];
+        String querySource;
+        int queryStart;
+        int queryEnd;
+        if (link[AUTHORITY_START] >= 0 || base == null) {
+            appendPath(out, href, link[PATH_START], link[PATH_END]);
+            querySource = href;
+            queryStart = link[QUERY_START];
+            queryEnd = link[QUERY_END];
+        } else if (!hrefHasPath) {
+            appendPath(out, base, baseParts[PATH_START], baseParts[PATH_END]);
+            boolean hrefHasQuery = link[QUERY_START] >= 0;
+            querySource = hrefHasQuery ? href : base;
+            queryStart = hrefHasQuery ? link[QUERY_START] : baseParts[QUERY_START];
+            queryEnd = hrefHasQuery ? link[QUERY_END] : baseParts[QUERY_END];
+        } else {
+            char first = href.charAt(link[PATH_START]);
+            if (first != '/' && first != '\\') {
+                // Relative path: everything in the base path up to its last slash comes first
+                int dirEnd = baseParts[PATH_START];
+                for (int i = baseParts[PATH_END] - 1; i >= baseParts[PATH_START]; i--) {
+                    char c = base.charAt(i);
+                    if (c == '/' || c == '\\') {
+                        dirEnd = i + 1;
+                        break;
+                    }
+                }
+                if (dirEnd == baseParts[PATH_START]) {
+                    out.append('/');
+                } else {
+                    appendPath(out, base, baseParts[PATH_START], dirEnd);
+                }
+            }
+            appendPath(out, href, link[PATH_START], link[PATH_END]);
+            querySource = href;
+            queryStart = link[QUERY_START];
+            queryEnd = link[QUERY_END];
+        }
+        removeDotSegments(out, pathOut);
+        if (out.length() == pathOut) {
+            out.append('/');
+        }
+
+        if (queryStart >= 0) {
+            appendQuery(out, querySource, queryStart, queryEnd, scratch);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Applies the percent-encoding normalisation of paths and queries to a
+     * fragment of a URL, so that it can be compared with canonical URLs.
+     */
+    static String normalizeEncoding(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 8);
+        appendEncoded(out, value, 0, value.length(), QUERY_SAFE);
+        return out.toString();
+    }
+
+    /**
+     * Splits {@code s[start, end)} into components, ignoring any fragment.
+     */
+    private static void parse(String s, int start, int end, int[] parts) {
+        Arrays.fill(parts, -1);
+        int i = start;
+
+        // A scheme is a letter followed by letters, digits, '+', '-' or '.', then ':'
+        if (i < end && isAlpha(s.charAt(i))) {
+            int j = i + 1;
+            while (j < end && isSchemeChar(s.charAt(j))) {
+                j++;
+            }
+            if (j < end && s.charAt(j) == ':') {
+                parts[SCHEME_END] = j;
+                i = j + 1;
+            }
+        }
+
+        // Authority after "//"; http(s) also accepts backslashes here, as browsers do
+        if (i + 1 < end && isSlash(s.charAt(i)) && isSlash(s.charAt(i + 1))) {
+            int authorityStart = i + 2;
+            int j = authorityStart;
+            while (j < end) {
+                char c = s.charAt(j);
+                if (c == '/' || c == '\\' || c == '?' || c == '#') {
+                    break;
+                }
+                j++;
+            }
+            parts[AUTHORITY_START] = authorityStart;
+            parts[AUTHORITY_END] = j;
+            i = j;
+        }
+
+        parts[PATH_START] = i;
+        while (i < end && s.charAt(i) != '?' && s.charAt(i) != '#') {
+            i++;
+        }
+        parts[PATH_END] = i;
+
+        if (i < end && s.charAt(i) == '?') {
+            int queryStart = ++i;
+            while (i < end && s.charAt(i) != '#') {
+                i++;
+            }
+            parts[QUERY_START] = queryStart;
+            parts[QUERY_END] = i;
+        }
+    }
+
+    /**
+     * Appends {@code [userinfo@]host[:port]} with the host lower-cased and a
+     * default port dropped. Returns false if the authority is unusable.
+     */
+    private static boolean appendAuthority(StringBuilder out, String s, int start, int end, boolean https) {
+        int hostStart = start;
+        for (int i = end - 1; i >= start; i--) {
+            if (s.charAt(i) == '@') {
+                out.append(s, start, i + 1);
+                hostStart = i + 1;
+                break;
+            }
+        }
+
+        int hostEnd = end;
+        int portStart = -1;
+        if (hostStart < end && s.charAt(hostStart) == '[') {
+            int close = s.indexOf(']', hostStart);
+            if (close < 0 || close >= end) {
+                return false;
+            }
+            hostEnd = close + 1;
+            if (hostEnd < end) {
+                if (s.charAt(hostEnd) != ':') {
+                    return false;
+                }
+                portStart = hostEnd + 1;
+            }
+        } else {
+            for (int i = hostStart; i < end; i++) {
+                if (s.charAt(i) == ':') {
+                    hostEnd = i;
+                    portStart = i + 1;
+                    break;
+                }
+            }
+        }
+        if (hostEnd > hostStart && s.charAt(hostEnd - 1) == '.') {
+            hostEnd--;
+        }
+        if (hostEnd == hostStart) {
+            return false;
+        }
+
+        boolean ascii = true;
+        for (int i = hostStart; i < hostEnd; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+            } else if (c <= ' ' || c == '<' || c == '>' || c == '"' || c == '^' || c == '`'
+                    || c == '{' || c == '|' || c == '}' || c == '%') {
+                return false;
+            }
+        }
+        if (ascii) {
+            appendLower(out, s, hostStart, hostEnd);
+        } else {
+            try {
+                out.append(IDN.toASCII(s.substring(hostStart, hostEnd), IDN.ALLOW_UNASSIGNED)
+                        .toLowerCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        if (portStart >= 0 && portStart < end) {
+            int port = 0;
+            for (int i = portStart; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                port = port * 10 + (c - '0');
+                if (port > 65535) {
+                    return false;
+                }
+            }
+            if (port != (https ? 443 : 80)) {
+                out.append(':').append(port);
+            }
+        }
+        return true;
+    }
+
+    private static void appendPath(StringBuilder out, String s, int start, int end) {
+        appendEncoded(out, s, start, end, PATH_SAFE);
+    }
+
+    /**
+     * Copies runs of characters that need no attention in bulk and normalises
+     * the rest one at a time.
+     */
+    private static void appendEncoded(StringBuilder out, String s, int start, int end, boolean[] safe) {
+        int run = start;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80 && safe[c]) {
+                continue;
+            }
+            out.append(s, run, i);
+            if (c == '\\' && safe == PATH_SAFE) {
+                out.append('/');
+            } else {
+                i = appendNormalized(out, s, i, end, c);
+            }
+            run = i + 1;
+        }
+        out.append(s, run, end);
+    }
+
+    /**
+     * Copies the query with escapes normalised, drops empty and tracking
+     * parameters and sorts the rest. Nothing is appended if no parameter remains.
+     */
+    private void appendQuery(StringBuilder out, String s, int start, int end, Scratch scratch) {
+        int questionMark = out.length();
+        out.append('?');
+        int queryStart = out.length();
+        appendEncoded(out, s, start, end, QUERY_SAFE);
+        int queryEnd = out.length();
+
+        // Collect the parameters worth keeping as [start, end) pairs into the buffer
+        int[] bounds = scratch.bounds(queryEnd - queryStart + 1);
+        int count = 0;
+        int paramStart = queryStart;
+        for (int i = queryStart; i <= queryEnd; i++) {
+            if (i == queryEnd || out.charAt(i) == '&') {
+                if (i > paramStart && !isTrackingParameter(out, paramStart, i)) {
+                    bounds[2 * count] = paramStart;
+                    bounds[2 * count + 1] = i;
+                    count++;
+                }
+                paramStart = i + 1;
+            }
+        }
+        if (count == 0) {
+            out.setLength(questionMark);
+            return;
+        }
+
+        // Insertion sort; queries are short and usually nearly sorted already
+        for (int i = 1; i < count; i++) {
+            int keyStart = bounds[2 * i];
+            int keyEnd = bounds[2 * i + 1];
+            int j = i - 1;
+            while (j >= 0 && compare(out, bounds[2 * j], bounds[2 * j + 1], keyStart, keyEnd) > 0) {
+                bounds[2 * (j + 1)] = bounds[2 * j];
+                bounds[2 * (j + 1) + 1] = bounds[2 * j + 1];
+                j--;
+            }
+            bounds[2 * (j + 1)] = keyStart;
+            bounds[2 * (j + 1) + 1] = keyEnd;
+        }
+
+        char[] copy = scratch.chars(queryEnd - queryStart);
+        out.getChars(queryStart, queryEnd, copy, 0);
+        out.setLength(queryStart);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                out.append('&');
+            }
+            out.append(copy, bounds[2 * i] - queryStart, bounds[2 * i + 1] - bounds[2 * i]);
+        }
+    }
+
+    private boolean isTrackingParameter(CharSequence query, int start, int end) {
+        int nameEnd = start;
+        while (nameEnd < end && query.charAt(nameEnd) != '=') {
+            nameEnd++;
+        }
+        int length = nameEnd - start;
+        for (String prefix : strippedPrefixes) {
+            if (length >= prefix.length() && regionMatchesLower(query, start, prefix)) {
+                return true;
+            }
+        }
+        for (String name : strippedNames) {
+            if (name.length() == length && regionMatchesLower(query, start, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesLower(CharSequence s, int start, String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (toLower(s.charAt(start + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compare(CharSequence s, int aStart, int aEnd, int bStart, int bEnd) {
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            int diff = s.charAt(aStart + i) - s.charAt(bStart + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    /**
+     * Appends a character that cannot be copied as is: an escape (normalised),
+     * a tab or newline (dropped) or anything else (percent-encoded as UTF-8).
+     * Returns the index of the last input character consumed.
+     */
+    private static int appendNormalized(StringBuilder out, String s, int i, int end, char c) {
+        if (c == '%') {
+            if (i + 2 < end && hexValue(s.charAt(i + 1)) >= 0 && hexValue(s.charAt(i + 2)) >= 0) {
+                int value = hexValue(s.charAt(i + 1)) << 4 | hexValue(s.charAt(i + 2));
+                if (isUnreserved(value)) {
+                    out.append((char) value);
+                } else {
+                    out.append('%').append(HEX[value >> 4]).append(HEX[value & 0xF]);
+                }
+                return i + 2;
+            }
+            out.append("%25");
+            return i;
+        }
+        if (c == '\t' || c == '\n' || c == '\r') {
+            return i;
+        }
+        if (c < 0x80) {
+            appendEscaped(out, c);
+            return i;
+        }
+        // Non-ASCII: escape the UTF-8 encoding of the whole code point
+        int codePoint = c;
+        int consumed = i;
+        if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+            codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+            consumed = i + 1;
+        } else if (Character.isSurrogate(c)) {
+            codePoint = 0xFFFD;
+        }
+        if (codePoint < 0x800) {
+            appendEscaped(out, 0xC0 | codePoint >> 6);
+            appendEscaped(out, 0x80 | codePoint & 0x3F);
+        } else if (codePoint < 0x10000) {
+            appendEscaped(out, 0xE0 | codePoint >> 12);
+            appendEscaped(out, 0x80 | codePoint >> 6 & 0x3F);
+            appendEscaped(out, 0x80 | codePoint & 0x3F);
+        } else {
+            appendEscaped(out, 0xF0 | codePoint >> 18);
+            appendEscaped(out, 0x80 | codePoint >> 12 & 0x3F);
+            appendEscaped(out, 0x80 | codePoint >> 6 & 0x3F);
+            appendEscaped(out, 0x80 | codePoint & 0x3F);
+        }
+        return consumed;
+    }
+
+    private static void appendEscaped(StringBuilder out, int b) {
+        out.append('%').append(HEX[b >> 4 & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    /**
+     * RFC 3986 section 5.2.4, in place over {@code out[from, length)}. The
+     * output never runs ahead of the input, so one buffer suffices.
+     */
+    private static void removeDotSegments(StringBuilder out, int from) {
+        int end = out.length();
+        int in = from;
+        int write = from;
+        while (in < end) {
+            if (startsWith(out, in, end, "../")) {
+                in += 3;
+            } else if (startsWith(out, in, end, "./")) {
+                in += 2;
+            } else if (startsWith(out, in, end, "/./")) {
+                in += 2;
+            } else if (in + 2 == end && startsWith(out, in, end, "/.")) {
+                out.setCharAt(write++, '/');
+                in = end;
+            } else if (startsWith(out, in, end, "/../")) {
+                in += 3;
+                write = lastSegmentStart(out, from, write);
+            } else if (in + 3 == end && startsWith(out, in, end, "/..")) {
+                write = lastSegmentStart(out, from, write);
+                out.setCharAt(write++, '/');
+                in = end;
+            } else if ((in + 1 == end && out.charAt(in) == '.')
+                    || (in + 2 == end && out.charAt(in) == '.' && out.charAt(in + 1) == '.')) {
+                in = end;
+            } else {
+                // Move the first segment, with its leading slash, to the output
+                do {
+                    out.setCharAt(write++, out.charAt(in++));
+                } while (in < end && out.charAt(in) != '/');
+            }
+        }
+        out.setLength(write);
+    }
+
+    private static int lastSegmentStart(StringBuilder out, int from, int write) {
+        int i = write - 1;
+        while (i >= from && out.charAt(i) != '/') {
+            i--;
+        }
+        return Math.max(from, i);
+    }
+
+    private static boolean startsWith(StringBuilder s, int at, int end, String prefix) {
+        if (end - at < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(at + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHttpScheme(String s, int start, int end) {
+        int length = end - start;
+        if (length != 4 && length != 5) {
+            return false;
+        }
+        if (toLower(s.charAt(start)) != 'h' || toLower(s.charAt(start + 1)) != 't'
+                || toLower(s.charAt(start + 2)) != 't' || toLower(s.charAt(start + 3)) != 'p') {
+            return false;
+        }
+        return length == 4 || toLower(s.charAt(start + 4)) == 's';
+    }
+
+    private static void appendLower(StringBuilder out, String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            out.append(toLower(s.charAt(i)));
+        }
+    }
+
+    private static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSchemeChar(char c) {
+        return isAlpha(c) || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+    }
+
+    private static boolean isSlash(char c) {
+        return c == '/' || c == '\\';
+    }
+
+    private static boolean isUnreserved(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isSubDelim(char c) {
+        switch (c) {
+            case '!': case '$': case '&': case '\'': case '(': case ')':
+            case '*': case '+': case ',': case ';': case '=':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Per-thread buffers, so resolving a link allocates only its result.
+     */
+    private static final class Scratch {
+        final int[] link = new int[7];
+        final int[] base = new int[7];
+        final StringBuilder buffer = new StringBuilder(256);
+        private int[] bounds = new int[64];
+        private char[] chars = new char[256];
+
+        int[] bounds(int maxParameters) {
+            if (bounds.length < 2 * maxParameters) {
+                bounds = new int[2 * maxParameters];
+            }
+            return bounds;
+        }
+
+        char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            return chars;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.webcrawler.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of HTTP validators for conditional re-crawls. For each URL it
+ * remembers the {@code ETag}, {@code Last-Modified}, a hash of the body and
+ * what was extracted from it, so a {@code 304 Not Modified} can be answered
+ * from the previous crawl. Entries are kept in least-recently-used order and
+ * evicted once their estimated size exceeds the budget. The cache is loaded
+ * when created and written back by {@link #save()}.
+ */
+public class ValidatorCache {
+    private static final int MAGIC = 0x41564331; // "AVC1"
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final Path file;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private long totalBytes;
+
+    public ValidatorCache(Path file, long maxBytes) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        if (Files.exists(file)) {
+            load();
+        }
+    }
+
+    public synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    public synchronized void put(String url, Entry entry) {
+        Entry previous = entries.put(url, entry);
+        if (previous != null) {
+            totalBytes -= previous.estimatedBytes(url);
+        }
+        totalBytes += entry.estimatedBytes(url);
+        evict();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long estimatedBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Writes the cache to its file, replacing the previous contents atomically.
+     */
+    public synchronized void save() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            // Least recently used first, so reloading preserves the eviction order.
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                writeString(out, entry.etag);
+                writeString(out, entry.lastModified);
+                out.writeLong(entry.contentHash);
+                writeString(out, entry.title);
+                out.writeInt(entry.links.size());
+                for (String link : entry.links) {
+                    writeString(out, link);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a validator cache file: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String url = readString(in);
+                String etag = readString(in);
+                String lastModified = readString(in);
+                long contentHash = in.readLong();
+                String title = readString(in);
+                int linkCount = in.readInt();
+                List<String> links = new ArrayList<>(linkCount);
+                for (int j = 0; j < linkCount; j++) {
+                    links.add(readString(in));
+                }
+                put(url, new Entry(etag, lastModified, contentHash, title, links));
+            }
+        } catch (EOFException e) {
+            // Truncated file; keep what was read.
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> e = eldest.next();
+            totalBytes -= e.getValue().estimatedBytes(e.getKey());
+            eldest.remove();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Validators and extracted content of one previously fetched page
+     */
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final long contentHash;
+        private final String title;
+        private final List<String> links;
+
+        public Entry(String etag, String lastModified, long contentHash, String title, List<String> links) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.title = title;
+            this.links = links;
+        }
+
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        public long getContentHash() { return contentHash; }
+        public String getTitle() { return title; }
+        public List<String> getLinks() { return links; }
+
+        private long estimatedBytes(String url) {
+            long chars = url.length() + length(etag) + length(lastModified) + length(title);
+            for (String link : links) {
+                chars += link.length() + 16;
+            }
+            return ENTRY_OVERHEAD_BYTES + 2 * chars;
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+}
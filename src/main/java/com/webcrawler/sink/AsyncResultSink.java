@@ -0,0 +1,138 @@
+package com.webcrawler.sink;
+
+import com.webcrawler.model.CrawlResult;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams results to a {@link ResultWriter} on a background thread. Workers
+ * hand results over through a bounded queue and block when it is full, so a
+ * slow disk slows the crawl instead of growing the heap. The writer flushes
+ * after every batch, which keeps the file readable while the crawl runs.
+ */
+public class AsyncResultSink implements ResultSink {
+    private static final int MAX_BATCH = 512;
+    // How often a worker waiting for queue space checks whether the writer has failed
+    private static final long OFFER_TIMEOUT_MS = 100;
+    private static final CrawlResult STOP = new CrawlResult("", 0, "", List.of(), 0, 0);
+
+    private final ResultWriter writer;
+    private final BlockingQueue<CrawlResult> queue;
+    private final Thread writerThread;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    public AsyncResultSink(ResultWriter writer, int queueCapacity) {
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writerThread = new Thread(this::writeLoop, "result-sink-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public static AsyncResultSink jsonLines(Path file, boolean compress, int queueCapacity) throws IOException {
+        return new AsyncResultSink(new JsonLinesResultWriter(open(file, compress)), queueCapacity);
+    }
+
+    public static AsyncResultSink binary(Path file, boolean compress, int queueCapacity) throws IOException {
+        return new AsyncResultSink(new BinaryResultWriter(open(file, compress)), queueCapacity);
+    }
+
+    private static OutputStream open(Path file, boolean compress) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        // Sync-flush mode makes every flush() emit a complete deflate block for readers.
+        return compress ? new GZIPOutputStream(out, 64 * 1024, true) : out;
+    }
+
+    /**
+     * Queues the result, waiting while the queue is full.
+     *
+     * @throws UncheckedIOException  if the writer has failed, even while this call was waiting
+     * @throws IllegalStateException if the sink is closed, or the thread is interrupted
+     *                               before the result could be queued
+     */
+    @Override
+    public void accept(CrawlResult result) {
+        try {
+            while (true) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Result sink failed", failure);
+                }
+                if (closed) {
+                    throw new IllegalStateException("Result sink is closed");
+                }
+                if (queue.offer(result, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted before the result for " + result.getUrl() + " was queued");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                // The writer may already have stopped after a failure; don't wait on a full queue then.
+                while (writerThread.isAlive() && !queue.offer(STOP, 100, TimeUnit.MILLISECONDS)) {
+                    // Queue full; the writer is still draining it.
+                }
+                writerThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            System.err.println("Result sink failed: " + failure.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        List<CrawlResult> batch = new ArrayList<>(MAX_BATCH);
+        try (ResultWriter out = writer) {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (CrawlResult result : batch) {
+                    if (result == STOP) {
+                        return;
+                    }
+                    out.write(result);
+                }
+                batch.clear();
+                out.flush();
+            }
+        } catch (IOException e) {
+            failure = e;
+            // Workers waiting for queue space see the failure and give up; free the space anyway.
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.webcrawler.sink;
+
+import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlTimings;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads files produced by {@link BinaryResultWriter}. A record cut short
+ * (for example in a file still being written) ends the read.
+ */
+public class BinaryResultReader {
+
+    public static void read(Path file, Consumer<CrawlResult> consumer) throws IOException {
+        try (InputStream raw = Files.newInputStream(file)) {
+            InputStream in = new BufferedInputStream(raw);
+            in.mark(2);
+            boolean gzip = in.read() == 0x1f && in.read() == 0x8b;
+            in.reset();
+            read(gzip ? new GZIPInputStream(in) : in, consumer);
+        }
+    }
+
+    public static void read(InputStream stream, Consumer<CrawlResult> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != BinaryResultWriter.MAGIC) {
+            throw new IOException("Not a binary crawl result file");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > BinaryResultWriter.VERSION) {
+            throw new IOException("Unsupported binary crawl result version " + version);
+        }
+        while (true) {
+            CrawlResult result;
+            try {
+                int first = in.read();
+                if (first < 0) {
+                    return;
+                }
+                String url = readString(in, first);
+                String title = readString(in, in.readUnsignedByte());
+                int status = (int) readVarLong(in);
+                int depth = (int) readVarLong(in);
+                long crawlTimeMs = readVarLong(in);
+                int linkCount = (int) readVarLong(in);
+                List<String> links = new ArrayList<>(linkCount);
+                for (int i = 0; i < linkCount; i++) {
+                    links.add(readString(in, in.readUnsignedByte()));
+                }
+                String nearDuplicateOf = null;
+                if (version >= 2) {
+                    nearDuplicateOf = readString(in, in.readUnsignedByte());
+                    if (nearDuplicateOf.isEmpty()) {
+                        nearDuplicateOf = null;
+                    }
+                }
+                CrawlTimings timings = null;
+                if (version >= 3) {
+                    long[] stages = new long[6];
+                    boolean recorded = false;
+                    for (int i = 0; i < stages.length; i++) {
+                        long micros = readVarLong(in);
+                        recorded |= micros != 0;
+                        stages[i] = micros == 0 ? CrawlTimings.UNKNOWN : (micros - 1) * 1000;
+                    }
+                    if (recorded) {
+                        timings = new CrawlTimings(stages[0], stages[1], stages[2], stages[3], stages[4], stages[5]);
+                    }
+                }
+                result = new CrawlResult(url, status, title, links, crawlTimeMs, depth, nearDuplicateOf, timings);
+            } catch (EOFException e) {
+                return;
+            }
+            consumer.accept(result);
+        }
+    }
+
+    private static String readString(DataInputStream in, int firstByte) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in, firstByte)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        return readVarLong(in, in.readUnsignedByte());
+    }
+
+    private static long readVarLong(DataInputStream in, int firstByte) throws IOException {
+        long value = firstByte & 0x7F;
+        int shift = 7;
+        int b = firstByte;
+        while ((b & 0x80) != 0) {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
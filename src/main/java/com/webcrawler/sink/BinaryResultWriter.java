@@ -0,0 +1,88 @@
+package com.webcrawler.sink;
+
+import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlTimings;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary result format. After a 4-byte magic and a version byte, each
+ * record is: url, title, varint status, varint depth, varlong crawl time,
+ * varint link count, links, and (since version 2) the URL of the page it
+ * nearly duplicates, empty if none. Version 3 appends the six stage timings
+ * (queue wait, rate-limit wait, connect, first byte, download, parse) as
+ * varlongs of microseconds plus one, with 0 for a stage not recorded.
+ * Strings are varint length-prefixed UTF-8.
+ * Read it back with {@link BinaryResultReader}.
+ */
+public class BinaryResultWriter implements ResultWriter {
+    static final int MAGIC = 0x41524352; // "ARCR"
+    static final int VERSION = 3;
+
+    private final DataOutputStream out;
+
+    public BinaryResultWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    @Override
+    public void write(CrawlResult result) throws IOException {
+        writeString(result.getUrl());
+        writeString(result.getTitle() == null ? "" : result.getTitle());
+        writeVarLong(result.getStatusCode());
+        writeVarLong(result.getDepth());
+        writeVarLong(result.getCrawlTimeMs());
+        writeVarLong(result.getExtractedLinks().size());
+        for (String link : result.getExtractedLinks()) {
+            writeString(link);
+        }
+        writeString(result.getNearDuplicateOf() == null ? "" : result.getNearDuplicateOf());
+        CrawlTimings timings = result.getTimings();
+        if (timings == null) {
+            for (int i = 0; i < 6; i++) {
+                writeVarLong(0);
+            }
+        } else {
+            writeMicros(timings.getQueueWaitNanos());
+            writeMicros(timings.getRateLimitWaitNanos());
+            writeMicros(timings.getConnectNanos());
+            writeMicros(timings.getFirstByteNanos());
+            writeMicros(timings.getDownloadNanos());
+            writeMicros(timings.getParseNanos());
+        }
+    }
+
+    private void writeMicros(long nanos) throws IOException {
+        writeVarLong(nanos == CrawlTimings.UNKNOWN ? 0 : Math.max(0, nanos) / 1000 + 1);
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
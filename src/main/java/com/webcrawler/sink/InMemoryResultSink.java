@@ -0,0 +1,27 @@
+package com.webcrawler.sink;
+
+import com.webcrawler.model.CrawlResult;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps every result on the heap. Suitable for short crawls and tests;
+ * long crawls should stream to a file sink instead.
+ */
+public class InMemoryResultSink implements ResultSink {
+    private final ConcurrentLinkedQueue<CrawlResult> results = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void accept(CrawlResult result) {
+        results.add(result);
+    }
+
+    public List<CrawlResult> getResults() {
+        return List.copyOf(results);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,128 @@
+package com.webcrawler.sink;
+
+import com.webcrawler.model.CrawlResult;
+import com.webcrawler.model.CrawlTimings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes one JSON object per line:
+ * {@code {"url":..,"status":..,"title":..,"depth":..,"crawlTimeMs":..,"links":[..]}},
+ * plus {@code "nearDuplicateOf"} for pages recognised as near-duplicates and
+ * {@code "timingsMs":{"queueWait":..,"rateLimitWait":..,"connect":..,"firstByte":..,"download":..,"parse":..}}
+ * when stage timings were recorded ({@code null} for a stage that was not observed).
+ */
+public class JsonLinesResultWriter implements ResultWriter {
+    private final Writer out;
+
+    public JsonLinesResultWriter(OutputStream out) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    @Override
+    public void write(CrawlResult result) throws IOException {
+        out.write("{\"url\":");
+        writeString(result.getUrl());
+        out.write(",\"status\":");
+        out.write(Integer.toString(result.getStatusCode()));
+        out.write(",\"title\":");
+        writeString(result.getTitle());
+        out.write(",\"depth\":");
+        out.write(Integer.toString(result.getDepth()));
+        out.write(",\"crawlTimeMs\":");
+        out.write(Long.toString(result.getCrawlTimeMs()));
+        out.write(",\"links\":[");
+        boolean first = true;
+        for (String link : result.getExtractedLinks()) {
+            if (!first) {
+                out.write(',');
+            }
+            writeString(link);
+            first = false;
+        }
+        out.write(']');
+        if (result.getNearDuplicateOf() != null) {
+            out.write(",\"nearDuplicateOf\":");
+            writeString(result.getNearDuplicateOf());
+        }
+        CrawlTimings timings = result.getTimings();
+        if (timings != null) {
+            out.write(",\"timingsMs\":{\"queueWait\":");
+            writeMillis(timings.getQueueWaitNanos());
+            out.write(",\"rateLimitWait\":");
+            writeMillis(timings.getRateLimitWaitNanos());
+            out.write(",\"connect\":");
+            writeMillis(timings.getConnectNanos());
+            out.write(",\"firstByte\":");
+            writeMillis(timings.getFirstByteNanos());
+            out.write(",\"download\":");
+            writeMillis(timings.getDownloadNanos());
+            out.write(",\"parse\":");
+            writeMillis(timings.getParseNanos());
+            out.write('}');
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * Writes nanoseconds as milliseconds with microsecond precision, without
+     * going through floating point formatting.
+     */
+    private void writeMillis(long nanos) throws IOException {
+        if (nanos == CrawlTimings.UNKNOWN) {
+            out.write("null");
+            return;
+        }
+        long micros = Math.max(0, nanos) / 1000;
+        out.write(Long.toString(micros / 1000));
+        out.write('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            out.write('0');
+        }
+        if (fraction < 10) {
+            out.write('0');
+        }
+        out.write(Long.toString(fraction));
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
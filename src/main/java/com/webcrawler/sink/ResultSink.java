@@ -0,0 +1,15 @@
+package com.webcrawler.sink;
+
+import com.webcrawler.model.CrawlResult;
+
+/**
+ * Destination for crawl results. {@link #accept} is called concurrently by
+ * workers; {@link #close} is called once, after the last result.
+ */
+public interface ResultSink extends AutoCloseable {
+
+    void accept(CrawlResult result);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,19 @@
+package com.webcrawler.sink;
+
+import com.webcrawler.model.CrawlResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Encodes results onto a stream. Only ever called from one thread.
+ */
+public interface ResultWriter extends Closeable {
+
+    void write(CrawlResult result) throws IOException;
+
+    /**
+     * Pushes buffered output to the underlying file so readers can see it.
+     */
+    void flush() throws IOException;
+}